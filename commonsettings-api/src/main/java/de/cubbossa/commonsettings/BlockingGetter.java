@@ -0,0 +1,119 @@
+package de.cubbossa.commonsettings;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The synchronous getter of a setting that only has an asynchronous getter. It waits for the asynchronous getter for
+ * at most the given timeout and applies the {@link SettingBuilder.SyncFallback} afterwards. The time spent waiting is
+ * recorded, so that settings which cause main thread lag can be identified.
+ * <br>
+ * Fallback values are thrown as {@link Fallback} and must be unwrapped by the caller.
+ */
+final class BlockingGetter<T> implements Function<UUID, T> {
+
+	private final NamespacedKey key;
+	private final Function<UUID, CompletableFuture<T>> asyncGetter;
+	private final long timeoutNanos;
+	private final SettingBuilder.SyncFallback fallback;
+	private final T defaultValue;
+	/**
+	 * The values of completed asynchronous requests, only present for {@link SettingBuilder.SyncFallback#LAST_KNOWN_VALUE}.
+	 */
+	private final SettingCache<T> lastKnown;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	BlockingGetter(NamespacedKey key, Function<UUID, CompletableFuture<T>> asyncGetter, long timeoutNanos,
+	               SettingBuilder.SyncFallback fallback, T defaultValue, SettingCache<T> lastKnown) {
+		this.key = key;
+		this.asyncGetter = asyncGetter;
+		this.timeoutNanos = timeoutNanos;
+		this.fallback = fallback;
+		this.defaultValue = defaultValue;
+		this.lastKnown = lastKnown;
+	}
+
+	/**
+	 * Requests the value and remembers it as last known value once it arrives.
+	 */
+	CompletableFuture<T> request(UUID uuid) {
+		if (lastKnown == null) {
+			return asyncGetter.apply(uuid);
+		}
+		// a value that was requested before a write must not become the last known value
+		long generation = lastKnown.generation(uuid);
+		return asyncGetter.apply(uuid).thenApply(value -> {
+			lastKnown.put(uuid, value, generation);
+			return value;
+		});
+	}
+
+	/**
+	 * Forgets the last known value of the given UUID, e.g. because it was changed.
+	 */
+	void invalidate(UUID uuid) {
+		if (lastKnown != null) {
+			lastKnown.invalidate(uuid);
+		}
+	}
+
+	void invalidateAll() {
+		if (lastKnown != null) {
+			lastKnown.invalidateAll();
+		}
+	}
+
+	@Override
+	public T apply(UUID uuid) {
+		long start = System.nanoTime();
+		try {
+			return request(uuid).get(timeoutNanos, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			timeouts.increment();
+			throw switch (fallback) {
+				case DEFAULT_VALUE -> new Fallback(defaultValue);
+				case LAST_KNOWN_VALUE -> new Fallback(lastKnown.getOrDefault(uuid, defaultValue));
+				case FAIL -> new SettingTimeoutException(String.format(
+						"The getter of setting \"%s\" did not complete within %dms.", key, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)), e);
+			};
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			long blocked = System.nanoTime() - start;
+			calls.increment();
+			totalNanos.add(blocked);
+			maxNanos.accumulate(blocked);
+		}
+	}
+
+	BlockingStats getStats() {
+		return new BlockingStats(calls.sum(), timeouts.sum(), totalNanos.sum(), maxNanos.get());
+	}
+
+	/**
+	 * Thrown by {@link #apply(UUID)} instead of returning the fallback value, so that a {@link SettingCache} does not
+	 * store the fallback as if it were the value of the setting.
+	 */
+	static final class Fallback extends RuntimeException {
+
+		final Object value;
+
+		Fallback(Object value) {
+			super(null, null, false, false);
+			this.value = value;
+		}
+	}
+}
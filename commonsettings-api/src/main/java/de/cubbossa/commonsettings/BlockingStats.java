@@ -0,0 +1,21 @@
+package de.cubbossa.commonsettings;
+
+/**
+ * Statistics about how long the synchronous getter of a setting blocked while waiting for the asynchronous getter.
+ *
+ * @param calls      The amount of blocking getter calls
+ * @param timeouts   The amount of calls that hit the timeout and returned the fallback instead
+ * @param totalNanos The total time spent blocking
+ * @param maxNanos   The longest time a single call blocked
+ */
+public record BlockingStats(long calls, long timeouts, long totalNanos, long maxNanos) {
+
+	public static final BlockingStats NONE = new BlockingStats(0, 0, 0, 0);
+
+	/**
+	 * @return The average time a call blocked, or 0 if there were no calls.
+	 */
+	public long averageNanos() {
+		return calls == 0 ? 0 : totalNanos / calls;
+	}
+}
@@ -0,0 +1,19 @@
+package de.cubbossa.commonsettings;
+
+import java.util.UUID;
+
+/**
+ * A setting of type {@link Boolean} that offers access to its value without boxing. Use it for settings that are read on
+ * hot paths, e.g. for every chat message or particle tick.
+ * Settings of this type can be created with {@link SettingBuilder#buildBoolean(java.util.function.Predicate)}.
+ */
+public interface BooleanSetting extends Setting<Boolean> {
+
+	/**
+	 * Returns the setting value for the provided UUID like {@link #getValue(UUID)}, but without boxing.
+	 *
+	 * @param uuid The UUID key to get the setting value for
+	 * @return The setting value
+	 */
+	boolean getBoolean(UUID uuid);
+}
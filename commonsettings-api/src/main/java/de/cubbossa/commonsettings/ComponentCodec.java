@@ -0,0 +1,297 @@
+package de.cubbossa.commonsettings;
+
+import net.kyori.adventure.key.Key;
+import net.kyori.adventure.text.*;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.format.TextColor;
+import net.kyori.adventure.text.format.TextDecoration;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Stores components as a tree of text, translatable, keybind, score and selector components with their style.
+ * Components that contain other component types, e.g. NBT components, or hover events other than
+ * {@link HoverEvent#showText(Component)} are rejected with an {@link IllegalArgumentException}, so that no value is
+ * stored that would read back differently.
+ * <br>
+ * The text form is the binary form in Base64, because the API has no text serializer for components. Providers that
+ * ship one can replace this codec via {@link SettingCodecs#registerText(Class, java.util.function.Function,
+ * java.util.function.Function)}.
+ */
+final class ComponentCodec implements SettingCodec<Component> {
+
+	private static final byte TEXT = 0;
+	private static final byte TRANSLATABLE = 1;
+	private static final byte KEYBIND = 2;
+	private static final byte SCORE = 3;
+	private static final byte SELECTOR = 4;
+
+	private static final int COLOR = 1;
+	private static final int FONT = 1 << 1;
+	private static final int INSERTION = 1 << 2;
+	private static final int CLICK = 1 << 3;
+	private static final int HOVER = 1 << 4;
+
+	private static final TextDecoration[] DECORATIONS = TextDecoration.values();
+	private static final int MAX_DEPTH = 512;
+
+	@Override
+	public void write(ByteBuffer buffer, Component value) {
+		writeComponent(buffer, value);
+	}
+
+	@Override
+	public Component read(ByteBuffer buffer) {
+		try {
+			Component component = readComponent(buffer, 0);
+			if (buffer.hasRemaining()) {
+				throw new IllegalArgumentException("The component is followed by " + buffer.remaining() + " bytes.");
+			}
+			return component;
+		} catch (RuntimeException e) {
+			if (e instanceof IllegalArgumentException illegalArgument) {
+				throw illegalArgument;
+			}
+			// buffer underflows and invalid enum constants
+			throw new IllegalArgumentException("The bytes are no valid component.", e);
+		}
+	}
+
+	@Override
+	public int maxSize(Component value) {
+		int size = 1 + styleSize(value.style()) + Integer.BYTES;
+		if (value instanceof TranslatableComponent translatable) {
+			size += stringSize(translatable.key()) + Integer.BYTES;
+			for (Component arg : translatable.args()) {
+				size += maxSize(arg);
+			}
+		} else if (value instanceof KeybindComponent keybind) {
+			size += stringSize(keybind.keybind());
+		} else if (value instanceof ScoreComponent score) {
+			size += stringSize(score.name()) + stringSize(score.objective());
+		} else if (value instanceof SelectorComponent selector) {
+			size += stringSize(selector.pattern());
+		} else if (value instanceof TextComponent text) {
+			size += stringSize(text.content());
+		} else {
+			throw unsupported(value);
+		}
+		for (Component child : value.children()) {
+			size += maxSize(child);
+		}
+		return size;
+	}
+
+	@Override
+	public String toText(Component value) {
+		ByteBuffer buffer = ByteBuffer.allocate(maxSize(value));
+		write(buffer, value);
+		byte[] bytes = new byte[buffer.position()];
+		buffer.flip().get(bytes);
+		return Base64.getEncoder().encodeToString(bytes);
+	}
+
+	@Override
+	public Component fromText(String text) {
+		return read(ByteBuffer.wrap(Base64.getDecoder().decode(text)));
+	}
+
+	private void writeComponent(ByteBuffer buffer, Component component) {
+		if (component instanceof TranslatableComponent translatable) {
+			buffer.put(TRANSLATABLE);
+			writeStyle(buffer, component.style());
+			writeString(buffer, translatable.key());
+			buffer.putInt(translatable.args().size());
+			for (Component arg : translatable.args()) {
+				writeComponent(buffer, arg);
+			}
+		} else if (component instanceof KeybindComponent keybind) {
+			buffer.put(KEYBIND);
+			writeStyle(buffer, component.style());
+			writeString(buffer, keybind.keybind());
+		} else if (component instanceof ScoreComponent score) {
+			buffer.put(SCORE);
+			writeStyle(buffer, component.style());
+			writeString(buffer, score.name());
+			writeString(buffer, score.objective());
+		} else if (component instanceof SelectorComponent selector) {
+			buffer.put(SELECTOR);
+			writeStyle(buffer, component.style());
+			writeString(buffer, selector.pattern());
+		} else if (component instanceof TextComponent text) {
+			buffer.put(TEXT);
+			writeStyle(buffer, component.style());
+			writeString(buffer, text.content());
+		} else {
+			throw unsupported(component);
+		}
+		buffer.putInt(component.children().size());
+		for (Component child : component.children()) {
+			writeComponent(buffer, child);
+		}
+	}
+
+	private Component readComponent(ByteBuffer buffer, int depth) {
+		if (depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("The component is nested deeper than " + MAX_DEPTH + " levels.");
+		}
+		byte type = buffer.get();
+		Style style = readStyle(buffer, depth);
+		Component component = switch (type) {
+			case TEXT -> Component.text(readString(buffer));
+			case TRANSLATABLE -> {
+				String key = readString(buffer);
+				yield Component.translatable(key, readComponents(buffer, depth));
+			}
+			case KEYBIND -> Component.keybind(readString(buffer));
+			case SCORE -> {
+				String name = readString(buffer);
+				yield Component.score(name, readString(buffer));
+			}
+			case SELECTOR -> Component.selector(readString(buffer));
+			default -> throw new IllegalArgumentException("Unknown component type " + type + ".");
+		};
+		return component.style(style).children(readComponents(buffer, depth));
+	}
+
+	private List<Component> readComponents(ByteBuffer buffer, int depth) {
+		int count = buffer.getInt();
+		// every component occupies at least a few bytes, which bounds the list size for corrupted counts
+		if (count < 0 || count > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid component count " + count + ".");
+		}
+		List<Component> components = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			components.add(readComponent(buffer, depth + 1));
+		}
+		return components;
+	}
+
+	private int styleSize(Style style) {
+		int size = 1 + Short.BYTES;
+		if (style.color() != null) {
+			size += Integer.BYTES;
+		}
+		if (style.font() != null) {
+			size += stringSize(style.font().asString());
+		}
+		if (style.insertion() != null) {
+			size += stringSize(style.insertion());
+		}
+		if (style.clickEvent() != null) {
+			size += stringSize(style.clickEvent().action().name()) + stringSize(style.clickEvent().value());
+		}
+		if (style.hoverEvent() != null) {
+			size += maxSize(hoverText(style.hoverEvent()));
+		}
+		return size;
+	}
+
+	private void writeStyle(ByteBuffer buffer, Style style) {
+		Component hover = style.hoverEvent() == null ? null : hoverText(style.hoverEvent());
+		int flags = (style.color() != null ? COLOR : 0)
+				| (style.font() != null ? FONT : 0)
+				| (style.insertion() != null ? INSERTION : 0)
+				| (style.clickEvent() != null ? CLICK : 0)
+				| (hover != null ? HOVER : 0);
+		buffer.put((byte) flags);
+		// two bits per decoration: not set, false or true
+		short decorations = 0;
+		for (int i = 0; i < DECORATIONS.length; i++) {
+			int state = switch (style.decoration(DECORATIONS[i])) {
+				case NOT_SET -> 0;
+				case FALSE -> 1;
+				case TRUE -> 2;
+			};
+			decorations |= state << i * 2;
+		}
+		buffer.putShort(decorations);
+		if (style.color() != null) {
+			buffer.putInt(style.color().value());
+		}
+		if (style.font() != null) {
+			writeString(buffer, style.font().asString());
+		}
+		if (style.insertion() != null) {
+			writeString(buffer, style.insertion());
+		}
+		if (style.clickEvent() != null) {
+			writeString(buffer, style.clickEvent().action().name());
+			writeString(buffer, style.clickEvent().value());
+		}
+		if (hover != null) {
+			writeComponent(buffer, hover);
+		}
+	}
+
+	@SuppressWarnings("PatternValidation")
+	private Style readStyle(ByteBuffer buffer, int depth) {
+		int flags = buffer.get();
+		short decorations = buffer.getShort();
+		Style.Builder style = Style.style();
+		for (int i = 0; i < DECORATIONS.length; i++) {
+			switch (decorations >> i * 2 & 3) {
+				case 1 -> style.decoration(DECORATIONS[i], TextDecoration.State.FALSE);
+				case 2 -> style.decoration(DECORATIONS[i], TextDecoration.State.TRUE);
+				default -> {
+				}
+			}
+		}
+		if ((flags & COLOR) != 0) {
+			style.color(TextColor.color(buffer.getInt()));
+		}
+		if ((flags & FONT) != 0) {
+			style.font(Key.key(readString(buffer)));
+		}
+		if ((flags & INSERTION) != 0) {
+			style.insertion(readString(buffer));
+		}
+		if ((flags & CLICK) != 0) {
+			ClickEvent.Action action = ClickEvent.Action.valueOf(readString(buffer));
+			style.clickEvent(ClickEvent.clickEvent(action, readString(buffer)));
+		}
+		if ((flags & HOVER) != 0) {
+			style.hoverEvent(HoverEvent.showText(readComponent(buffer, depth + 1)));
+		}
+		return style.build();
+	}
+
+	private static Component hoverText(HoverEvent<?> event) {
+		if (event.action() != HoverEvent.Action.SHOW_TEXT) {
+			throw new IllegalArgumentException("Hover events of type " + event.action() + " can't be encoded.");
+		}
+		return (Component) event.value();
+	}
+
+	private static IllegalArgumentException unsupported(Component component) {
+		return new IllegalArgumentException("Components of type " + component.getClass().getSimpleName()
+				+ " can't be encoded.");
+	}
+
+	private static int stringSize(String value) {
+		return Integer.BYTES + SettingCodecs.maxUtf8(value);
+	}
+
+	/**
+	 * Writes the string with its length in front, which is known once the string is encoded.
+	 */
+	private static void writeString(ByteBuffer buffer, String value) {
+		int lengthPosition = buffer.position();
+		buffer.position(lengthPosition + Integer.BYTES);
+		SettingCodecs.putUtf8(buffer, value);
+		buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid string length " + length + ".");
+		}
+		return SettingCodecs.getUtf8(buffer, length);
+	}
+}
@@ -0,0 +1,121 @@
+package de.cubbossa.commonsettings;
+
+import net.kyori.adventure.text.Component;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of the rendered display components of settings per locale. Entries are evicted in least recently
+ * used order, so that only the settings that are actually shown keep their components in memory.
+ * <br>
+ * Settings built with {@link SettingBuilder} that have a translated title or description render them on first use for
+ * a locale and reuse them from the cache of the API they are registered with afterwards. Settings without translations
+ * keep their components and don't use the cache. Call {@link #invalidate(Setting)} or {@link #invalidateAll()} after
+ * reloading translations.
+ */
+public final class DisplayCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+	/**
+	 * The display components of one setting in one locale. Each component may be null if the setting has none.
+	 */
+	public record Rendered(@Nullable Component title, @Nullable Component shortDescription,
+	                       @Nullable Component longDescription) {
+	}
+
+	private record Key(Setting.DisplayOptions options, Locale locale) {
+	}
+
+	private final int maxEntries;
+	private final LinkedHashMap<Key, Rendered> entries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	/**
+	 * Incremented on every invalidation, so that renders that started before do not store outdated components.
+	 */
+	private long generation = 0;
+
+	public DisplayCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries The maximum amount of (setting, locale) pairs to keep components for
+	 */
+	public DisplayCache(int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("A display cache must hold at least one entry.");
+		}
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<>(16, .75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Rendered> eldest) {
+				if (size() > DisplayCache.this.maxEntries) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached components of the display options for the given locale or renders them with the given
+	 * renderer. The renderer is called without holding the lock of this cache.
+	 */
+	public Rendered get(Setting.DisplayOptions options, Locale locale, Function<Locale, Rendered> renderer) {
+		Key key = new Key(options, locale);
+		long generation;
+		synchronized (this) {
+			Rendered rendered = entries.get(key);
+			if (rendered != null) {
+				hits.increment();
+				return rendered;
+			}
+			misses.increment();
+			generation = this.generation;
+		}
+		Rendered rendered = renderer.apply(locale);
+		synchronized (this) {
+			if (this.generation == generation) {
+				entries.put(key, rendered);
+			}
+		}
+		return rendered;
+	}
+
+	/**
+	 * Removes the components of the given setting in all locales, so that they are rendered again on next use.
+	 */
+	public synchronized void invalidate(Setting<?> setting) {
+		generation++;
+		Setting.DisplayOptions options = setting.getDisplayOptions();
+		entries.keySet().removeIf(key -> key.options() == options);
+	}
+
+	/**
+	 * Removes all cached components.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return A snapshot of the hit, miss and eviction counters of this cache.
+	 */
+	public SettingCache.Stats getStats() {
+		return new SettingCache.Stats(hits.sum(), misses.sum(), evictions.sum(), size());
+	}
+}
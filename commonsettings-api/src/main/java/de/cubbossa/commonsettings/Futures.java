@@ -0,0 +1,22 @@
+package de.cubbossa.commonsettings;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+final class Futures {
+
+	private Futures() {
+	}
+
+	/**
+	 * @return A future that completes with a map of all keys to the results of their futures once all of them are done.
+	 */
+	static <K, V> CompletableFuture<Map<K, V>> joinAll(Map<K, ? extends CompletableFuture<? extends V>> futures) {
+		return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(unused -> {
+			Map<K, V> values = new HashMap<>();
+			futures.forEach((key, future) -> values.put(key, future.join()));
+			return values;
+		});
+	}
+}
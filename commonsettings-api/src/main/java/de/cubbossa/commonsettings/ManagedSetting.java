@@ -0,0 +1,57 @@
+package de.cubbossa.commonsettings;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A setting that was created by a {@link SettingBuilder}. Besides the plain setting methods, it offers access to the
+ * additional layers that the builder wraps around the getter and setter of the provider.
+ *
+ * @param <T> is the type of the value that is represented by the setting.
+ */
+public interface ManagedSetting<T> extends Setting<T> {
+
+	/**
+	 * @return The value cache of this setting, or null if the setting was built without cache.
+	 */
+	@Nullable
+	SettingCache<T> getCache();
+
+	/**
+	 * Writes all values that are held back by the write-behind buffer. Providers should call this before they disable.
+	 *
+	 * @return A future that completes once all pending values are written. It completes immediately if the setting
+	 * was built without write-behind buffer.
+	 */
+	CompletableFuture<Void> flush();
+
+	/**
+	 * Settings that only have an asynchronous getter block in {@link #getValue(java.util.UUID)} until the value is
+	 * present. Use these statistics to find settings that cause main thread lag.
+	 *
+	 * @return The statistics about blocking getter calls, or {@link BlockingStats#NONE} if the setting has a
+	 * synchronous getter.
+	 */
+	BlockingStats getBlockingStats();
+
+	/**
+	 * @return The amount of {@link #requestValue(java.util.UUID)} calls that joined a request that was already in
+	 * flight, see {@link SettingBuilder#withRequestCoalescing()}. Always 0 if request coalescing is disabled.
+	 */
+	long getCoalescedRequests();
+
+	/**
+	 * Drops every value that this setting holds for the UUID besides the provider storage, i.e. cached values, shared
+	 * requests and the session value. Use it if the value was changed without calling the setter of this setting, e.g.
+	 * by another server that shares the storage.
+	 */
+	void invalidate(UUID uuid);
+
+	/**
+	 * Drops the cached values and shared requests of all UUIDs, see {@link #invalidate(UUID)}. Session values are not
+	 * affected, use {@link SessionCache#invalidateAll()} for them.
+	 */
+	void invalidateAll();
+}
@@ -1,32 +1,50 @@
 package de.cubbossa.commonsettings;
 
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A custom version of the namespaced key used in Bukkit.
  * The namespace resembles a plugin and has to be unique for each using plugin.
  * The key serves as an identifier. So a plugin that registers a setting would use its name + setting name, e.g. PlotSquared:plots.toggle.chat
+ * <br>
+ * NamespacedKeys are immutable. Their string form and hash are computed once, so they can be used as map keys without
+ * allocating on lookup. Use {@link #of(String, String)} or {@link #fromString(String)} to obtain canonical instances.
  */
 @Getter
-public class NamespacedKey {
+public final class NamespacedKey {
+
+	/**
+	 * Upper bound for interned keys, so that arbitrary user input (e.g. from commands) cannot grow the pool forever.
+	 */
+	private static final int MAX_INTERNED = 1 << 16;
+	private static final ConcurrentHashMap<NamespacedKey, NamespacedKey> INTERNED = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, NamespacedKey> INTERNED_STRINGS = new ConcurrentHashMap<>();
 
 	private final String namespace;
 	private final String key;
+	@Getter(AccessLevel.NONE)
+	private final String string;
+	@Getter(AccessLevel.NONE)
+	private final int hash;
 
 	public NamespacedKey(String namespace, String key) {
 		this.namespace = namespace.toLowerCase();
 		this.key = key.toLowerCase();
+		this.string = this.namespace + ":" + this.key;
+		this.hash = string.hashCode();
 	}
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return hash;
 	}
 
 	@Override
 	public String toString() {
-		return namespace + ":" + key;
+		return string;
 	}
 
 	@Override
@@ -34,18 +52,79 @@ public class NamespacedKey {
 		if (obj == null) return false;
 		if (this == obj) return true;
 		if (obj instanceof NamespacedKey keyObj) {
-			return toString().equals(keyObj.toString());
+			return hash == keyObj.hash && string.equals(keyObj.string);
 		}
 		return false;
 	}
 
+	/**
+	 * Returns the canonical instance for the given namespace and key.
+	 *
+	 * @param namespace The namespace, usually the plugin name
+	 * @param key       The key within the namespace
+	 * @return The interned NamespacedKey
+	 */
+	public static NamespacedKey of(String namespace, String key) {
+		return intern(new NamespacedKey(namespace, key));
+	}
+
+	/**
+	 * Parses a string of format &lt;namespace&gt;:&lt;key&gt;, where both parts consist of [0-9a-zA-Z_].
+	 * Repeated calls with the same string return the canonical instance without allocating.
+	 *
+	 * @param namespacedKey The string to parse
+	 * @return The interned NamespacedKey
+	 * @throws IllegalArgumentException if the string is not a valid namespaced key
+	 */
 	public static NamespacedKey fromString(String namespacedKey) {
-		if (!namespacedKey.matches("[0-9a-zA-Z_]+:[0-9a-zA-Z_]+")) {
+		NamespacedKey interned = INTERNED_STRINGS.get(namespacedKey);
+		if (interned != null) {
+			return interned;
+		}
+		int separator = validate(namespacedKey);
+		if (separator < 0) {
 			throw new IllegalArgumentException("A namespaced key must be of format: <namespace>:<key>");
 		}
-		String[] splits = namespacedKey.split(":");
-		String namespace = splits[0];
-		String key = splits[1];
-		return new NamespacedKey(namespace, key);
+		NamespacedKey key = of(namespacedKey.substring(0, separator), namespacedKey.substring(separator + 1));
+		if (INTERNED_STRINGS.size() < MAX_INTERNED) {
+			INTERNED_STRINGS.putIfAbsent(namespacedKey, key);
+		}
+		return key;
+	}
+
+	private static NamespacedKey intern(NamespacedKey key) {
+		NamespacedKey interned = INTERNED.get(key);
+		if (interned != null) {
+			return interned;
+		}
+		if (INTERNED.size() >= MAX_INTERNED) {
+			return key;
+		}
+		interned = INTERNED.putIfAbsent(key, key);
+		return interned == null ? key : interned;
+	}
+
+	/**
+	 * @return The index of the ':' separator, or -1 if the input does not match [0-9a-zA-Z_]+:[0-9a-zA-Z_]+
+	 */
+	private static int validate(String input) {
+		int separator = -1;
+		int length = input.length();
+		for (int i = 0; i < length; i++) {
+			char c = input.charAt(i);
+			if (c == ':') {
+				if (separator >= 0 || i == 0 || i == length - 1) {
+					return -1;
+				}
+				separator = i;
+			} else if (!isValidChar(c)) {
+				return -1;
+			}
+		}
+		return separator;
+	}
+
+	private static boolean isValidChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
 	}
 }
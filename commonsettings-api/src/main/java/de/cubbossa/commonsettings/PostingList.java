@@ -0,0 +1,46 @@
+package de.cubbossa.commonsettings;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A set of settings that share one index value (a namespace, type or tag) within the {@link SettingsAPI}.
+ * Reads return an immutable snapshot that is only rebuilt after the posting list has changed, so repeated queries
+ * neither scan the registry nor allocate.
+ */
+final class PostingList {
+
+	private final Set<Setting<?>> members = new LinkedHashSet<>();
+	private volatile List<Setting<?>> snapshot = List.of();
+
+	synchronized void add(Setting<?> setting) {
+		if (members.add(setting)) {
+			snapshot = null;
+		}
+	}
+
+	synchronized void remove(Setting<?> setting) {
+		if (members.remove(setting)) {
+			snapshot = null;
+		}
+	}
+
+	synchronized boolean isEmpty() {
+		return members.isEmpty();
+	}
+
+	List<Setting<?>> snapshot() {
+		List<Setting<?>> snapshot = this.snapshot;
+		if (snapshot == null) {
+			synchronized (this) {
+				snapshot = this.snapshot;
+				if (snapshot == null) {
+					snapshot = List.copyOf(members);
+					this.snapshot = snapshot;
+				}
+			}
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,194 @@
+package de.cubbossa.commonsettings;
+
+import de.cubbossa.commonsettings.Setting.SettingChangeResult;
+import de.cubbossa.commonsettings.SettingPreset.Outcome;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Applies a {@link SettingPreset} to one UUID. The previous values of all settings are requested first. The values
+ * of each plugin are then set one after another, while the plugins are written in parallel. If a value cannot be set,
+ * the remaining values of the same plugin are skipped and all changed values are set back to their previous values
+ * once every plugin is done.
+ * <br>
+ * Changes of other writers between reading and reverting a value are overwritten by the revert.
+ */
+final class PresetTransaction {
+
+	private final SettingsAPI api;
+	private final UUID uuid;
+
+	PresetTransaction(SettingsAPI api, UUID uuid) {
+		this.api = api;
+		this.uuid = uuid;
+	}
+
+	CompletableFuture<SettingPreset.Result> apply(SettingPreset preset) {
+		Map<NamespacedKey, SettingChangeResult> rejected = new LinkedHashMap<>();
+		List<Write<?>> writes = new ArrayList<>();
+		for (SettingPreset.Entry entry : preset.getEntries()) {
+			Setting<?> setting = entry.setting() != null ? entry.setting() : lookup(entry.key());
+			SettingChangeResult result = validate(setting, entry.value());
+			if (result != null) {
+				rejected.put(entry.key(), result);
+			} else {
+				writes.add(new Write<>(setting, entry.value()));
+			}
+		}
+		if (!rejected.isEmpty()) {
+			// nothing is written if a value would be rejected anyway
+			return CompletableFuture.completedFuture(new SettingPreset.Result(Outcome.REVERTED, rejected, Set.of()));
+		}
+		CompletableFuture<?>[] reads = writes.stream().map(Write::readPrevious).toArray(CompletableFuture[]::new);
+		return CompletableFuture.allOf(reads).thenCompose(read -> {
+			Map<NamespacedKey, SettingChangeResult> unreadable = new LinkedHashMap<>();
+			for (Write<?> write : writes) {
+				if (!write.previousKnown) {
+					unreadable.put(write.setting.getKey(), SettingChangeResult.FAIL_OTHER);
+				}
+			}
+			if (!unreadable.isEmpty()) {
+				// without the previous value a failed preset could not be reverted
+				return CompletableFuture.completedFuture(new SettingPreset.Result(Outcome.REVERTED, unreadable, Set.of()));
+			}
+			Collection<List<Write<?>>> groups = groupByNamespace(writes);
+			return runGroups(groups, false).thenCompose(success -> {
+				Map<NamespacedKey, SettingChangeResult> results = new LinkedHashMap<>();
+				for (Write<?> write : writes) {
+					if (write.result != null) {
+						results.put(write.setting.getKey(), write.result);
+					}
+				}
+				if (success) {
+					return CompletableFuture.completedFuture(new SettingPreset.Result(Outcome.APPLIED, results, Set.of()));
+				}
+				return runGroups(groups, true).thenApply(done -> {
+					Set<NamespacedKey> notReverted = new LinkedHashSet<>();
+					for (Write<?> write : writes) {
+						if (write.result == SettingChangeResult.SUCCESS && !write.reverted) {
+							notReverted.add(write.setting.getKey());
+						}
+					}
+					return new SettingPreset.Result(notReverted.isEmpty() ? Outcome.REVERTED : Outcome.PARTIALLY_REVERTED,
+							results, notReverted);
+				});
+			});
+		});
+	}
+
+	private Setting<?> lookup(NamespacedKey key) {
+		try {
+			return api.getSetting(key);
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static SettingChangeResult validate(Setting<?> setting, Object value) {
+		if (setting == null) {
+			return SettingChangeResult.FAIL_OTHER;
+		}
+		if (setting.getFlags().readonly()) {
+			return SettingChangeResult.FAIL_READ_ONLY;
+		}
+		if (value == null ? !setting.getFlags().nullable() : !setting.getType().isInstance(value)) {
+			return SettingChangeResult.FAIL_INVALID_VALUE;
+		}
+		return null;
+	}
+
+	private static Collection<List<Write<?>>> groupByNamespace(List<Write<?>> writes) {
+		Map<String, List<Write<?>>> groups = new LinkedHashMap<>();
+		for (Write<?> write : writes) {
+			groups.computeIfAbsent(write.setting.getKey().getNamespace(), namespace -> new ArrayList<>()).add(write);
+		}
+		return groups.values();
+	}
+
+	/**
+	 * Runs the writes or reverts of each group one after another and all groups in parallel.
+	 *
+	 * @return A future of whether all writes of all groups succeeded
+	 */
+	private CompletableFuture<Boolean> runGroups(Collection<List<Write<?>>> groups, boolean revert) {
+		List<CompletableFuture<Boolean>> chains = new ArrayList<>();
+		for (List<Write<?>> group : groups) {
+			CompletableFuture<Boolean> chain = CompletableFuture.completedFuture(true);
+			if (revert) {
+				// revert in reverse order, so that the first value of a plugin is restored last
+				for (int i = group.size() - 1; i >= 0; i--) {
+					Write<?> write = group.get(i);
+					if (write.result == SettingChangeResult.SUCCESS) {
+						chain = chain.thenCompose(ok -> write.revert());
+					}
+				}
+			} else {
+				for (Write<?> write : group) {
+					// stop at the first failure of this plugin, the values that follow may depend on it
+					chain = chain.thenCompose(ok -> ok ? write.write() : CompletableFuture.completedFuture(false));
+				}
+			}
+			chains.add(chain);
+		}
+		return CompletableFuture.allOf(chains.toArray(CompletableFuture[]::new))
+				.thenApply(unused -> chains.stream().allMatch(CompletableFuture::join));
+	}
+
+	private final class Write<T> {
+
+		private final Setting<T> setting;
+		private final T value;
+		private volatile T previous;
+		private volatile boolean previousKnown = false;
+		private volatile SettingChangeResult result;
+		private volatile boolean reverted = false;
+
+		@SuppressWarnings("unchecked")
+		Write(Setting<T> setting, Object value) {
+			this.setting = setting;
+			this.value = (T) value;
+		}
+
+		CompletableFuture<Void> readPrevious() {
+			return call(() -> setting.requestValue(uuid)).handle((previous, throwable) -> {
+				if (throwable == null) {
+					this.previous = previous;
+					this.previousKnown = true;
+				}
+				return null;
+			});
+		}
+
+		CompletableFuture<Boolean> write() {
+			return call(() -> setting.setValue(uuid, value)).handle((result, throwable) -> {
+				this.result = throwable != null || result == null ? SettingChangeResult.FAIL_OTHER : result;
+				return this.result == SettingChangeResult.SUCCESS;
+			});
+		}
+
+		CompletableFuture<Boolean> revert() {
+			return call(() -> previous == null && !setting.getFlags().nullable()
+					? setting.reset(uuid)
+					: setting.setValue(uuid, previous)
+			).handle((result, throwable) -> {
+				reverted = throwable == null && result == SettingChangeResult.SUCCESS;
+				// the other values are reverted anyway
+				return true;
+			});
+		}
+
+		/**
+		 * Turns exceptions that providers throw instead of returning a failed future into a failed future.
+		 */
+		private <R> CompletableFuture<R> call(Supplier<CompletableFuture<R>> call) {
+			try {
+				CompletableFuture<R> future = call.get();
+				return future == null ? CompletableFuture.failedFuture(new NullPointerException()) : future;
+			} catch (RuntimeException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package de.cubbossa.commonsettings;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the values of settings for UUIDs with an open session, usually online players. Sessions are only opened on
+ * request: if preloading is enabled in its config, the CommonSettings plugin opens a session when a player logs in,
+ * fills it with the values of all settings before the player joins and closes it when the player quits. Without open
+ * sessions, settings read from their providers as usual.
+ * <br>
+ * Settings built with {@link SettingBuilder} answer reads from an open session and invalidate the session value when
+ * their value is changed via {@link Setting#setValue(UUID, Object)} or {@link Setting#reset(UUID)}. Providers that
+ * change their values bypassing the setter have to call {@link #invalidate(UUID, NamespacedKey)}.
+ */
+public final class SessionCache {
+
+	/**
+	 * Returned by {@link #lookup(UUID, NamespacedKey)} if no value is present. Null is a valid setting value.
+	 */
+	public static final Object MISSING = new Object();
+	private static final Object NULL = new Object();
+
+	private final ConcurrentHashMap<UUID, Session> sessions = new ConcurrentHashMap<>();
+
+	/**
+	 * Opens a session for the given UUID, if not already open.
+	 */
+	public void open(UUID uuid) {
+		sessions.computeIfAbsent(uuid, u -> new Session());
+	}
+
+	/**
+	 * Closes the session of the given UUID and drops all of its values.
+	 */
+	public void close(UUID uuid) {
+		sessions.remove(uuid);
+	}
+
+	public boolean isOpen(UUID uuid) {
+		return !sessions.isEmpty() && sessions.containsKey(uuid);
+	}
+
+	/**
+	 * @return The amount of open sessions
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * @return The session value or {@link #MISSING}, if the session is not open or holds no value for the setting.
+	 */
+	public Object lookup(UUID uuid, NamespacedKey key) {
+		if (sessions.isEmpty()) {
+			return MISSING;
+		}
+		Session session = sessions.get(uuid);
+		if (session == null) {
+			return MISSING;
+		}
+		Object value = session.values.get(key);
+		return value == null ? MISSING : value == NULL ? null : value;
+	}
+
+	/**
+	 * Returns a stamp that has to be passed to {@link #put(UUID, NamespacedKey, Object, long)}. Take it before
+	 * requesting the value, so that a value that was changed in the meantime is not stored.
+	 *
+	 * @return The stamp, or -1 if the session is not open
+	 */
+	public long stamp(UUID uuid) {
+		Session session = sessions.get(uuid);
+		return session == null ? -1 : session.clock;
+	}
+
+	/**
+	 * Stores a value in an open session, unless the value was invalidated after the stamp was taken.
+	 *
+	 * @return true, if the value was stored
+	 */
+	public boolean put(UUID uuid, NamespacedKey key, Object value, long stamp) {
+		Session session = sessions.get(uuid);
+		if (session == null || stamp < 0) {
+			return false;
+		}
+		synchronized (session) {
+			Long invalidated = session.invalidatedAt.get(key);
+			if (session.allInvalidatedAt > stamp || invalidated != null && invalidated > stamp) {
+				return false;
+			}
+			session.values.put(key, value == null ? NULL : value);
+			return true;
+		}
+	}
+
+	/**
+	 * Removes the session value of a setting, e.g. because it was changed.
+	 */
+	public void invalidate(UUID uuid, NamespacedKey key) {
+		if (sessions.isEmpty()) {
+			return;
+		}
+		Session session = sessions.get(uuid);
+		if (session == null) {
+			return;
+		}
+		synchronized (session) {
+			session.values.remove(key);
+			session.invalidatedAt.put(key, ++session.clock);
+		}
+	}
+
+	/**
+	 * Removes all values of all open sessions, e.g. if changes from other servers may have been missed. The sessions
+	 * stay open and are filled again by the next reads.
+	 */
+	public void invalidateAll() {
+		for (Session session : sessions.values()) {
+			synchronized (session) {
+				session.values.clear();
+				session.invalidatedAt.clear();
+				session.allInvalidatedAt = ++session.clock;
+			}
+		}
+	}
+
+	private static final class Session {
+		private final ConcurrentHashMap<NamespacedKey, Object> values = new ConcurrentHashMap<>();
+		private final ConcurrentHashMap<NamespacedKey, Long> invalidatedAt = new ConcurrentHashMap<>();
+		private volatile long clock = 0;
+		private long allInvalidatedAt = 0;
+	}
+}
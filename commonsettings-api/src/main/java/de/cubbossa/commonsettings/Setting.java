@@ -4,6 +4,9 @@ import net.kyori.adventure.text.Component;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -73,6 +76,9 @@ public interface Setting<T> {
 	 * Returns the setting value for the provided UUID.
 	 * This does happen synchronously and will block your main thread!
 	 * You may want to use {@link #requestValue(UUID)} instead.
+	 * <br>
+	 * Settings built with {@link SettingBuilder} return the value of an open {@link SessionCache} session instead of
+	 * calling the provider, if there is one.
 	 *
 	 * @param uuid The UUID key to get the setting value for
 	 * @return The setting value of the settings type
@@ -87,6 +93,21 @@ public interface Setting<T> {
 	 */
 	CompletableFuture<T> requestValue(UUID uuid);
 
+	/**
+	 * Requests the setting values for multiple UUIDs at once. Providers may implement this with a single query,
+	 * by default it requests each value separately.
+	 *
+	 * @param uuids The UUID keys to get the setting values for
+	 * @return A completable future that completes with a map of all requested UUIDs to their setting values.
+	 */
+	default CompletableFuture<Map<UUID, T>> requestValues(Collection<UUID> uuids) {
+		Map<UUID, CompletableFuture<T>> futures = new HashMap<>();
+		for (UUID uuid : uuids) {
+			futures.put(uuid, requestValue(uuid));
+		}
+		return Futures.joinAll(futures);
+	}
+
 	/**
 	 * Sets the setting value for a specific uuid. This value must only be null if the flag "nullable" is set.
 	 *
@@ -107,6 +128,35 @@ public interface Setting<T> {
 	 */
 	CompletableFuture<SettingChangeResult> reset(UUID uuid);
 
+	/**
+	 * Sets the setting values for multiple UUIDs at once. Providers may store all values in one batch, by default
+	 * each value is set separately.
+	 *
+	 * @param values The values to store per UUID
+	 * @return A {@link CompletableFuture} that completes with the {@link SettingChangeResult} of each UUID once all
+	 * values are stored or failed.
+	 */
+	default CompletableFuture<Map<UUID, SettingChangeResult>> setValues(Map<UUID, T> values) {
+		Map<UUID, CompletableFuture<SettingChangeResult>> futures = new HashMap<>();
+		values.forEach((uuid, value) -> futures.put(uuid, setValue(uuid, value)));
+		return Futures.joinAll(futures);
+	}
+
+	/**
+	 * Resets the setting to its default value for multiple UUIDs at once.
+	 *
+	 * @param uuids The UUIDs to reset the setting for
+	 * @return A {@link CompletableFuture} that completes with the {@link SettingChangeResult} of each UUID once all
+	 * values are reset or failed.
+	 */
+	default CompletableFuture<Map<UUID, SettingChangeResult>> resetAll(Collection<UUID> uuids) {
+		Map<UUID, CompletableFuture<SettingChangeResult>> futures = new HashMap<>();
+		for (UUID uuid : uuids) {
+			futures.put(uuid, reset(uuid));
+		}
+		return Futures.joinAll(futures);
+	}
+
 	interface Flags {
 		/**
 		 * @return true if the Setter of this setting does not update the value of the setting, otherwise false.
@@ -124,12 +174,27 @@ public interface Setting<T> {
 		boolean threadSafe();
 	}
 
+	/**
+	 * The locale specific methods fall back to the methods without locale. Implementations that support translations
+	 * override them, the methods without locale then return the components for {@link Locale#ROOT}.
+	 */
 	interface DisplayOptions {
 
 		Component getTitle();
 		Component getShortDescription();
 		Component getLongDescription();
 
+		default Component getTitle(Locale locale) {
+			return getTitle();
+		}
+
+		default Component getShortDescription(Locale locale) {
+			return getShortDescription();
+		}
+
+		default Component getLongDescription(Locale locale) {
+			return getLongDescription();
+		}
 	}
 
 	enum SettingChangeResult {
@@ -142,7 +207,7 @@ public interface Setting<T> {
 		 */
 		FAIL_READ_ONLY,
 		/**
-		 * If the value was not changed due to a cancelled SettingsChangeEvent
+		 * If the value was not changed due to a cancelled {@link SettingsChangeEvent}
 		 */
 		FAIL_EVENT_CANCELLED,
 		/**
@@ -0,0 +1,63 @@
+package de.cubbossa.commonsettings;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A storage for the values of one setting. Backends can be plugged into a {@link SettingBuilder} with
+ * {@link SettingBuilder#withBackend(SettingBackend)}, which sets the getters and setters of the setting in one call.
+ *
+ * @param <T> The value type of the stored setting
+ */
+public interface SettingBackend<T> {
+
+	/**
+	 * @return The stored value for the given UUID or the default value of the backend.
+	 */
+	T get(UUID uuid);
+
+	/**
+	 * Stores a value for the given UUID.
+	 */
+	CompletableFuture<Setting.SettingChangeResult> set(UUID uuid, T value);
+
+	/**
+	 * Blocking backends, e.g. databases, are only used via {@link #request(UUID)}, so that the synchronous getter of
+	 * the setting is subject to {@link SettingBuilder#withSyncTimeout}.
+	 *
+	 * @return true, if {@link #get(UUID)} may block.
+	 */
+	default boolean isBlocking() {
+		return false;
+	}
+
+	default CompletableFuture<T> request(UUID uuid) {
+		return CompletableFuture.completedFuture(get(uuid));
+	}
+
+	/**
+	 * @return true, if this backend implements {@link #requestAll(Collection)} and {@link #setAll(Map)} more efficiently
+	 * than single calls. Otherwise, the batch methods call {@link #request(UUID)} and {@link #set(UUID, Object)} for
+	 * each UUID.
+	 */
+	default boolean supportsBatches() {
+		return false;
+	}
+
+	default CompletableFuture<Map<UUID, T>> requestAll(Collection<UUID> uuids) {
+		Map<UUID, CompletableFuture<T>> futures = new HashMap<>();
+		for (UUID uuid : uuids) {
+			futures.put(uuid, request(uuid));
+		}
+		return Futures.joinAll(futures);
+	}
+
+	default CompletableFuture<Map<UUID, Setting.SettingChangeResult>> setAll(Map<UUID, T> values) {
+		Map<UUID, CompletableFuture<Setting.SettingChangeResult>> futures = new HashMap<>();
+		values.forEach((uuid, value) -> futures.put(uuid, set(uuid, value)));
+		return Futures.joinAll(futures);
+	}
+}
@@ -2,28 +2,64 @@ package de.cubbossa.commonsettings;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import de.cubbossa.commonsettings.SettingInstrumentation.Operation;
 import net.kyori.adventure.text.Component;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.*;
 
 public class SettingBuilder<T> {
 
+	/**
+	 * The amount of UUIDs to remember values for with {@link SyncFallback#LAST_KNOWN_VALUE}.
+	 */
+	private static final int LAST_KNOWN_CAPACITY = 4096;
+
+	/**
+	 * Decides what the synchronous getter returns if a setting only has an asynchronous getter and it does not
+	 * complete within the timeout given via {@link #withSyncTimeout(Duration, SyncFallback)}.
+	 */
+	public enum SyncFallback {
+		/**
+		 * Return the default value of the setting.
+		 */
+		DEFAULT_VALUE,
+		/**
+		 * Return the last value that the asynchronous getter returned for this UUID, or the default value if there is none.
+		 */
+		LAST_KNOWN_VALUE,
+		/**
+		 * Throw a {@link SettingTimeoutException}.
+		 */
+		FAIL
+	}
+
 	private final Class<T> type;
 	private final NamespacedKey key;
 	private String permission;
-	private Component title;
-	private Component shortDescription;
-	private Component longDescription;
+	private Function<Locale, Component> title;
+	private Function<Locale, Component> shortDescription;
+	private Function<Locale, Component> longDescription;
+	private boolean localized = false;
 	private boolean nullable = false;
 	private boolean threadsafe = true;
 	private Function<UUID, T> getter;
 	private Function<UUID, CompletableFuture<T>> asyncGetter;
+	private Function<Collection<UUID>, CompletableFuture<Map<UUID, T>>> batchGetter;
 	private BiFunction<UUID, T, CompletableFuture<Setting.SettingChangeResult>> setter;
+	private Function<Map<UUID, T>, CompletableFuture<Map<UUID, Setting.SettingChangeResult>>> batchSetter;
+	private Duration writeBehindWindow;
+	private Duration syncTimeout;
+	private SyncFallback syncFallback = SyncFallback.DEFAULT_VALUE;
 	private T defaultValue;
+	// every built setting gets its own cache, so only the configuration is kept here
+	private int cacheMaxEntries = 0;
+	private Duration cacheTtl;
+	private boolean coalesceRequests = false;
 	private final Collection<String> tags = new HashSet<>();
 
 	public SettingBuilder(Class<T> type, NamespacedKey key) {
@@ -36,34 +72,64 @@ public class SettingBuilder<T> {
 	}
 
 	public SettingBuilder<T> withTitle(String title) {
-		this.title = Component.text(title);
+		this.title = locale -> Component.text(title);
 		return this;
 	}
 
 	public SettingBuilder<T> withDescription(String shortDescription) {
-		this.shortDescription = Component.text(shortDescription);
+		this.shortDescription = locale -> Component.text(shortDescription);
 		return this;
 	}
 
 	public SettingBuilder<T> withDescription(String shortDescription, String longDescription) {
-		this.shortDescription = Component.text(shortDescription);
-		this.longDescription = Component.text(longDescription);
+		this.shortDescription = locale -> Component.text(shortDescription);
+		this.longDescription = locale -> Component.text(longDescription);
 		return this;
 	}
 
 	public SettingBuilder<T> withTitle(Component title) {
-		this.title = title;
+		this.title = locale -> title;
 		return this;
 	}
 
 	public SettingBuilder<T> withDescription(Component shortDescription) {
-		this.shortDescription = shortDescription;
+		this.shortDescription = locale -> shortDescription;
 		return this;
 	}
 
 	public SettingBuilder<T> withDescription(Component shortDescription, Component longDescription) {
+		this.shortDescription = locale -> shortDescription;
+		this.longDescription = locale -> longDescription;
+		return this;
+	}
+
+	/**
+	 * Sets a translated title. The function is called once per locale when the title is first shown, the result is
+	 * kept in the {@link DisplayCache}. Requests without locale use {@link Locale#ROOT}.
+	 */
+	public SettingBuilder<T> withTitle(Function<Locale, Component> title) {
+		this.title = title;
+		this.localized = true;
+		return this;
+	}
+
+	/**
+	 * Sets a translated short description, see {@link #withTitle(Function)}.
+	 */
+	public SettingBuilder<T> withDescription(Function<Locale, Component> shortDescription) {
+		this.shortDescription = shortDescription;
+		this.localized = true;
+		return this;
+	}
+
+	/**
+	 * Sets a translated short and long description, see {@link #withTitle(Function)}.
+	 */
+	public SettingBuilder<T> withDescription(Function<Locale, Component> shortDescription,
+	                                         Function<Locale, Component> longDescription) {
 		this.shortDescription = shortDescription;
 		this.longDescription = longDescription;
+		this.localized = true;
 		return this;
 	}
 
@@ -97,78 +163,206 @@ public class SettingBuilder<T> {
 		return this;
 	}
 
+	/**
+	 * Sets a getter that retrieves the values of multiple UUIDs at once, e.g. with a single SQL query.
+	 * It is used by {@link Setting#requestValues(Collection)}. UUIDs that are missing in the returned map are treated
+	 * as having the default value.
+	 */
+	public SettingBuilder<T> withBatchGetter(Function<Collection<UUID>, CompletableFuture<Map<UUID, T>>> getter) {
+		this.batchGetter = getter;
+		return this;
+	}
+
 	public SettingBuilder<T> withSetter(BiFunction<UUID, T, CompletableFuture<Setting.SettingChangeResult>> setter) {
 		this.setter = setter;
 		return this;
 	}
 
+	/**
+	 * Uses the given backend as getter and setter of this setting. Batch getter and setter are set too, if the backend
+	 * supports batches. Blocking backends are only set as async getter.
+	 */
+	public SettingBuilder<T> withBackend(SettingBackend<T> backend) {
+		this.getter = backend.isBlocking() ? null : backend::get;
+		this.asyncGetter = backend.isBlocking() ? backend::request : null;
+		this.setter = backend::set;
+		if (backend.supportsBatches()) {
+			this.batchGetter = backend::requestAll;
+			this.batchSetter = backend::setAll;
+		}
+		return this;
+	}
+
+	/**
+	 * Limits how long the synchronous getter blocks if the setting only has an asynchronous getter. Without a timeout,
+	 * {@link Setting#getValue(UUID)} waits for the asynchronous getter as long as it takes, which may stall the main
+	 * thread. The time spent blocking is recorded either way, see {@link ManagedSetting#getBlockingStats()}.
+	 *
+	 * @param timeout  The maximum time to wait for the asynchronous getter
+	 * @param fallback What to return if the asynchronous getter did not complete in time
+	 */
+	public SettingBuilder<T> withSyncTimeout(Duration timeout, SyncFallback fallback) {
+		this.syncTimeout = timeout;
+		this.syncFallback = fallback;
+		return this;
+	}
+
+	/**
+	 * Sets a setter that stores the values of multiple UUIDs at once, e.g. with one batched SQL statement.
+	 * It is used by {@link Setting#setValues(Map)}, {@link Setting#resetAll(Collection)} and to flush the write-behind
+	 * buffer. UUIDs that are missing in the returned map are reported as {@link Setting.SettingChangeResult#FAIL_OTHER}.
+	 */
+	public SettingBuilder<T> withBatchSetter(Function<Map<UUID, T>, CompletableFuture<Map<UUID, Setting.SettingChangeResult>>> setter) {
+		this.batchSetter = setter;
+		return this;
+	}
+
+	/**
+	 * Buffers all writes for the given flush window and passes them to the provider as one batch, using the batch
+	 * setter if present. Repeated writes to the same UUID within one window are coalesced into one write of the latest
+	 * value. Getters return buffered values until they are written.
+	 * <br>
+	 * Call {@link ManagedSetting#flush()} when your plugin disables to write all pending values.
+	 *
+	 * @param flushWindow The time to collect writes before they are written.
+	 */
+	public SettingBuilder<T> withWriteBehind(Duration flushWindow) {
+		this.writeBehindWindow = flushWindow;
+		return this;
+	}
+
+	/**
+	 * Caches the values of the getters per UUID. Changing a value via setValue or reset invalidates the cached value.
+	 * Use this if your getter is expensive, e.g. because it queries a database, and the value is not changed bypassing
+	 * the setting.
+	 *
+	 * @param maxEntries The maximum amount of UUIDs to cache values for. The least recently used entries are evicted first.
+	 * @param ttl        The time after which a cached value is loaded again, or null if values should not expire.
+	 */
+	public SettingBuilder<T> withCache(int maxEntries, Duration ttl) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("A setting cache must hold at least one entry.");
+		}
+		this.cacheMaxEntries = maxEntries;
+		this.cacheTtl = ttl;
+		return this;
+	}
+
+	/**
+	 * Lets concurrent calls of {@link Setting#requestValue(UUID)} for the same UUID share one call of the getter. A
+	 * request that starts while another one for the same UUID is in flight returns the result of the running request.
+	 * Changing the value via setValue or reset ends the sharing, later requests load the new value.
+	 */
+	public SettingBuilder<T> withRequestCoalescing() {
+		this.coalesceRequests = true;
+		return this;
+	}
+
 	public SettingBuilder<T> withTags(String... tags) {
 		this.tags.addAll(List.of(tags));
 		return this;
 	}
 
-	public Setting<T> build() {
+	public ManagedSetting<T> build() {
 
 		if (getter == null && asyncGetter == null) {
 			throw new RuntimeException("A setting must have at least one getter, either sync or async.");
 		}
 
-		Function<UUID, T> getter = this.getter != null ? this.getter :
-				uuid -> {
-					try {
-						return this.asyncGetter.apply(uuid).get();
-					} catch (InterruptedException | ExecutionException e) {
-						throw new RuntimeException(e);
-					}
-				};
-		Function<UUID, CompletableFuture<T>> asyncGetter = this.asyncGetter != null ? this.asyncGetter :
-				uuid -> CompletableFuture.completedFuture(getter.apply(uuid));
-
-		return new SimpleSetting<>(
-				type,
+		if (this.getter != null) {
+			return new BuiltSetting<>(this, getter, asyncGetterOrSync(), null);
+		}
+		BlockingGetter<T> blockingGetter = new BlockingGetter<>(
 				key,
-				new SimpleFlags(setter != null, nullable, threadsafe),
-				permission,
-				tags,
-				new SimpleDisplayOptions(title, shortDescription, longDescription)
-		) {
+				asyncGetter,
+				syncTimeout == null ? Long.MAX_VALUE : syncTimeout.toNanos(),
+				syncFallback,
+				defaultValue,
+				syncFallback == SyncFallback.LAST_KNOWN_VALUE ? new SettingCache<>(LAST_KNOWN_CAPACITY, null) : null
+		);
+		return new BuiltSetting<>(this, blockingGetter, blockingGetter::request, blockingGetter);
+	}
 
-			@Override
-			public T getValue(UUID uuid) {
-				return getter.apply(uuid);
-			}
+	/**
+	 * Builds a {@link BooleanSetting} whose {@link BooleanSetting#getBoolean(UUID)} calls the given getter without boxing.
+	 * The builder must be of type {@link Boolean} and the setting must not be nullable.
+	 *
+	 * @param getter The primitive getter of the setting, also used for {@link Setting#getValue(UUID)}
+	 */
+	public BooleanSetting buildBoolean(Predicate<UUID> getter) {
+		SettingBuilder<Boolean> builder = requirePrimitive(Boolean.class);
+		builder.getter = getter::test;
+		return new BuiltBooleanSetting(builder, builder.asyncGetterOrSync(), getter);
+	}
 
-			@Override
-			public CompletableFuture<T> requestValue(UUID uuid) {
-				return asyncGetter.apply(uuid);
-			}
+	/**
+	 * Builds an {@link IntSetting} whose {@link IntSetting#getInt(UUID)} calls the given getter without boxing.
+	 * The builder must be of type {@link Integer} and the setting must not be nullable.
+	 *
+	 * @param getter The primitive getter of the setting, also used for {@link Setting#getValue(UUID)}
+	 */
+	public IntSetting buildInt(ToIntFunction<UUID> getter) {
+		SettingBuilder<Integer> builder = requirePrimitive(Integer.class);
+		builder.getter = getter::applyAsInt;
+		return new BuiltIntSetting(builder, builder.asyncGetterOrSync(), getter);
+	}
 
-			@Override
-			public CompletableFuture<Setting.SettingChangeResult> setValue(UUID uuid, T value) {
-				if (setter != null) {
-					return setter.apply(uuid, value);
-				} else {
-					return CompletableFuture.completedFuture(SettingChangeResult.FAIL_READ_ONLY);
-				}
-			}
+	/**
+	 * Builds a {@link DoubleSetting} whose {@link DoubleSetting#getDouble(UUID)} calls the given getter without boxing.
+	 * The builder must be of type {@link Double} and the setting must not be nullable.
+	 *
+	 * @param getter The primitive getter of the setting, also used for {@link Setting#getValue(UUID)}
+	 */
+	public DoubleSetting buildDouble(ToDoubleFunction<UUID> getter) {
+		SettingBuilder<Double> builder = requirePrimitive(Double.class);
+		builder.getter = getter::applyAsDouble;
+		return new BuiltDoubleSetting(builder, builder.asyncGetterOrSync(), getter);
+	}
 
-			@Override
-			public CompletableFuture<Setting.SettingChangeResult> reset(UUID uuid) {
-				if (defaultValue == null) {
-					if (nullable) {
-						return setValue(uuid, null);
-					} else {
-						return CompletableFuture.completedFuture(SettingChangeResult.FAIL_INVALID_VALUE);
-					}
-				}
-				return setValue(uuid, defaultValue);
-			}
-		};
+	private <P> SettingBuilder<P> requirePrimitive(Class<P> type) {
+		if (!this.type.equals(type)) {
+			throw new IllegalStateException(String.format("Cannot build a %s setting from a builder of type %s.",
+					type.getSimpleName(), this.type.getSimpleName()));
+		}
+		if (nullable) {
+			throw new IllegalStateException("Primitive settings must not be nullable.");
+		}
+		return (SettingBuilder<P>) this;
+	}
+
+	private Function<UUID, CompletableFuture<T>> asyncGetterOrSync() {
+		Function<UUID, T> getter = this.getter;
+		return this.asyncGetter != null ? this.asyncGetter : uuid -> CompletableFuture.completedFuture(getter.apply(uuid));
 	}
 
 	private record SimpleFlags(boolean readonly, boolean nullable, boolean threadSafe) implements Setting.Flags {
 	}
 
+	/**
+	 * Binds a built setting to the API that it is registered with. Its changes are published to the change bus of that
+	 * API and localized display components are rendered into its display cache. Unbound settings use
+	 * {@link SettingsAPI#getInstance()}.
+	 */
+	static void bind(Setting<?> setting, SettingsAPI api) {
+		if (setting instanceof BuiltSetting<?> built) {
+			built.api = api;
+		}
+		if (setting.getDisplayOptions() instanceof LazyDisplayOptions options) {
+			options.cache = api.getDisplayCache();
+		}
+	}
+
+	private Setting.DisplayOptions displayOptions() {
+		if (localized) {
+			return new LazyDisplayOptions(title, shortDescription, longDescription);
+		}
+		return new SimpleDisplayOptions(
+				title == null ? null : title.apply(Locale.ROOT),
+				shortDescription == null ? null : shortDescription.apply(Locale.ROOT),
+				longDescription == null ? null : longDescription.apply(Locale.ROOT)
+		);
+	}
+
 	@Getter
 	@RequiredArgsConstructor
 	private static class SimpleDisplayOptions implements Setting.DisplayOptions {
@@ -177,6 +371,61 @@ public class SettingBuilder<T> {
 		private final Component longDescription;
 	}
 
+	/**
+	 * Renders the components of localized settings on first use per locale and keeps them in the {@link DisplayCache}
+	 * of the API that the setting is registered with, or of the default API if it is not registered.
+	 */
+	@RequiredArgsConstructor
+	private static class LazyDisplayOptions implements Setting.DisplayOptions {
+		private final Function<Locale, Component> title;
+		private final Function<Locale, Component> shortDescription;
+		private final Function<Locale, Component> longDescription;
+		private volatile DisplayCache cache;
+
+		@Override
+		public Component getTitle() {
+			return getTitle(Locale.ROOT);
+		}
+
+		@Override
+		public Component getShortDescription() {
+			return getShortDescription(Locale.ROOT);
+		}
+
+		@Override
+		public Component getLongDescription() {
+			return getLongDescription(Locale.ROOT);
+		}
+
+		@Override
+		public Component getTitle(Locale locale) {
+			return rendered(locale).title();
+		}
+
+		@Override
+		public Component getShortDescription(Locale locale) {
+			return rendered(locale).shortDescription();
+		}
+
+		@Override
+		public Component getLongDescription(Locale locale) {
+			return rendered(locale).longDescription();
+		}
+
+		private DisplayCache.Rendered rendered(Locale locale) {
+			DisplayCache cache = this.cache;
+			return (cache == null ? SettingsAPI.getInstance().getDisplayCache() : cache).get(this, locale, this::render);
+		}
+
+		private DisplayCache.Rendered render(Locale locale) {
+			return new DisplayCache.Rendered(
+					title == null ? null : title.apply(locale),
+					shortDescription == null ? null : shortDescription.apply(locale),
+					longDescription == null ? null : longDescription.apply(locale)
+			);
+		}
+	}
+
 	@Getter
 	private abstract static class SimpleSetting<T> implements Setting<T> {
 		private final Class<T> type;
@@ -195,4 +444,435 @@ public class SettingBuilder<T> {
 			this.displayOptions = displayOptions;
 		}
 	}
+
+	private static class BuiltSetting<T> extends SimpleSetting<T> implements ManagedSetting<T> {
+
+		private final Function<UUID, T> getter;
+		private final Function<UUID, CompletableFuture<T>> asyncGetter;
+		private final Function<Collection<UUID>, CompletableFuture<Map<UUID, T>>> batchGetter;
+		private final BiFunction<UUID, T, CompletableFuture<SettingChangeResult>> setter;
+		private final Function<Map<UUID, T>, CompletableFuture<Map<UUID, SettingChangeResult>>> batchSetter;
+		private final T defaultValue;
+		@Getter
+		private final SettingCache<T> cache;
+		private final WriteBehindBuffer<T> writeBehind;
+		private final BlockingGetter<T> blockingGetter;
+		private final ConcurrentHashMap<UUID, CompletableFuture<T>> inFlight;
+		private final LongAdder coalescedRequests = new LongAdder();
+		private volatile SettingsAPI api;
+
+		public BuiltSetting(SettingBuilder<T> builder, Function<UUID, T> getter, Function<UUID, CompletableFuture<T>> asyncGetter,
+		                    BlockingGetter<T> blockingGetter) {
+			super(
+					builder.type,
+					builder.key,
+					new SimpleFlags(builder.setter == null && builder.batchSetter == null, builder.nullable, builder.threadsafe),
+					builder.permission,
+					builder.tags,
+					builder.displayOptions()
+			);
+			this.getter = getter;
+			this.asyncGetter = asyncGetter;
+			this.batchGetter = builder.batchGetter;
+			this.setter = builder.setter;
+			this.batchSetter = builder.batchSetter;
+			this.defaultValue = builder.defaultValue;
+			this.cache = builder.cacheMaxEntries > 0 ? new SettingCache<>(builder.cacheMaxEntries, builder.cacheTtl) : null;
+			this.writeBehind = builder.writeBehindWindow == null ? null
+					: new WriteBehindBuffer<>(builder.writeBehindWindow.toNanos(), this::writeAll);
+			this.blockingGetter = blockingGetter;
+			this.inFlight = builder.coalesceRequests ? new ConcurrentHashMap<>() : null;
+		}
+
+		/**
+		 * @return true, if the getter of the provider can be called directly, because no cache or buffer may hold a
+		 * more recent value.
+		 */
+		boolean readsDirectly() {
+			return cache == null && writeBehind == null;
+		}
+
+		@Override
+		public BlockingStats getBlockingStats() {
+			return blockingGetter == null ? BlockingStats.NONE : blockingGetter.getStats();
+		}
+
+		@Override
+		public long getCoalescedRequests() {
+			return coalescedRequests.sum();
+		}
+
+		@Override
+		public T getValue(UUID uuid) {
+			SettingInstrumentation instrumentation = instrumentation();
+			if (instrumentation == SettingInstrumentation.NOOP) {
+				return readValue(uuid);
+			}
+			long start = System.nanoTime();
+			T value;
+			try {
+				value = readValue(uuid);
+			} catch (RuntimeException e) {
+				instrumentation.record(this, Operation.GET_VALUE, System.nanoTime() - start, null, e);
+				throw e;
+			}
+			instrumentation.record(this, Operation.GET_VALUE, System.nanoTime() - start, null, null);
+			return value;
+		}
+
+		@SuppressWarnings("unchecked")
+		private T readValue(UUID uuid) {
+			if (writeBehind != null) {
+				WriteBehindBuffer.Pending<T> pending = writeBehind.peek(uuid);
+				if (pending != null) {
+					return pending.value;
+				}
+			}
+			Object session = sessions().lookup(uuid, getKey());
+			if (session != SessionCache.MISSING) {
+				return (T) session;
+			}
+			try {
+				return cache == null ? getter.apply(uuid) : cache.get(uuid, getter);
+			} catch (BlockingGetter.Fallback fallback) {
+				// the getter timed out, the fallback is returned but never cached
+				return (T) fallback.value;
+			}
+		}
+
+		@Override
+		public CompletableFuture<T> requestValue(UUID uuid) {
+			SettingInstrumentation instrumentation = instrumentation();
+			if (instrumentation == SettingInstrumentation.NOOP) {
+				return requestValueUninstrumented(uuid);
+			}
+			long start = System.nanoTime();
+			return instrument(instrumentation, Operation.REQUEST_VALUE, start, () -> requestValueUninstrumented(uuid),
+					(value, throwable) -> instrumentation.record(this, Operation.REQUEST_VALUE,
+							System.nanoTime() - start, null, throwable));
+		}
+
+		@SuppressWarnings("unchecked")
+		private CompletableFuture<T> requestValueUninstrumented(UUID uuid) {
+			if (writeBehind != null) {
+				WriteBehindBuffer.Pending<T> pending = writeBehind.peek(uuid);
+				if (pending != null) {
+					return CompletableFuture.completedFuture(pending.value);
+				}
+			}
+			Object session = sessions().lookup(uuid, getKey());
+			if (session != SessionCache.MISSING) {
+				return CompletableFuture.completedFuture((T) session);
+			}
+			return inFlight == null ? load(uuid) : loadCoalesced(uuid);
+		}
+
+		private CompletableFuture<T> load(UUID uuid) {
+			return cache == null ? asyncGetter.apply(uuid) : cache.request(uuid, asyncGetter);
+		}
+
+		private CompletableFuture<T> loadCoalesced(UUID uuid) {
+			CompletableFuture<T> shared = inFlight.get(uuid);
+			if (shared == null) {
+				CompletableFuture<T> promise = new CompletableFuture<>();
+				shared = inFlight.putIfAbsent(uuid, promise);
+				if (shared == null) {
+					CompletableFuture<T> loading;
+					try {
+						loading = load(uuid);
+					} catch (Throwable t) {
+						loading = CompletableFuture.failedFuture(t);
+					}
+					loading.whenComplete((value, throwable) -> {
+						inFlight.remove(uuid, promise);
+						if (throwable != null) {
+							promise.completeExceptionally(throwable);
+						} else {
+							promise.complete(value);
+						}
+					});
+					return promise.copy();
+				}
+			}
+			coalescedRequests.increment();
+			// a copy, so that a caller that completes or cancels its future does not affect the others
+			return shared.copy();
+		}
+
+		@Override
+		public CompletableFuture<Map<UUID, T>> requestValues(Collection<UUID> uuids) {
+			CompletableFuture<Map<UUID, T>> future;
+			if (batchGetter == null) {
+				future = ManagedSetting.super.requestValues(uuids);
+			} else {
+				future = cache == null ? requestBatch(uuids) : cache.requestAll(uuids, this::requestBatch);
+			}
+			if (writeBehind == null) {
+				return future;
+			}
+			return future.thenApply(values -> {
+				for (UUID uuid : uuids) {
+					WriteBehindBuffer.Pending<T> pending = writeBehind.peek(uuid);
+					if (pending != null) {
+						values.put(uuid, pending.value);
+					}
+				}
+				return values;
+			});
+		}
+
+		private CompletableFuture<Map<UUID, T>> requestBatch(Collection<UUID> uuids) {
+			return batchGetter.apply(uuids).thenApply(provided -> {
+				Map<UUID, T> values = new HashMap<>(provided);
+				for (UUID uuid : uuids) {
+					if (!values.containsKey(uuid)) {
+						values.put(uuid, defaultValue);
+					}
+				}
+				return values;
+			});
+		}
+
+		@Override
+		public CompletableFuture<SettingChangeResult> setValue(UUID uuid, T value) {
+			SettingInstrumentation instrumentation = instrumentation();
+			if (instrumentation == SettingInstrumentation.NOOP) {
+				return change(uuid, value);
+			}
+			return instrumentChange(instrumentation, Operation.SET_VALUE, () -> change(uuid, value));
+		}
+
+		private CompletableFuture<SettingChangeResult> change(UUID uuid, T value) {
+			if (getFlags().readonly()) {
+				return CompletableFuture.completedFuture(SettingChangeResult.FAIL_READ_ONLY);
+			}
+			return api().getChangeBus().change(this, uuid, value, () -> {
+				// invalidate before and after the write, so that no read in between caches the old value
+				invalidate(uuid);
+				return write(uuid, value).whenComplete((result, throwable) -> invalidate(uuid));
+			});
+		}
+
+		@Override
+		public CompletableFuture<Map<UUID, SettingChangeResult>> setValues(Map<UUID, T> values) {
+			if (getFlags().readonly()) {
+				Map<UUID, SettingChangeResult> results = new HashMap<>();
+				values.keySet().forEach(uuid -> results.put(uuid, SettingChangeResult.FAIL_READ_ONLY));
+				return CompletableFuture.completedFuture(results);
+			}
+			if (writeBehind != null || api().getChangeBus().hasListeners(this)) {
+				// every single change has to be buffered or published
+				return ManagedSetting.super.setValues(values);
+			}
+			values.keySet().forEach(this::invalidate);
+			return writeAll(values).whenComplete((results, throwable) -> {
+				values.keySet().forEach(this::invalidate);
+				if (results != null) {
+					results.forEach((uuid, result) -> {
+						if (result == SettingChangeResult.SUCCESS) {
+							api().getChangeBus().committed(this, uuid);
+						}
+					});
+				}
+			});
+		}
+
+		@Override
+		public void invalidate(UUID uuid) {
+			if (cache != null) {
+				cache.invalidate(uuid);
+			}
+			if (inFlight != null) {
+				// a request that is in flight may return the old value, so later requests must not join it
+				inFlight.remove(uuid);
+			}
+			if (blockingGetter != null) {
+				blockingGetter.invalidate(uuid);
+			}
+			sessions().invalidate(uuid, getKey());
+		}
+
+		@Override
+		public void invalidateAll() {
+			if (cache != null) {
+				cache.invalidateAll();
+			}
+			if (inFlight != null) {
+				inFlight.clear();
+			}
+			if (blockingGetter != null) {
+				blockingGetter.invalidateAll();
+			}
+		}
+
+		@Override
+		public CompletableFuture<SettingChangeResult> reset(UUID uuid) {
+			SettingInstrumentation instrumentation = instrumentation();
+			if (instrumentation == SettingInstrumentation.NOOP) {
+				return resetUninstrumented(uuid);
+			}
+			return instrumentChange(instrumentation, Operation.RESET, () -> resetUninstrumented(uuid));
+		}
+
+		private CompletableFuture<SettingChangeResult> resetUninstrumented(UUID uuid) {
+			if (defaultValue == null) {
+				if (getFlags().nullable()) {
+					return change(uuid, null);
+				} else {
+					return CompletableFuture.completedFuture(SettingChangeResult.FAIL_INVALID_VALUE);
+				}
+			}
+			return change(uuid, defaultValue);
+		}
+
+		private CompletableFuture<SettingChangeResult> instrumentChange(SettingInstrumentation instrumentation,
+		                                                                Operation operation,
+		                                                                Supplier<CompletableFuture<SettingChangeResult>> call) {
+			long start = System.nanoTime();
+			return instrument(instrumentation, operation, start, call, (result, throwable) ->
+					instrumentation.record(this, operation, System.nanoTime() - start, result, throwable));
+		}
+
+		/**
+		 * Runs an asynchronous call and passes its outcome to the recorder, also if the call throws instead of
+		 * returning a failed future.
+		 */
+		private <R> CompletableFuture<R> instrument(SettingInstrumentation instrumentation, Operation operation, long start,
+		                                            Supplier<CompletableFuture<R>> call,
+		                                            BiConsumer<? super R, ? super Throwable> recorder) {
+			CompletableFuture<R> future;
+			try {
+				future = call.get();
+			} catch (RuntimeException e) {
+				instrumentation.record(this, operation, System.nanoTime() - start, null, e);
+				throw e;
+			}
+			return future.whenComplete(recorder);
+		}
+
+		/**
+		 * @return true, if the primitive getter of the provider returns the same value as {@link #getValue(UUID)} for the
+		 * given UUID and calls don't have to be recorded.
+		 */
+		boolean readsDirectlyUninstrumented(UUID uuid) {
+			return readsDirectly() && instrumentation() == SettingInstrumentation.NOOP && !sessions().isOpen(uuid);
+		}
+
+		private SettingsAPI api() {
+			SettingsAPI api = this.api;
+			return api == null ? SettingsAPI.getInstance() : api;
+		}
+
+		private SettingInstrumentation instrumentation() {
+			return api().getInstrumentation();
+		}
+
+		@Override
+		public CompletableFuture<Map<UUID, SettingChangeResult>> resetAll(Collection<UUID> uuids) {
+			if (defaultValue == null && !getFlags().nullable()) {
+				Map<UUID, SettingChangeResult> results = new HashMap<>();
+				uuids.forEach(uuid -> results.put(uuid, SettingChangeResult.FAIL_INVALID_VALUE));
+				return CompletableFuture.completedFuture(results);
+			}
+			Map<UUID, T> values = new HashMap<>();
+			uuids.forEach(uuid -> values.put(uuid, defaultValue));
+			return setValues(values);
+		}
+
+		@Override
+		public CompletableFuture<Void> flush() {
+			return writeBehind == null ? CompletableFuture.completedFuture(null) : writeBehind.flush();
+		}
+
+		/**
+		 * Writes a value to the provider. The setter runs on the thread that {@link SettingExecutors} picks for this
+		 * setting, unless the value is buffered by the write-behind buffer first.
+		 */
+		private CompletableFuture<SettingChangeResult> write(UUID uuid, T value) {
+			if (writeBehind != null) {
+				return writeBehind.write(uuid, value);
+			}
+			if (setter != null) {
+				return executors().dispatch(this, () -> setter.apply(uuid, value));
+			}
+			return writeAll(Collections.singletonMap(uuid, value))
+					.thenApply(results -> results.get(uuid));
+		}
+
+		private SettingExecutors executors() {
+			return api().getExecutors();
+		}
+
+		private SessionCache sessions() {
+			return api().getSessions();
+		}
+
+		/**
+		 * Writes all values directly to the provider, bypassing the write-behind buffer.
+		 */
+		private CompletableFuture<Map<UUID, SettingChangeResult>> writeAll(Map<UUID, T> values) {
+			if (batchSetter == null) {
+				return executors().dispatch(this, () -> {
+					Map<UUID, CompletableFuture<SettingChangeResult>> futures = new HashMap<>();
+					values.forEach((uuid, value) -> futures.put(uuid, setter.apply(uuid, value)));
+					return Futures.joinAll(futures);
+				});
+			}
+			return executors().dispatch(this, () -> batchSetter.apply(values)).thenApply(provided -> {
+				Map<UUID, SettingChangeResult> results = new HashMap<>(provided);
+				for (UUID uuid : values.keySet()) {
+					results.putIfAbsent(uuid, SettingChangeResult.FAIL_OTHER);
+				}
+				return results;
+			});
+		}
+	}
+
+	private static class BuiltBooleanSetting extends BuiltSetting<Boolean> implements BooleanSetting {
+
+		private final Predicate<UUID> primitiveGetter;
+
+		public BuiltBooleanSetting(SettingBuilder<Boolean> builder, Function<UUID, CompletableFuture<Boolean>> asyncGetter,
+		                           Predicate<UUID> primitiveGetter) {
+			super(builder, builder.getter, asyncGetter, null);
+			this.primitiveGetter = primitiveGetter;
+		}
+
+		@Override
+		public boolean getBoolean(UUID uuid) {
+			return readsDirectlyUninstrumented(uuid) ? primitiveGetter.test(uuid) : getValue(uuid);
+		}
+	}
+
+	private static class BuiltIntSetting extends BuiltSetting<Integer> implements IntSetting {
+
+		private final ToIntFunction<UUID> primitiveGetter;
+
+		public BuiltIntSetting(SettingBuilder<Integer> builder, Function<UUID, CompletableFuture<Integer>> asyncGetter,
+		                       ToIntFunction<UUID> primitiveGetter) {
+			super(builder, builder.getter, asyncGetter, null);
+			this.primitiveGetter = primitiveGetter;
+		}
+
+		@Override
+		public int getInt(UUID uuid) {
+			return readsDirectlyUninstrumented(uuid) ? primitiveGetter.applyAsInt(uuid) : getValue(uuid);
+		}
+	}
+
+	private static class BuiltDoubleSetting extends BuiltSetting<Double> implements DoubleSetting {
+
+		private final ToDoubleFunction<UUID> primitiveGetter;
+
+		public BuiltDoubleSetting(SettingBuilder<Double> builder, Function<UUID, CompletableFuture<Double>> asyncGetter,
+		                          ToDoubleFunction<UUID> primitiveGetter) {
+			super(builder, builder.getter, asyncGetter, null);
+			this.primitiveGetter = primitiveGetter;
+		}
+
+		@Override
+		public double getDouble(UUID uuid) {
+			return readsDirectlyUninstrumented(uuid) ? primitiveGetter.applyAsDouble(uuid) : getValue(uuid);
+		}
+	}
 }
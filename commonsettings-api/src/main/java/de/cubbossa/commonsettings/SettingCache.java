@@ -0,0 +1,239 @@
+package de.cubbossa.commonsettings;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, UUID keyed cache for setting values. Entries are evicted in least recently used order once the cache
+ * holds more than the maximum amount of entries, and expire after the given time to live.
+ * <br>
+ * Settings built with {@link SettingBuilder#withCache(int, Duration)} use this cache for their getters and invalidate
+ * the according entry whenever the value is changed via setValue or reset.
+ *
+ * @param <T> The value type of the cached setting
+ */
+public final class SettingCache<T> {
+
+	private static final int GENERATION_STRIPES = 64;
+
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final LinkedHashMap<UUID, Entry<T>> entries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	/**
+	 * Striped generation counters, the stripe of a UUID is incremented whenever it is invalidated. Loads that started
+	 * before an invalidation of their UUID must not store their (possibly outdated) result, while loads of other UUIDs
+	 * are only discarded if they happen to share the stripe.
+	 */
+	private final long[] generations = new long[GENERATION_STRIPES];
+
+	/**
+	 * @param maxEntries The maximum amount of UUIDs to keep values for
+	 * @param ttl        The duration after which a cached value expires, or null if values should never expire
+	 */
+	public SettingCache(int maxEntries, Duration ttl) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException("A setting cache must hold at least one entry.");
+		}
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttl == null || ttl.isZero() || ttl.isNegative() ? Long.MAX_VALUE : ttl.toNanos();
+		this.entries = new LinkedHashMap<>(16, .75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<UUID, Entry<T>> eldest) {
+				if (size() > SettingCache.this.maxEntries) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached value for the given UUID or loads it with the given loader if no valid value is cached.
+	 * The loader is called without holding the lock of this cache.
+	 *
+	 * @param uuid   The UUID to get the value for
+	 * @param loader The function that retrieves the value if it is not cached
+	 * @return The cached or loaded value
+	 */
+	public T get(UUID uuid, Function<UUID, T> loader) {
+		long generation;
+		synchronized (this) {
+			Entry<T> entry = lookup(uuid);
+			if (entry != null) {
+				return entry.value();
+			}
+			generation = generations[stripe(uuid)];
+		}
+		T value = loader.apply(uuid);
+		put(uuid, value, generation);
+		return value;
+	}
+
+	/**
+	 * Returns a completed future of the cached value for the given UUID or requests it with the given loader if no
+	 * valid value is cached. The loaded value is stored once the future completes successfully.
+	 *
+	 * @param uuid   The UUID to get the value for
+	 * @param loader The function that requests the value if it is not cached
+	 * @return A future of the cached or loaded value
+	 */
+	public CompletableFuture<T> request(UUID uuid, Function<UUID, CompletableFuture<T>> loader) {
+		long generation;
+		synchronized (this) {
+			Entry<T> entry = lookup(uuid);
+			if (entry != null) {
+				return CompletableFuture.completedFuture(entry.value());
+			}
+			generation = generations[stripe(uuid)];
+		}
+		return loader.apply(uuid).thenApply(value -> {
+			put(uuid, value, generation);
+			return value;
+		});
+	}
+
+	/**
+	 * Returns the cached values for the given UUIDs and requests all missing values with one call of the given loader.
+	 *
+	 * @param uuids  The UUIDs to get the values for
+	 * @param loader The function that requests all values that are not cached
+	 * @return A future of a map of all requested UUIDs to their cached or loaded values
+	 */
+	public CompletableFuture<Map<UUID, T>> requestAll(Collection<UUID> uuids,
+	                                                  Function<Collection<UUID>, CompletableFuture<Map<UUID, T>>> loader) {
+		Map<UUID, T> values = new HashMap<>();
+		Map<UUID, Long> missing = new LinkedHashMap<>();
+		synchronized (this) {
+			for (UUID uuid : uuids) {
+				Entry<T> entry = lookup(uuid);
+				if (entry != null) {
+					values.put(uuid, entry.value());
+				} else {
+					missing.put(uuid, generations[stripe(uuid)]);
+				}
+			}
+		}
+		if (missing.isEmpty()) {
+			return CompletableFuture.completedFuture(values);
+		}
+		return loader.apply(missing.keySet()).thenApply(loaded -> {
+			synchronized (this) {
+				long expiry = expiry();
+				loaded.forEach((uuid, value) -> {
+					Long generation = missing.get(uuid);
+					if (generation != null && generations[stripe(uuid)] == generation) {
+						entries.put(uuid, new Entry<>(value, expiry));
+					}
+				});
+			}
+			values.putAll(loaded);
+			return values;
+		});
+	}
+
+	/**
+	 * Stores a value for the given UUID, e.g. after it has been loaded in bulk.
+	 */
+	public synchronized void put(UUID uuid, T value) {
+		entries.put(uuid, new Entry<>(value, expiry()));
+	}
+
+	/**
+	 * @return The cached value for the given UUID or the fallback if no valid value is cached. Nothing is loaded or
+	 * stored.
+	 */
+	public synchronized T getOrDefault(UUID uuid, T fallback) {
+		Entry<T> entry = lookup(uuid);
+		return entry == null ? fallback : entry.value();
+	}
+
+	/**
+	 * @return The current generation of the given UUID, to be passed to {@link #put(UUID, Object, long)} for a value
+	 * that is loaded now.
+	 */
+	synchronized long generation(UUID uuid) {
+		return generations[stripe(uuid)];
+	}
+
+	/**
+	 * Stores a value unless the UUID was invalidated since the given generation.
+	 */
+	synchronized void put(UUID uuid, T value, long generation) {
+		if (generations[stripe(uuid)] == generation) {
+			entries.put(uuid, new Entry<>(value, expiry()));
+		}
+	}
+
+	/**
+	 * Removes the cached value for the given UUID, so that the next call loads it again.
+	 */
+	public synchronized void invalidate(UUID uuid) {
+		generations[stripe(uuid)]++;
+		entries.remove(uuid);
+	}
+
+	/**
+	 * Removes all cached values.
+	 */
+	public synchronized void invalidateAll() {
+		for (int i = 0; i < generations.length; i++) {
+			generations[i]++;
+		}
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return A snapshot of the hit, miss and eviction counters of this cache.
+	 */
+	public Stats getStats() {
+		return new Stats(hits.sum(), misses.sum(), evictions.sum(), size());
+	}
+
+	private Entry<T> lookup(UUID uuid) {
+		Entry<T> entry = entries.get(uuid);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		if (ttlNanos != Long.MAX_VALUE && entry.expiresAt() - System.nanoTime() < 0) {
+			entries.remove(uuid);
+			evictions.increment();
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry;
+	}
+
+	private static int stripe(UUID uuid) {
+		int hash = uuid.hashCode();
+		return (hash ^ hash >>> 16) & (GENERATION_STRIPES - 1);
+	}
+
+	private long expiry() {
+		return ttlNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + ttlNanos;
+	}
+
+	private record Entry<T>(T value, long expiresAt) {
+	}
+
+	/**
+	 * @param hits      The amount of lookups that were answered from the cache
+	 * @param misses    The amount of lookups that had to call the provider
+	 * @param evictions The amount of entries that were removed due to size or time limits
+	 * @param size      The current amount of cached entries
+	 */
+	public record Stats(long hits, long misses, long evictions, int size) {
+	}
+}
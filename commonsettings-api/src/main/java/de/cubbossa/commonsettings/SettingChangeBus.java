@@ -0,0 +1,273 @@
+package de.cubbossa.commonsettings;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Notifies listeners about setting changes. Listeners subscribe to a single setting key, to all settings of a
+ * namespace or to all settings with a tag.
+ * <br>
+ * Listeners registered via {@link #beforeChange} run before a value is written and may cancel the change. Listeners
+ * registered via {@link #onChange} run after a successful write, either on the thread that completed the write or on
+ * a given executor, so that slow listeners do not delay the setter.
+ * <br>
+ * Settings built with {@link SettingBuilder} publish their changes automatically. Other implementations can use
+ * {@link #change(Setting, UUID, Object, Supplier)} to do the same.
+ * <br>
+ * Listeners registered via {@link #onCommit} are notified about every successful write of any setting. Unlike the
+ * other listeners, they do not cause the old value to be requested before the write.
+ */
+public final class SettingChangeBus {
+
+	private final Map<NamespacedKey, ListenerList> keyListeners = new ConcurrentHashMap<>();
+	private final Map<String, ListenerList> namespaceListeners = new ConcurrentHashMap<>();
+	private final Map<String, ListenerList> tagListeners = new ConcurrentHashMap<>();
+	/**
+	 * The total amount of listeners, so that changes without any listener skip all lookups.
+	 */
+	private final AtomicInteger listenerCount = new AtomicInteger();
+	private volatile CommitListener[] commitListeners = new CommitListener[0];
+
+	/**
+	 * A handle to remove a listener from the bus again.
+	 */
+	public interface Subscription {
+		void unsubscribe();
+	}
+
+	/**
+	 * Receives the setting and UUID of every successful write, e.g. to replicate changes to other servers.
+	 */
+	@FunctionalInterface
+	public interface CommitListener {
+		void onCommit(Setting<?> setting, UUID uuid);
+	}
+
+	public Subscription beforeChange(NamespacedKey key, Consumer<SettingsChangeEvent<?>> listener) {
+		return subscribe(keyListeners, key, new Listener(listener, null, true));
+	}
+
+	public Subscription beforeChangeInNamespace(String namespace, Consumer<SettingsChangeEvent<?>> listener) {
+		return subscribe(namespaceListeners, namespace, new Listener(listener, null, true));
+	}
+
+	public Subscription beforeChangeWithTag(String tag, Consumer<SettingsChangeEvent<?>> listener) {
+		return subscribe(tagListeners, tag, new Listener(listener, null, true));
+	}
+
+	public Subscription onChange(NamespacedKey key, Consumer<SettingsChangeEvent<?>> listener) {
+		return onChange(key, listener, null);
+	}
+
+	/**
+	 * @param executor The executor to deliver the event on, or null to call the listener on the thread that completed
+	 *                 the write.
+	 */
+	public Subscription onChange(NamespacedKey key, Consumer<SettingsChangeEvent<?>> listener, Executor executor) {
+		return subscribe(keyListeners, key, new Listener(listener, executor, false));
+	}
+
+	public Subscription onChangeInNamespace(String namespace, Consumer<SettingsChangeEvent<?>> listener) {
+		return onChangeInNamespace(namespace, listener, null);
+	}
+
+	public Subscription onChangeInNamespace(String namespace, Consumer<SettingsChangeEvent<?>> listener, Executor executor) {
+		return subscribe(namespaceListeners, namespace, new Listener(listener, executor, false));
+	}
+
+	public Subscription onChangeWithTag(String tag, Consumer<SettingsChangeEvent<?>> listener) {
+		return onChangeWithTag(tag, listener, null);
+	}
+
+	public Subscription onChangeWithTag(String tag, Consumer<SettingsChangeEvent<?>> listener, Executor executor) {
+		return subscribe(tagListeners, tag, new Listener(listener, executor, false));
+	}
+
+	/**
+	 * Subscribes to the successful writes of all settings. The listener is called on the thread that completed the
+	 * write and must return quickly.
+	 */
+	public Subscription onCommit(CommitListener listener) {
+		synchronized (this) {
+			CommitListener[] copy = Arrays.copyOf(commitListeners, commitListeners.length + 1);
+			copy[copy.length - 1] = listener;
+			commitListeners = copy;
+		}
+		return () -> {
+			synchronized (this) {
+				CommitListener[] current = commitListeners;
+				for (int i = 0; i < current.length; i++) {
+					if (current[i] == listener) {
+						CommitListener[] copy = new CommitListener[current.length - 1];
+						System.arraycopy(current, 0, copy, 0, i);
+						System.arraycopy(current, i + 1, copy, i, current.length - i - 1);
+						commitListeners = copy;
+						return;
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Notifies all commit listeners about a successful write. {@link #change(Setting, UUID, Object, Supplier)} calls
+	 * this automatically, settings that write values without it, e.g. in batches, have to call it themselves.
+	 */
+	public void committed(Setting<?> setting, UUID uuid) {
+		for (CommitListener listener : commitListeners) {
+			try {
+				listener.onCommit(setting, uuid);
+			} catch (Throwable t) {
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+			}
+		}
+	}
+
+	/**
+	 * @return true, if at least one listener would receive changes of the given setting.
+	 */
+	public boolean hasListeners(Setting<?> setting) {
+		if (listenerCount.get() == 0) {
+			return false;
+		}
+		if (keyListeners.containsKey(setting.getKey()) || namespaceListeners.containsKey(setting.getKey().getNamespace())) {
+			return true;
+		}
+		for (String tag : setting.getTags()) {
+			if (tagListeners.containsKey(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Changes a setting value and notifies all listeners. If any listener is interested in the setting, the old value
+	 * is requested first and all before-change listeners are called. If none of them cancels the event, the write is
+	 * executed and all on-change listeners are notified after it succeeded.
+	 *
+	 * @param setting  The setting to change
+	 * @param uuid     The UUID to change the setting for
+	 * @param newValue The new value
+	 * @param write    The actual write of the new value
+	 * @return The result of the write, or {@link Setting.SettingChangeResult#FAIL_EVENT_CANCELLED} if a listener
+	 * cancelled the change.
+	 */
+	public <T> CompletableFuture<Setting.SettingChangeResult> change(Setting<T> setting, UUID uuid, T newValue,
+	                                                                Supplier<CompletableFuture<Setting.SettingChangeResult>> write) {
+		if (!hasListeners(setting)) {
+			if (commitListeners.length == 0) {
+				return write.get();
+			}
+			return write.get().thenApply(result -> {
+				if (result == Setting.SettingChangeResult.SUCCESS) {
+					committed(setting, uuid);
+				}
+				return result;
+			});
+		}
+		return setting.requestValue(uuid).thenCompose(oldValue -> {
+			SettingsChangeEvent<T> event = new SettingsChangeEvent<>(setting, uuid, oldValue, newValue);
+			fire(event, true);
+			if (event.isCancelled()) {
+				return CompletableFuture.completedFuture(Setting.SettingChangeResult.FAIL_EVENT_CANCELLED);
+			}
+			return write.get().thenApply(result -> {
+				if (result == Setting.SettingChangeResult.SUCCESS) {
+					committed(setting, uuid);
+					fire(event, false);
+				}
+				return result;
+			});
+		});
+	}
+
+	private void fire(SettingsChangeEvent<?> event, boolean before) {
+		Setting<?> setting = event.getSetting();
+		fire(keyListeners.get(setting.getKey()), event, before);
+		fire(namespaceListeners.get(setting.getKey().getNamespace()), event, before);
+		for (String tag : setting.getTags()) {
+			fire(tagListeners.get(tag), event, before);
+		}
+	}
+
+	private static void fire(ListenerList list, SettingsChangeEvent<?> event, boolean before) {
+		if (list == null) {
+			return;
+		}
+		// iterate the current array directly, subscriptions replace it instead of modifying it
+		for (Listener listener : list.listeners) {
+			if (listener.before != before) {
+				continue;
+			}
+			if (listener.executor == null) {
+				deliver(listener, event);
+			} else {
+				listener.executor.execute(() -> deliver(listener, event));
+			}
+		}
+	}
+
+	private static void deliver(Listener listener, SettingsChangeEvent<?> event) {
+		try {
+			listener.consumer.accept(event);
+		} catch (Throwable t) {
+			// one failing listener must not prevent the others from being notified
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+		}
+	}
+
+	private <K> Subscription subscribe(Map<K, ListenerList> map, K key, Listener listener) {
+		map.compute(key, (k, list) -> {
+			ListenerList result = list == null ? new ListenerList() : list;
+			result.add(listener);
+			return result;
+		});
+		listenerCount.incrementAndGet();
+		return () -> map.computeIfPresent(key, (k, list) -> {
+			if (list.remove(listener)) {
+				listenerCount.decrementAndGet();
+			}
+			return list.listeners.length == 0 ? null : list;
+		});
+	}
+
+	private record Listener(Consumer<SettingsChangeEvent<?>> consumer, Executor executor, boolean before) {
+	}
+
+	/**
+	 * A copy-on-write array of listeners. Modifications only happen within the compute functions of the listener maps.
+	 */
+	private static final class ListenerList {
+		private volatile Listener[] listeners = new Listener[0];
+
+		void add(Listener listener) {
+			Listener[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+			copy[copy.length - 1] = listener;
+			listeners = copy;
+		}
+
+		boolean remove(Listener listener) {
+			Listener[] current = listeners;
+			for (int i = 0; i < current.length; i++) {
+				if (current[i] == listener) {
+					Listener[] copy = new Listener[current.length - 1];
+					System.arraycopy(current, 0, copy, 0, i);
+					System.arraycopy(current, i + 1, copy, i, current.length - i - 1);
+					listeners = copy;
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package de.cubbossa.commonsettings;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes setting values for storages, either binary or as text. Every encoded value is turned back into an equal
+ * value. The text form of the built-in codecs is the one of {@link SettingParsers}.
+ * <br>
+ * Binary values are written without length prefix, the storage that contains a value knows its length.
+ *
+ * @param <T> The value type
+ */
+public interface SettingCodec<T> {
+
+	/**
+	 * Writes the value at the position of the buffer. The buffer has at least {@link #maxSize(Object)} bytes remaining.
+	 *
+	 * @throws IllegalArgumentException If the value can't be encoded
+	 */
+	void write(ByteBuffer buffer, T value);
+
+	/**
+	 * @param buffer A buffer whose remaining bytes are exactly the encoded value
+	 * @throws IllegalArgumentException If the bytes are no valid encoding of a value
+	 */
+	T read(ByteBuffer buffer);
+
+	/**
+	 * @return The maximum amount of bytes that the value occupies.
+	 * @throws IllegalArgumentException If the value can't be encoded
+	 */
+	int maxSize(T value);
+
+	/**
+	 * @return The value as text, e.g. for a text column of a database.
+	 * @throws IllegalArgumentException If the value can't be encoded
+	 */
+	String toText(T value);
+
+	/**
+	 * @throws IllegalArgumentException If the text is no valid encoding of a value
+	 */
+	T fromText(String text);
+}
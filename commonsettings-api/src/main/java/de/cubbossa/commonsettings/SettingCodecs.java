@@ -0,0 +1,329 @@
+package de.cubbossa.commonsettings;
+
+import net.kyori.adventure.text.Component;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The codecs that storages use to persist setting values, see {@link SettingCodec}. Codecs for strings, booleans,
+ * numbers and {@link Component}s are registered by default, enums are supported without registration.
+ * <br>
+ * The text form of booleans, numbers and enums is the one of {@link SettingParsers}, so that a storage accepts the same
+ * text as commands do.
+ * <br>
+ * Providers of settings with custom value types register a codec via {@link #register(Class, SettingCodec)}, or, if
+ * the type already has a text form, via {@link #registerText(Class, Function, Function)}.
+ */
+public final class SettingCodecs {
+
+	private final Map<Class<?>, SettingCodec<?>> codecs = new ConcurrentHashMap<>();
+	private final SettingParsers parsers;
+
+	public SettingCodecs() {
+		this(new SettingParsers());
+	}
+
+	/**
+	 * @param parsers The parsers that provide the text form of booleans, numbers and enums
+	 */
+	public SettingCodecs(SettingParsers parsers) {
+		this.parsers = parsers;
+		register(String.class, new StringCodec());
+		register(Boolean.class, new FixedCodec<>(Boolean.class, 1, (buffer, value) -> buffer.put((byte) (value ? 1 : 0)),
+				buffer -> buffer.get() != 0, parsers));
+		register(Byte.class, new FixedCodec<>(Byte.class, Byte.BYTES, ByteBuffer::put, ByteBuffer::get, parsers));
+		register(Short.class, new FixedCodec<>(Short.class, Short.BYTES, ByteBuffer::putShort, ByteBuffer::getShort, parsers));
+		register(Integer.class, new FixedCodec<>(Integer.class, Integer.BYTES, ByteBuffer::putInt, ByteBuffer::getInt, parsers));
+		register(Long.class, new FixedCodec<>(Long.class, Long.BYTES, ByteBuffer::putLong, ByteBuffer::getLong, parsers));
+		register(Float.class, new FixedCodec<>(Float.class, Float.BYTES, ByteBuffer::putFloat, ByteBuffer::getFloat, parsers));
+		register(Double.class, new FixedCodec<>(Double.class, Double.BYTES, ByteBuffer::putDouble, ByteBuffer::getDouble, parsers));
+		register(Component.class, new ComponentCodec());
+	}
+
+	/**
+	 * Registers a codec for a value type and replaces a previously registered one. Values that were stored with the
+	 * previous codec must still be readable.
+	 *
+	 * @param type The exact value type, as returned by {@link Setting#getType()}
+	 */
+	public <T> void register(Class<T> type, SettingCodec<T> codec) {
+		codecs.put(type, codec);
+	}
+
+	/**
+	 * Registers a codec that stores values by their text form, e.g. to store components with a MiniMessage or Gson
+	 * serializer instead of the built-in binary format.
+	 */
+	public <T> void registerText(Class<T> type, Function<T, String> toText, Function<String, T> fromText) {
+		register(type, new TextCodec<>(toText, fromText));
+	}
+
+	public void unregister(Class<?> type) {
+		codecs.remove(type);
+	}
+
+	/**
+	 * @return True if values of the given type can be encoded, either by a registered codec or because it is an enum.
+	 */
+	public boolean isSupported(Class<?> type) {
+		return get(type) != null;
+	}
+
+	/**
+	 * @return The codec for the given type or null if the type is not supported.
+	 */
+	@Nullable
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public <T> SettingCodec<T> get(Class<T> type) {
+		SettingCodec<?> codec = codecs.get(type);
+		if (codec == null && type.isEnum()) {
+			// the name tables of an enum are built once on first use
+			codec = codecs.computeIfAbsent(type, t -> new EnumCodec<>((Class) t, parsers));
+		}
+		return (SettingCodec<T>) codec;
+	}
+
+	/**
+	 * Encodes the string as UTF-8 into the buffer. The intermediate array of {@link String#getBytes} is cheaper than
+	 * encoding every char into the buffer, because the JDK copies Latin-1 strings in bulk.
+	 */
+	static void putUtf8(ByteBuffer buffer, String value) {
+		buffer.put(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes the next bytes of the buffer as UTF-8. Heap buffers are decoded in place without copying them.
+	 */
+	static String getUtf8(ByteBuffer buffer, int length) {
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	/**
+	 * @return The maximum amount of bytes of a string encoded with {@link #putUtf8(ByteBuffer, String)}, which is three
+	 * bytes per char, as surrogate pairs take four bytes for two chars.
+	 */
+	static int maxUtf8(String value) {
+		return value.length() * 3;
+	}
+
+	/**
+	 * Parses text with the parsers, but throws {@link IllegalArgumentException} as codecs do.
+	 */
+	private static <T> T parse(SettingParsers parsers, Class<T> type, String text) {
+		try {
+			return parsers.parse(type, text);
+		} catch (SettingValueParseException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	private record FixedCodec<T>(Class<T> type, int size, BiConsumer<ByteBuffer, T> writer,
+	                             Function<ByteBuffer, T> reader, SettingParsers parsers) implements SettingCodec<T> {
+
+		@Override
+		public void write(ByteBuffer buffer, T value) {
+			writer.accept(buffer, value);
+		}
+
+		@Override
+		public T read(ByteBuffer buffer) {
+			if (buffer.remaining() != size) {
+				throw new IllegalArgumentException(String.format("Expected %d bytes, found %d.", size, buffer.remaining()));
+			}
+			return reader.apply(buffer);
+		}
+
+		@Override
+		public int maxSize(T value) {
+			return size;
+		}
+
+		@Override
+		public String toText(T value) {
+			return parsers.serialize(type, value);
+		}
+
+		@Override
+		public T fromText(String text) {
+			return parse(parsers, type, text);
+		}
+	}
+
+	private static final class StringCodec implements SettingCodec<String> {
+
+		@Override
+		public void write(ByteBuffer buffer, String value) {
+			putUtf8(buffer, value);
+		}
+
+		@Override
+		public String read(ByteBuffer buffer) {
+			return getUtf8(buffer, buffer.remaining());
+		}
+
+		@Override
+		public int maxSize(String value) {
+			return maxUtf8(value);
+		}
+
+		@Override
+		public String toText(String value) {
+			return value;
+		}
+
+		@Override
+		public String fromText(String text) {
+			return text;
+		}
+	}
+
+	private record TextCodec<T>(Function<T, String> writer, Function<String, T> reader) implements SettingCodec<T> {
+
+		@Override
+		public void write(ByteBuffer buffer, T value) {
+			putUtf8(buffer, writer.apply(value));
+		}
+
+		@Override
+		public T read(ByteBuffer buffer) {
+			return reader.apply(getUtf8(buffer, buffer.remaining()));
+		}
+
+		@Override
+		public int maxSize(T value) {
+			// the text is created twice, but custom types are rare compared to the built-in ones
+			return maxUtf8(writer.apply(value));
+		}
+
+		@Override
+		public String toText(T value) {
+			return writer.apply(value);
+		}
+
+		@Override
+		public T fromText(String text) {
+			return reader.apply(text);
+		}
+	}
+
+	/**
+	 * Stores enum constants by ordinal followed by the hash code of their name, which takes seven bytes no matter how
+	 * long the name is. The constant is looked up by hash if the ordinal belongs to another name, so that reordering
+	 * constants does not change stored values. Names that are shorter than the compact form, or whose hash is shared
+	 * with another constant of the enum, are stored as plain name.
+	 * <br>
+	 * Values that consist of the name only and values that consist of the ordinal followed by the full name, as written
+	 * by older versions, are read as well. The leading tag byte tells the formats apart, as names never start with it.
+	 */
+	private static final class EnumCodec<E extends Enum<E>> implements SettingCodec<E> {
+
+		private static final byte ORDINAL_NAME = 0;
+		private static final byte ORDINAL_HASH = 1;
+		private static final int COMPACT_SIZE = 1 + Short.BYTES + Integer.BYTES;
+
+		private final Class<E> type;
+		private final SettingParsers parsers;
+		private final E[] constants;
+		private final ByteBuffer[] names;
+		private final int[] hashes;
+		private final boolean[] compact;
+		/**
+		 * The constants by the hash code of their name, without the constants that share their hash code.
+		 */
+		private final Map<Integer, E> byHash;
+
+		EnumCodec(Class<E> type, SettingParsers parsers) {
+			this.type = type;
+			this.parsers = parsers;
+			this.constants = type.getEnumConstants();
+			this.names = new ByteBuffer[constants.length];
+			this.hashes = new int[constants.length];
+			this.byHash = new HashMap<>(constants.length * 4 / 3 + 1);
+			Set<Integer> shared = new HashSet<>();
+			for (E constant : constants) {
+				names[constant.ordinal()] = ByteBuffer.wrap(constant.name().getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+				hashes[constant.ordinal()] = constant.name().hashCode();
+				if (byHash.putIfAbsent(constant.name().hashCode(), constant) != null) {
+					shared.add(constant.name().hashCode());
+				}
+			}
+			byHash.keySet().removeAll(shared);
+			this.compact = new boolean[constants.length];
+			for (E constant : constants) {
+				compact[constant.ordinal()] = names[constant.ordinal()].remaining() > COMPACT_SIZE
+						&& !shared.contains(hashes[constant.ordinal()]);
+			}
+		}
+
+		@Override
+		public void write(ByteBuffer buffer, E value) {
+			int ordinal = value.ordinal();
+			if (compact[ordinal]) {
+				buffer.put(ORDINAL_HASH).putShort((short) ordinal).putInt(hashes[ordinal]);
+			} else {
+				buffer.put(names[ordinal].duplicate());
+			}
+		}
+
+		@Override
+		public E read(ByteBuffer buffer) {
+			if (buffer.remaining() == COMPACT_SIZE && buffer.get(buffer.position()) == ORDINAL_HASH) {
+				int ordinal = buffer.getShort(buffer.position() + 1) & 0xFFFF;
+				int hash = buffer.getInt(buffer.position() + 1 + Short.BYTES);
+				buffer.position(buffer.limit());
+				if (ordinal < constants.length && hashes[ordinal] == hash) {
+					return constants[ordinal];
+				}
+				E constant = byHash.get(hash);
+				if (constant == null) {
+					throw new IllegalArgumentException(String.format("No constant of %s has the name hash %d.",
+							type.getSimpleName(), hash));
+				}
+				return constant;
+			}
+			if (buffer.remaining() > 3 && buffer.get(buffer.position()) == ORDINAL_NAME) {
+				buffer.get();
+				int ordinal = buffer.getShort() & 0xFFFF;
+				// comparing the bytes of the name does not create a string
+				if (ordinal < constants.length && buffer.mismatch(names[ordinal]) == -1) {
+					buffer.position(buffer.limit());
+					return constants[ordinal];
+				}
+			}
+			return fromText(getUtf8(buffer, buffer.remaining()));
+		}
+
+		@Override
+		public int maxSize(E value) {
+			return compact[value.ordinal()] ? COMPACT_SIZE : names[value.ordinal()].remaining();
+		}
+
+		@Override
+		public String toText(E value) {
+			return parsers.serialize(type, value);
+		}
+
+		@Override
+		public E fromText(String text) {
+			return parse(parsers, type, text);
+		}
+	}
+}
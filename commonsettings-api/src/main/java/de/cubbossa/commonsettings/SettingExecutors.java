@@ -0,0 +1,104 @@
+package de.cubbossa.commonsettings;
+
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Decides on which thread the setter of a setting runs, based on {@link Setting.Flags#threadSafe()}.
+ * <br>
+ * Setters of settings that are not thread-safe run on the main thread executor. It runs tasks on the calling thread
+ * until the CommonSettings plugin replaces it with an executor for the server main thread. Setters of thread-safe
+ * settings run on a shared worker pool, which uses virtual threads if the Java runtime supports them.
+ * <br>
+ * Settings built with {@link SettingBuilder} route their setters automatically. Consumers that change settings of
+ * other implementations can use {@link #setValue(Setting, UUID, Object)} to call them from any thread.
+ */
+public final class SettingExecutors {
+
+	private static final Executor INLINE = Runnable::run;
+
+	private volatile Executor mainThreadExecutor = INLINE;
+	private final Executor workerPool = createWorkerPool();
+
+	/**
+	 * @param executor The executor that runs tasks on the main thread. Passing null restores the default, which runs
+	 *                 tasks on the calling thread.
+	 */
+	public void setMainThreadExecutor(Executor executor) {
+		this.mainThreadExecutor = executor == null ? INLINE : executor;
+	}
+
+	public Executor getMainThreadExecutor() {
+		return mainThreadExecutor;
+	}
+
+	public Executor getWorkerPool() {
+		return workerPool;
+	}
+
+	/**
+	 * @return The main thread executor if the setting is not thread-safe, otherwise the worker pool.
+	 */
+	public Executor executorFor(Setting<?> setting) {
+		return setting.getFlags().threadSafe() ? workerPool : mainThreadExecutor;
+	}
+
+	/**
+	 * Runs the given task on the executor for the given setting.
+	 *
+	 * @param setting The setting that the task accesses
+	 * @param task    The task, e.g. a call of the setter of the setting
+	 * @return A future that completes with the result of the future returned by the task
+	 */
+	public <R> CompletableFuture<R> dispatch(Setting<?> setting, Supplier<CompletableFuture<R>> task) {
+		return CompletableFuture.supplyAsync(task, executorFor(setting)).thenCompose(Function.identity());
+	}
+
+	/**
+	 * Sets the value of a setting on the right thread, no matter from which thread this method is called.
+	 *
+	 * @param setting The setting to change
+	 * @param uuid    The UUID to change the setting for
+	 * @param value   The new value
+	 * @return The future of the setter
+	 */
+	public <T> CompletableFuture<Setting.SettingChangeResult> setValue(Setting<T> setting, UUID uuid, T value) {
+		if (setting instanceof ManagedSetting) {
+			// settings from the SettingBuilder already dispatch their setter
+			return setting.setValue(uuid, value);
+		}
+		return dispatch(setting, () -> setting.setValue(uuid, value));
+	}
+
+	/**
+	 * Resets the value of a setting on the right thread, no matter from which thread this method is called.
+	 *
+	 * @param setting The setting to reset
+	 * @param uuid    The UUID to reset the setting for
+	 * @return The future of the reset call
+	 */
+	public CompletableFuture<Setting.SettingChangeResult> reset(Setting<?> setting, UUID uuid) {
+		if (setting instanceof ManagedSetting) {
+			return setting.reset(uuid);
+		}
+		return dispatch(setting, () -> setting.reset(uuid));
+	}
+
+	private static Executor createWorkerPool() {
+		try {
+			// Java 21+, looked up reflectively to keep the API compatible with older runtimes
+			return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException ignored) {
+		}
+		AtomicInteger counter = new AtomicInteger();
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		return Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "CommonSettings-Worker-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,47 @@
+package de.cubbossa.commonsettings;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Receives a callback for every call of the getters and setters of settings built with {@link SettingBuilder}. Set an
+ * implementation with {@link SettingsAPI#setInstrumentation(SettingInstrumentation)}, e.g. {@link SettingsMetrics}
+ * or an exporter for an external monitoring system.
+ * <br>
+ * Callbacks run on the thread that completed the call and must be fast and thread-safe. While {@link #NOOP} is set,
+ * settings skip the time measurement entirely.
+ */
+public interface SettingInstrumentation {
+
+	SettingInstrumentation NOOP = new SettingInstrumentation() {
+		@Override
+		public void record(Setting<?> setting, Operation operation, long nanos, @Nullable Setting.SettingChangeResult result,
+		                   @Nullable Throwable error) {
+		}
+	};
+
+	enum Operation {
+		/**
+		 * {@link Setting#getValue(java.util.UUID)} and the primitive getters, which block the calling thread.
+		 */
+		GET_VALUE,
+		/**
+		 * {@link Setting#requestValue(java.util.UUID)}, measured until the returned future completes.
+		 */
+		REQUEST_VALUE,
+		SET_VALUE,
+		RESET
+	}
+
+	/**
+	 * Called once a call of a setting completed.
+	 *
+	 * @param setting   The called setting
+	 * @param operation The called method
+	 * @param nanos     The time from the call until the value or result was present
+	 * @param result    The result for {@link Operation#SET_VALUE} and {@link Operation#RESET}, null for getters or if
+	 *                  the call failed with an exception
+	 * @param error     The exception if the call failed, otherwise null
+	 */
+	void record(Setting<?> setting, Operation operation, long nanos, @Nullable Setting.SettingChangeResult result,
+	            @Nullable Throwable error);
+}
@@ -0,0 +1,179 @@
+package de.cubbossa.commonsettings;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Converts setting values from and to strings, so that commands, GUIs and web panels share one way of reading user
+ * input. Parsers for strings, booleans and numbers are registered by default, enums are supported without
+ * registration and parse their constant names case-insensitively.
+ * <br>
+ * Providers of settings with custom value types register a parser and serializer via
+ * {@link #register(Class, Parser, Serializer)}.
+ */
+public final class SettingParsers {
+
+	/**
+	 * @param <T> The type to parse
+	 */
+	@FunctionalInterface
+	public interface Parser<T> {
+		/**
+		 * @throws SettingValueParseException If the input does not represent a value of the type.
+		 */
+		T parse(String input) throws SettingValueParseException;
+	}
+
+	/**
+	 * @param <T> The type to serialize
+	 */
+	@FunctionalInterface
+	public interface Serializer<T> {
+		/**
+		 * @return A string that the parser of the same type turns back into the value.
+		 */
+		String serialize(T value);
+	}
+
+	private record Codec<T>(Parser<T> parser, Serializer<T> serializer) {
+	}
+
+	private final Map<Class<?>, Codec<?>> codecs = new ConcurrentHashMap<>();
+
+	public SettingParsers() {
+		register(String.class, input -> input, value -> value);
+		register(Boolean.class, input -> {
+			if (input.equalsIgnoreCase("true")) {
+				return true;
+			}
+			if (input.equalsIgnoreCase("false")) {
+				return false;
+			}
+			throw new SettingValueParseException(String.format("'%s' is not a boolean, expected true or false.", input));
+		}, String::valueOf);
+		registerNumber(Byte.class, Byte::parseByte);
+		registerNumber(Short.class, Short::parseShort);
+		registerNumber(Integer.class, Integer::parseInt);
+		registerNumber(Long.class, Long::parseLong);
+		registerNumber(Float.class, Float::parseFloat);
+		registerNumber(Double.class, Double::parseDouble);
+	}
+
+	private <T extends Number> void registerNumber(Class<T> type, Function<String, T> parse) {
+		register(type, input -> {
+			try {
+				return parse.apply(input);
+			} catch (NumberFormatException e) {
+				throw new SettingValueParseException(String.format("'%s' is not a valid %s.", input,
+						type.getSimpleName().toLowerCase(Locale.ROOT)), e);
+			}
+		}, String::valueOf);
+	}
+
+	/**
+	 * Registers a parser and serializer for a value type and replaces previously registered ones.
+	 *
+	 * @param type The exact value type, as returned by {@link Setting#getType()}
+	 */
+	public <T> void register(Class<T> type, Parser<T> parser, Serializer<T> serializer) {
+		codecs.put(type, new Codec<>(parser, serializer));
+	}
+
+	public void unregister(Class<?> type) {
+		codecs.remove(type);
+	}
+
+	/**
+	 * @return True if values of the given type can be parsed, either by a registered parser or because it is an enum.
+	 */
+	public boolean isSupported(Class<?> type) {
+		return codec(type) != null;
+	}
+
+	/**
+	 * @return The parser for the given type or null if the type is not supported.
+	 */
+	@Nullable
+	public <T> Parser<T> getParser(Class<T> type) {
+		Codec<T> codec = codec(type);
+		return codec == null ? null : codec.parser();
+	}
+
+	/**
+	 * @return The serializer for the given type or null if the type is not supported.
+	 */
+	@Nullable
+	public <T> Serializer<T> getSerializer(Class<T> type) {
+		Codec<T> codec = codec(type);
+		return codec == null ? null : codec.serializer();
+	}
+
+	/**
+	 * @throws SettingValueParseException If the type is not supported or the input is not a valid value. Other runtime
+	 *                                    exceptions thrown by the parser are wrapped.
+	 */
+	public <T> T parse(Class<T> type, String input) throws SettingValueParseException {
+		Codec<T> codec = codec(type);
+		if (codec == null) {
+			throw new SettingValueParseException(String.format("Values of type %s cannot be parsed.", type.getSimpleName()));
+		}
+		try {
+			return codec.parser().parse(input);
+		} catch (SettingValueParseException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			// custom parsers may throw the exceptions of the parse methods they delegate to
+			throw new SettingValueParseException(String.format("'%s' is not a valid %s.", input, type.getSimpleName()), e);
+		}
+	}
+
+	/**
+	 * Parses a value for the given setting, see {@link #parse(Class, String)}.
+	 */
+	public <T> T parse(Setting<T> setting, String input) throws SettingValueParseException {
+		return parse(setting.getType(), input);
+	}
+
+	/**
+	 * @return The serialized value, or {@link String#valueOf(Object)} of the value if the type is not supported.
+	 */
+	public <T> String serialize(Class<T> type, @Nullable T value) {
+		Codec<T> codec = codec(type);
+		return codec == null || value == null ? String.valueOf(value) : codec.serializer().serialize(value);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private <T> Codec<T> codec(Class<T> type) {
+		Codec<?> codec = codecs.get(type);
+		if (codec == null && type.isEnum()) {
+			// the lookup table of an enum is built once on first use
+			codec = codecs.computeIfAbsent(type, t -> enumCodec((Class) t));
+		}
+		return (Codec<T>) codec;
+	}
+
+	private static <E extends Enum<E>> Codec<E> enumCodec(Class<E> type) {
+		E[] constants = type.getEnumConstants();
+		// exact names are tried first, so that the common case does not have to lower case the input
+		Map<String, E> byName = new HashMap<>(constants.length * 8 / 3 + 1);
+		for (E constant : constants) {
+			byName.put(constant.name(), constant);
+			byName.putIfAbsent(constant.name().toLowerCase(Locale.ROOT), constant);
+		}
+		return new Codec<>(input -> {
+			E constant = byName.get(input);
+			if (constant == null) {
+				constant = byName.get(input.toLowerCase(Locale.ROOT));
+			}
+			if (constant == null) {
+				throw new SettingValueParseException(String.format("'%s' is not a valid %s.", input, type.getSimpleName()));
+			}
+			return constant;
+		}, Enum::name);
+	}
+}
@@ -0,0 +1,102 @@
+package de.cubbossa.commonsettings;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A reusable set of values for multiple settings, e.g. a "streamer mode" that changes the settings of several plugins
+ * at once. Presets are applied to one UUID with {@link SettingsAPI#applyPreset(UUID, SettingPreset)}.
+ * <br>
+ * Settings can be given directly or by key. Keys are resolved when the preset is applied, so that presets may refer
+ * to settings of plugins that are loaded later.
+ */
+public final class SettingPreset {
+
+	/**
+	 * @param key     The key of the setting
+	 * @param setting The setting or null if it is resolved by key
+	 * @param value   The value to set
+	 */
+	record Entry(NamespacedKey key, @Nullable Setting<?> setting, @Nullable Object value) {
+	}
+
+	public enum Outcome {
+		/**
+		 * All values were changed.
+		 */
+		APPLIED,
+		/**
+		 * At least one value could not be changed and all changed values were set back to their previous values.
+		 */
+		REVERTED,
+		/**
+		 * At least one value could not be changed and some changed values could not be set back either, see
+		 * {@link Result#notReverted()}.
+		 */
+		PARTIALLY_REVERTED
+	}
+
+	/**
+	 * @param outcome     Whether the preset was applied as a whole
+	 * @param results     The result of every value that was set, by setting key. Settings that are unknown are
+	 *                    reported as {@link Setting.SettingChangeResult#FAIL_OTHER}. Settings that were not set,
+	 *                    because another setting of the same plugin failed before, are missing.
+	 * @param notReverted The settings that keep the value of the preset although the preset failed
+	 */
+	public record Result(Outcome outcome, Map<NamespacedKey, Setting.SettingChangeResult> results,
+	                     Set<NamespacedKey> notReverted) {
+
+		public boolean isApplied() {
+			return outcome == Outcome.APPLIED;
+		}
+	}
+
+	private final List<Entry> entries;
+
+	private SettingPreset(Collection<Entry> entries) {
+		this.entries = List.copyOf(entries);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	List<Entry> getEntries() {
+		return entries;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public static final class Builder {
+
+		private final Map<NamespacedKey, Entry> entries = new LinkedHashMap<>();
+
+		private Builder() {
+		}
+
+		/**
+		 * Adds a value for a setting and replaces a previously added value of the same setting. The values of one
+		 * plugin are set in the order they were added.
+		 */
+		public <T> Builder with(Setting<T> setting, @Nullable T value) {
+			entries.put(setting.getKey(), new Entry(setting.getKey(), setting, value));
+			return this;
+		}
+
+		/**
+		 * Adds a value for the setting with the given key, which is looked up when the preset is applied. The value must
+		 * be of the type of the setting.
+		 */
+		public Builder with(NamespacedKey key, @Nullable Object value) {
+			entries.put(key, new Entry(key, null, value));
+			return this;
+		}
+
+		public SettingPreset build() {
+			return new SettingPreset(entries.values());
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package de.cubbossa.commonsettings;
+
+/**
+ * Thrown by the synchronous getter of a setting if the underlying asynchronous getter did not complete in time and
+ * the setting was built with {@link SettingBuilder.SyncFallback#FAIL}.
+ */
+public class SettingTimeoutException extends RuntimeException {
+
+	public SettingTimeoutException(String message) {
+		super(message);
+	}
+
+	public SettingTimeoutException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
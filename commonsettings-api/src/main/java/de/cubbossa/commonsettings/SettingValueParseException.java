@@ -0,0 +1,15 @@
+package de.cubbossa.commonsettings;
+
+/**
+ * Thrown by {@link SettingParsers} if a string is not a valid value of the requested type.
+ */
+public class SettingValueParseException extends RuntimeException {
+
+	public SettingValueParseException(String message) {
+		super(message);
+	}
+
+	public SettingValueParseException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
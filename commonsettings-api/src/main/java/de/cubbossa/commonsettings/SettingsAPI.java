@@ -1,6 +1,9 @@
 package de.cubbossa.commonsettings;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 public class SettingsAPI {
 
@@ -12,80 +15,333 @@ public class SettingsAPI {
 		return Holder.INSTANCE;
 	}
 
-	private final HashMap<NamespacedKey, Setting<?>> registeredSettings;
+	/**
+	 * Providers register from their main thread while consumers read from any thread, e.g. for GUIs or web panels.
+	 * Lookups therefore never lock, and register/unregister are single atomic map operations.
+	 */
+	private final ConcurrentHashMap<NamespacedKey, Setting<?>> registeredSettings;
+
+	/**
+	 * Secondary indexes, updated on register/unregister so that queries don't have to scan the whole registry.
+	 * Writes to the registry and the indexes happen while holding {@link #writeLock}, reads never lock.
+	 */
+	private final PostingList allSettings;
+	private final ConcurrentHashMap<String, PostingList> namespaceIndex;
+	private final ConcurrentHashMap<Class<?>, PostingList> typeIndex;
+	private final ConcurrentHashMap<String, PostingList> tagIndex;
+	/**
+	 * All settings sorted by the string form of their key, for prefix queries and paging without sorting the registry.
+	 */
+	private final ConcurrentSkipListMap<String, Setting<?>> keyIndex;
+	/**
+	 * The values of the key index as list for random access paging, rebuilt on the first page query after a change.
+	 */
+	private volatile List<Setting<?>> sortedSnapshot = null;
+	private final Object writeLock = new Object();
+	private final SettingExecutors executors = new SettingExecutors();
+	private final SettingChangeBus changeBus = new SettingChangeBus();
+	private final SessionCache sessions = new SessionCache();
+	private final SettingParsers parsers = new SettingParsers();
+	private final SettingCodecs codecs = new SettingCodecs(parsers);
+	private final DisplayCache displayCache = new DisplayCache();
+	private volatile SettingInstrumentation instrumentation = SettingInstrumentation.NOOP;
 
 	protected SettingsAPI() {
 
-		registeredSettings = new HashMap<>();
+		registeredSettings = new ConcurrentHashMap<>();
+		allSettings = new PostingList();
+		namespaceIndex = new ConcurrentHashMap<>();
+		typeIndex = new ConcurrentHashMap<>();
+		tagIndex = new ConcurrentHashMap<>();
+		keyIndex = new ConcurrentSkipListMap<>();
+	}
+
+	/**
+	 * @return The executors that decide on which thread setters run, see {@link SettingExecutors}.
+	 */
+	public SettingExecutors getExecutors() {
+		return executors;
+	}
+
+	/**
+	 * @return The bus to listen for and cancel changes of the settings registered with this API, see
+	 * {@link SettingChangeBus}. Settings that are not registered publish to the bus of {@link #getInstance()}.
+	 */
+	public SettingChangeBus getChangeBus() {
+		return changeBus;
+	}
+
+	/**
+	 * @return The values of settings for UUIDs with an open session, see {@link SessionCache}.
+	 */
+	public SessionCache getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * @return The parsers and serializers that convert setting values from and to strings, see {@link SettingParsers}.
+	 */
+	public SettingParsers getParsers() {
+		return parsers;
+	}
+
+	/**
+	 * @return The codecs that storages use to persist setting values, see {@link SettingCodecs}.
+	 */
+	public SettingCodecs getCodecs() {
+		return codecs;
+	}
+
+	/**
+	 * @return The cache of rendered titles and descriptions per locale, see {@link DisplayCache}.
+	 */
+	public DisplayCache getDisplayCache() {
+		return displayCache;
+	}
+
+	/**
+	 * @return The instrumentation that receives all getter and setter calls, {@link SettingInstrumentation#NOOP} by
+	 * default.
+	 */
+	public SettingInstrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
+	/**
+	 * @param instrumentation The instrumentation for all getter and setter calls of settings built with
+	 *                        {@link SettingBuilder} that are registered with this API, e.g. {@link SettingsMetrics}.
+	 *                        Null disables the instrumentation.
+	 */
+	public void setInstrumentation(SettingInstrumentation instrumentation) {
+		this.instrumentation = instrumentation == null ? SettingInstrumentation.NOOP : instrumentation;
 	}
 
 	public <S extends Setting<?>> void registerSetting(S setting) throws DuplicateKeyException {
-		if (registeredSettings.containsKey(setting.getKey())) {
-			throw new DuplicateKeyException(String.format("Another setting with the key \"%s\" is already registered.", setting.getKey()));
+		synchronized (writeLock) {
+			if (registeredSettings.putIfAbsent(setting.getKey(), setting) != null) {
+				throw new DuplicateKeyException(String.format("Another setting with the key \"%s\" is already registered.", setting.getKey()));
+			}
+			SettingBuilder.bind(setting, this);
+			allSettings.add(setting);
+			keyIndex.put(setting.getKey().toString(), setting);
+			sortedSnapshot = null;
+			addToIndex(namespaceIndex, setting.getKey().getNamespace(), setting);
+			addToIndex(typeIndex, setting.getType(), setting);
+			for (String tag : setting.getTags()) {
+				addToIndex(tagIndex, tag, setting);
+			}
 		}
-		registeredSettings.put(setting.getKey(), setting);
 	}
 
 	public <S extends Setting<?>> void unregisterSetting(S setting) {
-		unregisterSetting(setting.getKey());
+		synchronized (writeLock) {
+			// only remove the given instance, a reloaded plugin might already have registered a new one under the same key
+			if (registeredSettings.remove(setting.getKey(), setting)) {
+				removeFromIndexes(setting);
+			}
+		}
 	}
 
 	public void unregisterSetting(NamespacedKey key) {
-		registeredSettings.remove(key);
+		synchronized (writeLock) {
+			Setting<?> setting = registeredSettings.remove(key);
+			if (setting != null) {
+				removeFromIndexes(setting);
+			}
+		}
+	}
+
+	private void removeFromIndexes(Setting<?> setting) {
+		displayCache.invalidate(setting);
+		allSettings.remove(setting);
+		keyIndex.remove(setting.getKey().toString(), setting);
+		sortedSnapshot = null;
+		removeFromIndex(namespaceIndex, setting.getKey().getNamespace(), setting);
+		removeFromIndex(typeIndex, setting.getType(), setting);
+		for (String tag : setting.getTags()) {
+			removeFromIndex(tagIndex, tag, setting);
+		}
+	}
+
+	private static <K> void addToIndex(Map<K, PostingList> index, K key, Setting<?> setting) {
+		index.computeIfAbsent(key, k -> new PostingList()).add(setting);
+	}
+
+	private static <K> void removeFromIndex(Map<K, PostingList> index, K key, Setting<?> setting) {
+		PostingList postings = index.get(key);
+		if (postings == null) {
+			return;
+		}
+		postings.remove(setting);
+		if (postings.isEmpty()) {
+			index.remove(key);
+		}
 	}
 
+	private static <K> List<Setting<?>> lookup(Map<K, PostingList> index, K key) {
+		PostingList postings = index.get(key);
+		return postings == null ? Collections.emptyList() : postings.snapshot();
+	}
+
+	/**
+	 * @return An immutable snapshot of all registered settings.
+	 */
 	public List<Setting<?>> getSettings() {
-		return new ArrayList<>(registeredSettings.values());
+		return allSettings.snapshot();
 	}
 
-	public List<Setting<?>> getSettings(String plugin) {
-		List<Setting<?>> settings = new ArrayList<>();
-		for (Setting<?> setting : registeredSettings.values()) {
-			if (setting.getKey().getNamespace().equals(plugin)) {
-				settings.add(setting);
+	/**
+	 * @return The amount of registered settings.
+	 */
+	public int getSettingCount() {
+		return registeredSettings.size();
+	}
+
+	/**
+	 * Returns one page of all settings in the order of their keys, e.g. to list settings in a command.
+	 *
+	 * @param offset The amount of settings to skip
+	 * @param limit  The maximum amount of settings to return
+	 * @return An immutable list of at most limit settings, sorted by key.
+	 */
+	public List<Setting<?>> getSettingsSorted(int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("Offset and limit must not be negative.");
+		}
+		List<Setting<?>> sorted = sortedSnapshot;
+		if (sorted == null) {
+			// build while holding the write lock, so that a concurrent change cannot be overwritten by a stale snapshot
+			synchronized (writeLock) {
+				sorted = sortedSnapshot;
+				if (sorted == null) {
+					sorted = List.copyOf(keyIndex.values());
+					sortedSnapshot = sorted;
+				}
 			}
 		}
-		return settings;
+		if (offset >= sorted.size()) {
+			return Collections.emptyList();
+		}
+		return sorted.subList(offset, (int) Math.min(sorted.size(), (long) offset + limit));
 	}
 
-	public <S extends Setting<T>, T> List<S> getSettings(Class<T> type) {
-		List<S> settings = new ArrayList<>();
-		for (Setting<?> setting : registeredSettings.values()) {
-			if (type.equals(setting.getType())) {
-				settings.add((S) setting);
+	/**
+	 * Finds settings whose key starts with the given string, e.g. to complete a partially typed key. Only the matching
+	 * range of the sorted key index is visited.
+	 *
+	 * @param prefix The beginning of the string form "namespace:key" of the settings, case-insensitive
+	 * @param limit  The maximum amount of settings to return
+	 * @return An immutable list of at most limit settings, sorted by key.
+	 */
+	public List<Setting<?>> getSettingsWithPrefix(String prefix, int limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("Limit must not be negative.");
+		}
+		String lowerCase = prefix.toLowerCase();
+		List<Setting<?>> settings = new ArrayList<>(Math.min(limit, 64));
+		for (Map.Entry<String, Setting<?>> entry : keyIndex.tailMap(lowerCase).entrySet()) {
+			if (settings.size() >= limit || !entry.getKey().startsWith(lowerCase)) {
+				break;
 			}
+			settings.add(entry.getValue());
 		}
-		return settings;
+		return Collections.unmodifiableList(settings);
+	}
+
+	/**
+	 * @param plugin The namespace of the settings
+	 * @return An immutable snapshot of all settings within the given namespace.
+	 */
+	public List<Setting<?>> getSettings(String plugin) {
+		return lookup(namespaceIndex, plugin);
 	}
 
+	/**
+	 * @param type The exact value type of the settings
+	 * @return An immutable snapshot of all settings with the given value type.
+	 */
+	public <S extends Setting<T>, T> List<S> getSettings(Class<T> type) {
+		return (List<S>) (List<?>) lookup(typeIndex, type);
+	}
+
+	/**
+	 * @param tag The tag to search for
+	 * @return An immutable snapshot of all settings with the given tag.
+	 */
 	public List<Setting<?>> getSettingsWithTag(String tag) {
-		List<Setting<?>> settings = new ArrayList<>();
-		for (Setting<?> setting : registeredSettings.values()) {
-			if (setting.getTags().contains(tag)) {
-				settings.add(setting);
-			}
-		}
-		return settings;
+		return lookup(tagIndex, tag);
 	}
 
+	/**
+	 * Intersects the posting lists of all given tags, starting with the smallest one.
+	 *
+	 * @param tags The tags that all returned settings must have
+	 * @return An immutable list of all settings that have all given tags.
+	 */
 	public List<Setting<?>> getSettingsWithAllTags(Collection<String> tags) {
-		List<Setting<?>> settings = new ArrayList<>();
-		for (Setting<?> setting : registeredSettings.values()) {
+		if (tags.isEmpty()) {
+			return getSettings();
+		}
+		List<Setting<?>> smallest = null;
+		for (String tag : tags) {
+			List<Setting<?>> postings = lookup(tagIndex, tag);
+			if (postings.isEmpty()) {
+				return Collections.emptyList();
+			}
+			if (smallest == null || postings.size() < smallest.size()) {
+				smallest = postings;
+			}
+		}
+		if (tags.size() == 1) {
+			return smallest;
+		}
+		List<Setting<?>> settings = new ArrayList<>(smallest.size());
+		for (Setting<?> setting : smallest) {
 			if (setting.getTags().containsAll(tags)) {
 				settings.add(setting);
 			}
 		}
-		return settings;
+		return Collections.unmodifiableList(settings);
 	}
 
+	/**
+	 * Unites the posting lists of all given tags, starting with the smallest one.
+	 *
+	 * @param tags The tags of which all returned settings must have at least one
+	 * @return An immutable list of all settings that have at least one of the given tags.
+	 */
 	public List<Setting<?>> getSettingsWithSomeTags(Collection<String> tags) {
-		List<Setting<?>> settings = new ArrayList<>();
-		for (Setting<?> setting : registeredSettings.values()) {
-			if (setting.getTags().stream().anyMatch(tags::contains)) {
-				settings.add(setting);
+		List<List<Setting<?>>> postingLists = new ArrayList<>(tags.size());
+		int total = 0;
+		for (String tag : tags) {
+			List<Setting<?>> postings = lookup(tagIndex, tag);
+			if (!postings.isEmpty()) {
+				postingLists.add(postings);
+				total += postings.size();
 			}
 		}
-		return settings;
+		if (postingLists.isEmpty()) {
+			return Collections.emptyList();
+		}
+		if (postingLists.size() == 1) {
+			return postingLists.get(0);
+		}
+		postingLists.sort(Comparator.comparingInt(List::size));
+		Set<Setting<?>> settings = new LinkedHashSet<>(total * 4 / 3 + 1);
+		for (List<Setting<?>> postings : postingLists) {
+			settings.addAll(postings);
+		}
+		return List.copyOf(settings);
+	}
+
+	/**
+	 * Sets the values of a preset for one UUID as one unit. Values of different plugins are set in parallel. If one
+	 * value cannot be set, all values that were already changed are set back to their previous values.
+	 *
+	 * @return A future of the aggregated result, which never completes exceptionally due to a failing setting.
+	 */
+	public CompletableFuture<SettingPreset.Result> applyPreset(UUID uuid, SettingPreset preset) {
+		return new PresetTransaction(this, uuid).apply(preset);
 	}
 
 	public <T> Setting<T> getSetting(String plugin, String key) {
@@ -99,4 +355,20 @@ public class SettingsAPI {
 		}
 		return setting;
 	}
+
+	/**
+	 * Requests the values of multiple settings for one UUID, e.g. to render a settings GUI. All values are requested
+	 * in parallel.
+	 *
+	 * @param uuid     The UUID to get the setting values for
+	 * @param settings The settings to request the values of
+	 * @return A completable future that completes with a map of all setting keys to their values.
+	 */
+	public CompletableFuture<Map<NamespacedKey, Object>> requestValues(UUID uuid, Collection<? extends Setting<?>> settings) {
+		Map<NamespacedKey, CompletableFuture<?>> futures = new HashMap<>();
+		for (Setting<?> setting : settings) {
+			futures.put(setting.getKey(), setting.requestValue(uuid));
+		}
+		return Futures.joinAll(futures);
+	}
 }
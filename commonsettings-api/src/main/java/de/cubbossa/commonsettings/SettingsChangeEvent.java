@@ -0,0 +1,32 @@
+package de.cubbossa.commonsettings;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * Describes the change of a setting value for one UUID. The event is passed to all listeners that were registered
+ * via {@link SettingChangeBus#beforeChange} before the value is written. They may cancel it, in which case the setter
+ * returns {@link Setting.SettingChangeResult#FAIL_EVENT_CANCELLED}. After a successful write, the same event is passed
+ * to all listeners that were registered via {@link SettingChangeBus#onChange}.
+ *
+ * @param <T> The value type of the changed setting
+ */
+@Getter
+public class SettingsChangeEvent<T> {
+
+	private final Setting<T> setting;
+	private final UUID uuid;
+	private final T oldValue;
+	private final T newValue;
+	@Setter
+	private volatile boolean cancelled = false;
+
+	public SettingsChangeEvent(Setting<T> setting, UUID uuid, T oldValue, T newValue) {
+		this.setting = setting;
+		this.uuid = uuid;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+}
@@ -0,0 +1,117 @@
+package de.cubbossa.commonsettings;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link SettingInstrumentation} that keeps per setting call counts, latency histograms and results. Exporters can
+ * read the collected metrics via {@link #getMetrics()}.
+ */
+public final class SettingsMetrics implements SettingInstrumentation {
+
+	private final ConcurrentHashMap<NamespacedKey, Metrics> metrics = new ConcurrentHashMap<>();
+
+	@Override
+	public void record(Setting<?> setting, Operation operation, long nanos, @Nullable Setting.SettingChangeResult result,
+	                   @Nullable Throwable error) {
+		Metrics metrics = this.metrics.get(setting.getKey());
+		if (metrics == null) {
+			metrics = this.metrics.computeIfAbsent(setting.getKey(), k -> new Metrics());
+		}
+		metrics.record(operation, nanos, result, error);
+	}
+
+	/**
+	 * @return An unmodifiable live view of the metrics of all settings that were called so far.
+	 */
+	public Map<NamespacedKey, Metrics> getMetrics() {
+		return Collections.unmodifiableMap(metrics);
+	}
+
+	/**
+	 * @return The metrics of the given setting, or null if it was not called so far.
+	 */
+	@Nullable
+	public Metrics getMetrics(NamespacedKey key) {
+		return metrics.get(key);
+	}
+
+	public void reset() {
+		metrics.clear();
+	}
+
+	/**
+	 * The metrics of one setting. Histograms are created on the first call of each operation.
+	 */
+	public static final class Metrics {
+
+		private static final Operation[] OPERATIONS = Operation.values();
+		private static final Setting.SettingChangeResult[] RESULTS = Setting.SettingChangeResult.values();
+
+		private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(OPERATIONS.length);
+		private final LongAdder[] results = new LongAdder[RESULTS.length];
+		private final LongAdder errors = new LongAdder();
+
+		Metrics() {
+			for (int i = 0; i < results.length; i++) {
+				results[i] = new LongAdder();
+			}
+		}
+
+		void record(Operation operation, long nanos, @Nullable Setting.SettingChangeResult result, @Nullable Throwable error) {
+			LatencyHistogram histogram = latencies.get(operation.ordinal());
+			if (histogram == null) {
+				latencies.compareAndSet(operation.ordinal(), null, new LatencyHistogram());
+				histogram = latencies.get(operation.ordinal());
+			}
+			histogram.record(nanos);
+			if (error != null) {
+				errors.increment();
+			} else if (result != null) {
+				results[result.ordinal()].increment();
+			}
+		}
+
+		/**
+		 * @return The latencies of the given operation, or null if the operation was never called.
+		 */
+		@Nullable
+		public LatencyHistogram getLatency(Operation operation) {
+			return latencies.get(operation.ordinal());
+		}
+
+		public long getCalls(Operation operation) {
+			LatencyHistogram histogram = getLatency(operation);
+			return histogram == null ? 0 : histogram.getCount();
+		}
+
+		/**
+		 * @return How often a setter or reset call returned the given result.
+		 */
+		public long getResults(Setting.SettingChangeResult result) {
+			return results[result.ordinal()].sum();
+		}
+
+		/**
+		 * @return How often a call failed with an exception.
+		 */
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		/**
+		 * @return The share of blocking getValue calls among all getter calls from 0 to 1, or 0 if the getters were
+		 * never called.
+		 */
+		public double getSyncRatio() {
+			long sync = getCalls(Operation.GET_VALUE);
+			long total = sync + getCalls(Operation.REQUEST_VALUE);
+			return total == 0 ? 0 : sync / (double) total;
+		}
+	}
+}
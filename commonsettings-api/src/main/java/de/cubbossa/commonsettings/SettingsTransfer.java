@@ -0,0 +1,490 @@
+package de.cubbossa.commonsettings;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Exports the values of settings for many UUIDs into a binary stream and imports them again, e.g. to migrate to
+ * another storage, to create backups or to hand out all values of a player.
+ * <br>
+ * Values are requested and written in chunks of UUIDs, so that only one chunk is held in memory at a time. Each UUID
+ * is written as one length-prefixed block of all its values. Values are stored in the binary form of
+ * {@link SettingCodecs}, settings whose value type has no codec are not exported. Exports of version 1, which stored
+ * values in the string form of {@link SettingParsers}, can still be imported.
+ * <br>
+ * Both directions block the calling thread until the whole stream is processed and must not be called from the main
+ * thread.
+ */
+public final class SettingsTransfer {
+
+	static final int MAGIC = 0x43535831;
+	static final byte VERSION = 2;
+	private static final byte VERSION_PARSERS = 1;
+	static final int CHUNK_SIZE = 512;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_BLOCK_SIZE = 1 << 24;
+	private static final int END = 0;
+	private static final int NULL = -1;
+
+	/**
+	 * @param uuids  The amount of UUIDs processed so far
+	 * @param values The amount of values processed so far
+	 * @param bytes  The amount of bytes written or read so far
+	 */
+	public record Progress(long uuids, long values, long bytes) {
+	}
+
+	/**
+	 * @param skippedSettings The settings that were not exported, because their value type can't be serialized
+	 */
+	public record ExportResult(long uuids, long values, long bytes, List<NamespacedKey> skippedSettings) {
+	}
+
+	/**
+	 * @param results         The amount of values per result of the setter
+	 * @param invalidValues   The amount of values that could not be decoded and were not set
+	 * @param unknownSettings The settings of the stream that are not registered, their values were not set
+	 */
+	public record ImportResult(long uuids, long values, long bytes, Map<Setting.SettingChangeResult, Long> results,
+	                           long invalidValues, List<NamespacedKey> unknownSettings) {
+	}
+
+	private final SettingsAPI api;
+
+	public SettingsTransfer() {
+		this(SettingsAPI.getInstance());
+	}
+
+	public SettingsTransfer(SettingsAPI api) {
+		this.api = api;
+	}
+
+	/**
+	 * Exports the values of all registered settings, see {@link #export(WritableByteChannel, Iterable, Collection, Consumer)}.
+	 */
+	public ExportResult export(WritableByteChannel channel, Iterable<UUID> uuids) throws IOException {
+		return export(channel, uuids, api.getSettings(), null);
+	}
+
+	/**
+	 * Writes the values of the given settings for all given UUIDs into the channel. The values of the next chunk of
+	 * UUIDs are requested while the current chunk is written.
+	 *
+	 * @param channel  The channel to write to, it is not closed
+	 * @param uuids    The UUIDs to export the values of, e.g. all players that ever joined. Iterated only once.
+	 * @param settings The settings to export
+	 * @param progress Is called after every chunk
+	 * @throws IOException If writing to the channel fails, a value can't be encoded by its codec or the values of one
+	 *                     UUID exceed the block size that {@link #importValues(ReadableByteChannel, Consumer)} accepts
+	 */
+	public ExportResult export(WritableByteChannel channel, Iterable<UUID> uuids, Collection<? extends Setting<?>> settings,
+	                           @Nullable Consumer<Progress> progress) throws IOException {
+		List<Setting<?>> exported = new ArrayList<>();
+		List<NamespacedKey> skipped = new ArrayList<>();
+		for (Setting<?> setting : settings) {
+			if (api.getCodecs().isSupported(setting.getType())) {
+				exported.add(setting);
+			} else {
+				skipped.add(setting.getKey());
+			}
+		}
+		if (exported.size() > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("At most " + Short.MAX_VALUE + " settings can be exported at once.");
+		}
+		ChannelWriter writer = new ChannelWriter(channel);
+		writer.putInt(MAGIC);
+		writer.put(VERSION);
+		writer.putShort((short) exported.size());
+		for (Setting<?> setting : exported) {
+			writer.putString(setting.getKey().toString());
+			writer.putString(setting.getType().getName());
+		}
+
+		Iterator<UUID> iterator = uuids.iterator();
+		List<UUID> chunk = nextChunk(iterator);
+		CompletableFuture<List<Map<UUID, ?>>> values = request(exported, chunk);
+		long uuidCount = 0;
+		long valueCount = 0;
+		ByteBuffer block = ByteBuffer.allocate(BUFFER_SIZE);
+		while (!chunk.isEmpty()) {
+			List<Map<UUID, ?>> chunkValues = join(values);
+			List<UUID> next = nextChunk(iterator);
+			values = request(exported, next);
+			for (UUID uuid : chunk) {
+				block.clear();
+				block = putUUIDBlock(block, uuid, exported, chunkValues);
+				block.flip();
+				if (block.remaining() > MAX_BLOCK_SIZE) {
+					throw new IOException("The values of " + uuid + " exceed the maximum block size of " + MAX_BLOCK_SIZE + " bytes.");
+				}
+				writer.putInt(block.remaining());
+				writer.put(block);
+			}
+			uuidCount += chunk.size();
+			valueCount += (long) chunk.size() * exported.size();
+			if (progress != null) {
+				progress.accept(new Progress(uuidCount, valueCount, writer.written + writer.buffer.position()));
+			}
+			chunk = next;
+		}
+		writer.putInt(END);
+		writer.flush();
+		return new ExportResult(uuidCount, valueCount, writer.written, List.copyOf(skipped));
+	}
+
+	private static List<UUID> nextChunk(Iterator<UUID> iterator) {
+		List<UUID> chunk = new ArrayList<>(CHUNK_SIZE);
+		while (chunk.size() < CHUNK_SIZE && iterator.hasNext()) {
+			chunk.add(iterator.next());
+		}
+		return chunk;
+	}
+
+	private static CompletableFuture<List<Map<UUID, ?>>> request(List<Setting<?>> settings, List<UUID> uuids) {
+		if (uuids.isEmpty()) {
+			return CompletableFuture.completedFuture(List.of());
+		}
+		List<CompletableFuture<? extends Map<UUID, ?>>> futures = new ArrayList<>(settings.size());
+		for (Setting<?> setting : settings) {
+			futures.add(setting.requestValues(uuids));
+		}
+		return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+				.thenApply(unused -> futures.stream().<Map<UUID, ?>>map(CompletableFuture::join).toList());
+	}
+
+	private ByteBuffer putUUIDBlock(ByteBuffer block, UUID uuid, List<Setting<?>> settings, List<Map<UUID, ?>> values)
+			throws IOException {
+		block = ensure(block, 16 + Short.BYTES);
+		block.putLong(uuid.getMostSignificantBits());
+		block.putLong(uuid.getLeastSignificantBits());
+		block.putShort((short) settings.size());
+		for (int i = 0; i < settings.size(); i++) {
+			Object value = values.get(i).get(uuid);
+			try {
+				block = putValue(block, i, settings.get(i), value);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Could not encode the value of " + settings.get(i).getKey() + " for " + uuid + ".", e);
+			}
+		}
+		return block;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> ByteBuffer putValue(ByteBuffer block, int index, Setting<T> setting, @Nullable Object value) {
+		if (value == null) {
+			block = ensure(block, Short.BYTES + Integer.BYTES);
+			return block.putShort((short) index).putInt(NULL);
+		}
+		SettingCodec<T> codec = api.getCodecs().get(setting.getType());
+		block = ensure(block, Short.BYTES + Integer.BYTES + codec.maxSize((T) value));
+		block.putShort((short) index);
+		// the length is known once the value is encoded
+		int lengthPosition = block.position();
+		block.position(lengthPosition + Integer.BYTES);
+		codec.write(block, (T) value);
+		return block.putInt(lengthPosition, block.position() - lengthPosition - Integer.BYTES);
+	}
+
+	private static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+		if (buffer.remaining() >= bytes) {
+			return buffer;
+		}
+		ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+		buffer.flip();
+		return grown.put(buffer);
+	}
+
+	/**
+	 * Sets all values of the stream to the registered settings with the same keys. The values of up to
+	 * {@link #CHUNK_SIZE} UUIDs are set with one {@link Setting#setValues(Map)} call per setting, the next values are
+	 * read once all of them completed.
+	 *
+	 * @param channel  The channel to read from, it is not closed
+	 * @param progress Is called after every chunk
+	 * @throws IOException If reading fails or the stream is no settings export or corrupt
+	 */
+	public ImportResult importValues(ReadableByteChannel channel, @Nullable Consumer<Progress> progress) throws IOException {
+		ChannelReader reader = new ChannelReader(channel);
+		reader.require(Integer.BYTES + 1 + Short.BYTES);
+		if (reader.buffer.getInt() != MAGIC) {
+			throw new IOException("The stream is not a settings export.");
+		}
+		byte version = reader.buffer.get();
+		if (version != VERSION && version != VERSION_PARSERS) {
+			throw new IOException("Unsupported settings export version " + version + ".");
+		}
+		short settingCount = reader.buffer.getShort();
+		if (settingCount < 0) {
+			throw new IOException("Invalid setting count " + settingCount + ".");
+		}
+		Setting<?>[] settings = new Setting[settingCount];
+		List<NamespacedKey> unknown = new ArrayList<>();
+		for (int i = 0; i < settings.length; i++) {
+			NamespacedKey key;
+			try {
+				key = NamespacedKey.fromString(reader.getString());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid setting key in settings export.", e);
+			}
+			reader.getString();
+			try {
+				settings[i] = api.getSetting(key);
+			} catch (NoSuchElementException e) {
+				unknown.add(key);
+			}
+		}
+
+		Map<Setting<?>, Map<UUID, Object>> pending = new LinkedHashMap<>();
+		long[] results = new long[Setting.SettingChangeResult.values().length];
+		long uuidCount = 0;
+		long valueCount = 0;
+		long invalid = 0;
+		int pendingUuids = 0;
+		while (true) {
+			reader.require(Integer.BYTES);
+			int length = reader.buffer.getInt();
+			if (length == END) {
+				break;
+			}
+			if (length < 16 + Short.BYTES || length > MAX_BLOCK_SIZE) {
+				throw new IOException("Invalid block length " + length + ".");
+			}
+			reader.require(length);
+			ByteBuffer block = reader.buffer.slice(reader.buffer.position(), length);
+			reader.buffer.position(reader.buffer.position() + length);
+
+			UUID uuid = new UUID(block.getLong(), block.getLong());
+			int count = block.getShort();
+			if (count < 0) {
+				throw new IOException("Invalid value count " + count + " for " + uuid + ".");
+			}
+			for (int i = 0; i < count; i++) {
+				if (block.remaining() < Short.BYTES + Integer.BYTES) {
+					throw new IOException("The block of " + uuid + " ended unexpectedly.");
+				}
+				int index = block.getShort();
+				int valueLength = block.getInt();
+				if (index < 0 || index >= settings.length) {
+					throw new IOException("Invalid setting index " + index + " for " + uuid + ".");
+				}
+				if (valueLength != NULL && (valueLength < 0 || valueLength > block.remaining())) {
+					throw new IOException("Invalid value length " + valueLength + " for " + uuid + ".");
+				}
+				ByteBuffer encoded = null;
+				if (valueLength != NULL) {
+					encoded = block.slice(block.position(), valueLength);
+					block.position(block.position() + valueLength);
+				}
+				valueCount++;
+				Setting<?> setting = settings[index];
+				if (setting == null) {
+					continue;
+				}
+				Object value;
+				if (encoded == null) {
+					if (!setting.getFlags().nullable()) {
+						invalid++;
+						continue;
+					}
+					value = null;
+				} else {
+					try {
+						value = decode(setting.getType(), encoded, version);
+					} catch (IllegalArgumentException | SettingValueParseException e) {
+						invalid++;
+						continue;
+					}
+				}
+				pending.computeIfAbsent(setting, s -> new HashMap<>()).put(uuid, value);
+			}
+			uuidCount++;
+			if (++pendingUuids >= CHUNK_SIZE) {
+				setAll(pending, results);
+				pendingUuids = 0;
+				if (progress != null) {
+					progress.accept(new Progress(uuidCount, valueCount, reader.consumed()));
+				}
+			}
+		}
+		setAll(pending, results);
+		if (progress != null) {
+			progress.accept(new Progress(uuidCount, valueCount, reader.consumed()));
+		}
+		Map<Setting.SettingChangeResult, Long> resultCounts = new EnumMap<>(Setting.SettingChangeResult.class);
+		for (Setting.SettingChangeResult result : Setting.SettingChangeResult.values()) {
+			if (results[result.ordinal()] > 0) {
+				resultCounts.put(result, results[result.ordinal()]);
+			}
+		}
+		return new ImportResult(uuidCount, valueCount, reader.consumed(), Collections.unmodifiableMap(resultCounts),
+				invalid, List.copyOf(unknown));
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the type has no codec or the bytes are no valid value
+	 */
+	private Object decode(Class<?> type, ByteBuffer encoded, byte version) throws SettingValueParseException {
+		if (version == VERSION_PARSERS) {
+			return api.getParsers().parse(type, SettingCodecs.getUtf8(encoded, encoded.remaining()));
+		}
+		SettingCodec<?> codec = api.getCodecs().get(type);
+		if (codec == null) {
+			throw new IllegalArgumentException("No codec for " + type.getName() + ".");
+		}
+		return codec.read(encoded);
+	}
+
+	private static void setAll(Map<Setting<?>, Map<UUID, Object>> pending, long[] results) throws IOException {
+		List<CompletableFuture<Map<UUID, Setting.SettingChangeResult>>> futures = new ArrayList<>(pending.size());
+		pending.forEach((setting, values) -> futures.add(setValues(setting, values)));
+		pending.clear();
+		for (CompletableFuture<Map<UUID, Setting.SettingChangeResult>> future : futures) {
+			for (Setting.SettingChangeResult result : join(future).values()) {
+				results[result.ordinal()]++;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> CompletableFuture<Map<UUID, Setting.SettingChangeResult>> setValues(Setting<T> setting,
+	                                                                                      Map<UUID, Object> values) {
+		return setting.setValues((Map<UUID, T>) (Map<UUID, ?>) values);
+	}
+
+	private static <T> T join(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			throw new IOException("Could not transfer setting values.", e.getCause());
+		}
+	}
+
+	/**
+	 * Buffers writes to a channel.
+	 */
+	private static final class ChannelWriter {
+		private final WritableByteChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private long written = 0;
+
+		private ChannelWriter(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		private void reserve(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		void put(byte value) throws IOException {
+			reserve(1);
+			buffer.put(value);
+		}
+
+		void putShort(short value) throws IOException {
+			reserve(Short.BYTES);
+			buffer.putShort(value);
+		}
+
+		void putInt(int value) throws IOException {
+			reserve(Integer.BYTES);
+			buffer.putInt(value);
+		}
+
+		void putString(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > Short.MAX_VALUE) {
+				throw new IllegalArgumentException("String is too long: " + value);
+			}
+			putShort((short) bytes.length);
+			put(ByteBuffer.wrap(bytes));
+		}
+
+		void put(ByteBuffer source) throws IOException {
+			while (source.hasRemaining()) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				int length = Math.min(buffer.remaining(), source.remaining());
+				buffer.put(buffer.position(), source, source.position(), length);
+				buffer.position(buffer.position() + length);
+				source.position(source.position() + length);
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				written += channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Reads a channel into a buffer that grows up to the largest block.
+	 */
+	private static final class ChannelReader {
+		private final ReadableByteChannel channel;
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+		private long read = 0;
+
+		private ChannelReader(ReadableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Makes sure that the buffer holds at least the given amount of unread bytes.
+		 */
+		void require(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes) {
+				return;
+			}
+			if (buffer.capacity() < bytes) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+				grown.put(buffer);
+				buffer = grown;
+			} else {
+				buffer.compact();
+			}
+			while (buffer.position() < bytes) {
+				int count = channel.read(buffer);
+				if (count < 0) {
+					throw new EOFException("The settings export ended unexpectedly.");
+				}
+				read += count;
+			}
+			buffer.flip();
+		}
+
+		String getString() throws IOException {
+			require(Short.BYTES);
+			int length = buffer.getShort();
+			if (length < 0) {
+				throw new IOException("Invalid string length " + length + ".");
+			}
+			require(length);
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @return The amount of bytes that were read and processed.
+		 */
+		long consumed() {
+			return read - buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package de.cubbossa.commonsettings;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects setting writes for a flush window and hands them to the provider as one batch. Repeated writes to the same
+ * UUID within one window are coalesced, only the latest value is written, but every caller still receives the
+ * {@link Setting.SettingChangeResult} of the batch entry.
+ *
+ * @param <T> The value type of the setting
+ */
+final class WriteBehindBuffer<T> {
+
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "CommonSettings-WriteBehind");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final long flushWindowNanos;
+	private final Function<Map<UUID, T>, CompletableFuture<Map<UUID, Setting.SettingChangeResult>>> writer;
+	private Map<UUID, Pending<T>> pending = new LinkedHashMap<>();
+	/**
+	 * The batch that is currently written, so that reads don't see the old value while the provider is storing it.
+	 * Only one batch is written at a time, so that batches of the same UUID cannot complete out of order.
+	 */
+	private Map<UUID, Pending<T>> flushing = null;
+	private CompletableFuture<Void> flushed = CompletableFuture.completedFuture(null);
+	/**
+	 * The flush that waits for the current batch, it takes all values that are pending once it starts.
+	 */
+	private CompletableFuture<Void> queued = null;
+	private boolean scheduled = false;
+
+	WriteBehindBuffer(long flushWindowNanos,
+	                  Function<Map<UUID, T>, CompletableFuture<Map<UUID, Setting.SettingChangeResult>>> writer) {
+		this.flushWindowNanos = flushWindowNanos;
+		this.writer = writer;
+	}
+
+	synchronized CompletableFuture<Setting.SettingChangeResult> write(UUID uuid, T value) {
+		Pending<T> entry = pending.computeIfAbsent(uuid, u -> new Pending<>());
+		entry.value = value;
+		CompletableFuture<Setting.SettingChangeResult> future = new CompletableFuture<>();
+		entry.futures.add(future);
+		if (!scheduled) {
+			scheduled = true;
+			SCHEDULER.schedule(this::flush, flushWindowNanos, TimeUnit.NANOSECONDS);
+		}
+		return future;
+	}
+
+	/**
+	 * @return The buffered entry for the given UUID, or null if no write for this UUID is pending.
+	 */
+	synchronized Pending<T> peek(UUID uuid) {
+		Pending<T> entry = pending.get(uuid);
+		return entry != null || flushing == null ? entry : flushing.get(uuid);
+	}
+
+	/**
+	 * Writes all buffered values immediately, or right after the batch that is currently written.
+	 *
+	 * @return A future that completes when the provider has stored the batch.
+	 */
+	CompletableFuture<Void> flush() {
+		Map<UUID, Pending<T>> batch;
+		CompletableFuture<Void> done;
+		synchronized (this) {
+			if (flushing != null) {
+				if (queued == null) {
+					queued = flushed.thenCompose(unused -> {
+						synchronized (this) {
+							queued = null;
+						}
+						return flush();
+					});
+				}
+				return queued;
+			}
+			batch = pending;
+			pending = new LinkedHashMap<>();
+			scheduled = false;
+			if (batch.isEmpty()) {
+				return CompletableFuture.completedFuture(null);
+			}
+			flushing = batch;
+			done = flushed = new CompletableFuture<>();
+		}
+		Map<UUID, T> values = new LinkedHashMap<>();
+		batch.forEach((uuid, entry) -> values.put(uuid, entry.value));
+
+		CompletableFuture<Map<UUID, Setting.SettingChangeResult>> results;
+		try {
+			results = writer.apply(values);
+		} catch (Throwable t) {
+			results = CompletableFuture.failedFuture(t);
+		}
+		return results.handle((written, throwable) -> {
+			synchronized (this) {
+				flushing = null;
+			}
+			batch.forEach((uuid, entry) -> {
+				for (CompletableFuture<Setting.SettingChangeResult> future : entry.futures) {
+					if (throwable != null) {
+						future.completeExceptionally(throwable);
+					} else {
+						future.complete(written.getOrDefault(uuid, Setting.SettingChangeResult.FAIL_OTHER));
+					}
+				}
+			});
+			done.complete(null);
+			return null;
+		});
+	}
+
+	static final class Pending<T> {
+		// written while holding the lock of the buffer, read by getters without it
+		volatile T value;
+		final List<CompletableFuture<Setting.SettingChangeResult>> futures = new ArrayList<>(1);
+	}
+}
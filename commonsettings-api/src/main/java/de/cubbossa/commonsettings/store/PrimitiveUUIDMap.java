@@ -0,0 +1,158 @@
+package de.cubbossa.commonsettings.store;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Base class of the UUID keyed primitive maps. Each UUID is assigned a row by a {@link UUIDIndex}, the values are
+ * stored in primitive arrays by subclasses. A bitset marks the rows that currently hold a value.
+ * <br>
+ * Reads are optimistic and only fall back to a read lock if they overlap with a write, so reading a value from the
+ * main thread neither blocks nor allocates.
+ * <br>
+ * Maps may share their index and lock with other maps, as the columns of a {@link SettingStore} do. A UUID then has
+ * the same row in all of them, and rows may exist in the index that this map has no capacity for yet.
+ */
+abstract class PrimitiveUUIDMap {
+
+	protected final StampedLock lock;
+	protected final UUIDIndex index;
+	protected long[] present;
+	private int count = 0;
+
+	PrimitiveUUIDMap(int expectedSize) {
+		this(new UUIDIndex(expectedSize), new StampedLock(), expectedSize);
+	}
+
+	PrimitiveUUIDMap(UUIDIndex index, StampedLock lock, int expectedSize) {
+		this.index = index;
+		this.lock = lock;
+		this.present = new long[words(Math.max(expectedSize, 64))];
+	}
+
+	/**
+	 * @return true, if a value is stored for the given UUID.
+	 */
+	public boolean contains(UUID uuid) {
+		return read(uuid, 0, true) != 0;
+	}
+
+	/**
+	 * Removes the value of the given UUID, so that getters return the default value again.
+	 */
+	public void remove(UUID uuid) {
+		long stamp = lock.writeLock();
+		try {
+			int row = index.get(uuid);
+			if (isPresent(row)) {
+				present[row >>> 6] &= ~(1L << row);
+				count--;
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return The amount of UUIDs with a value.
+	 */
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return count;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return The value bits of the given UUID as returned by {@link #bits(int)}, or the given bits if no value is stored.
+	 */
+	protected long readBits(UUID uuid, long absent) {
+		return read(uuid, absent, false);
+	}
+
+	private long read(UUID uuid, long absent, boolean presence) {
+		long stamp = lock.tryOptimisticRead();
+		long bits = absent;
+		try {
+			bits = readUnlocked(uuid, absent, presence);
+		} catch (RuntimeException ignored) {
+			// inconsistent state due to a concurrent write, validation fails below
+		}
+		if (lock.validate(stamp)) {
+			return bits;
+		}
+		stamp = lock.readLock();
+		try {
+			return readUnlocked(uuid, absent, presence);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private long readUnlocked(UUID uuid, long absent, boolean presence) {
+		int row = index.get(uuid);
+		if (!isPresent(row)) {
+			return absent;
+		}
+		return presence ? 1 : bits(row);
+	}
+
+	/**
+	 * Must be called while holding the write lock.
+	 *
+	 * @return The row for the given UUID, with enough capacity in all value arrays. The row is marked as present.
+	 */
+	protected int rowForWrite(UUID uuid) {
+		int row = index.getOrAdd(uuid);
+		if (row >>> 6 >= present.length) {
+			present = Arrays.copyOf(present, grow(present.length, (row >>> 6) + 1));
+		}
+		ensureCapacity(row + 1);
+		if (!isPresent(row)) {
+			present[row >>> 6] |= 1L << row;
+			count++;
+		}
+		return row;
+	}
+
+	protected boolean isPresent(int row) {
+		return row >= 0 && row >>> 6 < present.length && (present[row >>> 6] & (1L << row)) != 0;
+	}
+
+	/**
+	 * Marks the rows that hold a value in the given bitset. Must be called while holding the lock.
+	 */
+	void collectPresent(long[] rows) {
+		for (int i = 0; i < Math.min(rows.length, present.length); i++) {
+			rows[i] |= present[i];
+		}
+	}
+
+	/**
+	 * @return The approximate amount of bytes used by the arrays of this map, without the index.
+	 */
+	long footprint() {
+		return (long) present.length * Long.BYTES;
+	}
+
+	/**
+	 * Reads the value of a present row as raw bits, called while holding the lock or within an optimistic read.
+	 */
+	protected abstract long bits(int row);
+
+	/**
+	 * Grows the value arrays of the subclass so that they hold at least the given amount of rows.
+	 */
+	protected abstract void ensureCapacity(int rows);
+
+	protected static int grow(int length, int required) {
+		return Math.max(length * 2, required);
+	}
+
+	static int words(int bits) {
+		return (bits + 63) >>> 6;
+	}
+}
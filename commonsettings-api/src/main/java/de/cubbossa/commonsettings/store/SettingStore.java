@@ -0,0 +1,277 @@
+package de.cubbossa.commonsettings.store;
+
+import de.cubbossa.commonsettings.DuplicateKeyException;
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBackend;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * An in-memory store for the setting values of many UUIDs, laid out in columns. All columns share one
+ * {@link UUIDIndex}, so each UUID is stored once and has the same row in every column. Each column stores its values in
+ * a primitive array, booleans as bits and enums as ordinals. Compared to one HashMap per setting, this avoids an entry
+ * object, a boxed value and a UUID reference per value.
+ * <br>
+ * Columns are {@link SettingBackend}s and can be plugged into a builder directly:
+ * <pre>
+ * SettingStore store = new SettingStore();
+ * SettingStore.BooleanColumn chat = store.booleanColumn(key, true);
+ * new SettingBuilder&lt;&gt;(Boolean.class, key).withBackend(chat).buildBoolean(chat::getBoolean);
+ * </pre>
+ * Each column is a primitive UUID map like {@link UUIDIntMap}. Reads are optimistic and don't block or allocate,
+ * writes are serialized by one lock per store.
+ */
+public final class SettingStore {
+
+	private final StampedLock lock = new StampedLock();
+	private final UUIDIndex index;
+	private final int expectedSize;
+	private final ConcurrentHashMap<NamespacedKey, Column<?>> columns = new ConcurrentHashMap<>();
+
+	public SettingStore() {
+		this(1024);
+	}
+
+	/**
+	 * @param expectedSize The amount of UUIDs that can be stored before the store has to resize. Columns allocate
+	 *                     this many rows upfront.
+	 */
+	public SettingStore(int expectedSize) {
+		this.index = new UUIDIndex(expectedSize);
+		this.expectedSize = Math.max(expectedSize, 1);
+	}
+
+	public BooleanColumn booleanColumn(NamespacedKey key, boolean defaultValue) {
+		return addColumn(new BooleanColumn(key, new UUIDBooleanMap(index, lock, expectedSize), defaultValue));
+	}
+
+	public IntColumn intColumn(NamespacedKey key, int defaultValue) {
+		return addColumn(new IntColumn(key, new UUIDIntMap(index, lock, expectedSize), defaultValue));
+	}
+
+	public DoubleColumn doubleColumn(NamespacedKey key, double defaultValue) {
+		return addColumn(new DoubleColumn(key, new UUIDDoubleMap(index, lock, expectedSize), defaultValue));
+	}
+
+	public <E extends Enum<E>> EnumColumn<E> enumColumn(NamespacedKey key, Class<E> type, E defaultValue) {
+		return addColumn(new EnumColumn<>(key, new UUIDEnumMap<>(type, index, lock, expectedSize), defaultValue));
+	}
+
+	/**
+	 * @return The column of the given setting key, or null if this store has no such column.
+	 */
+	public Column<?> getColumn(NamespacedKey key) {
+		return columns.get(key);
+	}
+
+	public Collection<Column<?>> getColumns() {
+		return Collections.unmodifiableCollection(columns.values());
+	}
+
+	/**
+	 * @return The amount of UUIDs that have a value in at least one column.
+	 */
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			long[] rows = new long[PrimitiveUUIDMap.words(index.size())];
+			for (Column<?> column : columns.values()) {
+				column.map.collectPresent(rows);
+			}
+			int size = 0;
+			for (long word : rows) {
+				size += Long.bitCount(word);
+			}
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return The approximate amount of bytes used by the index and all columns.
+	 */
+	public long footprint() {
+		long stamp = lock.readLock();
+		try {
+			long footprint = index.footprint();
+			for (Column<?> column : columns.values()) {
+				footprint += column.map.footprint();
+			}
+			return footprint;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private <C extends Column<?>> C addColumn(C column) {
+		if (columns.putIfAbsent(column.getKey(), column) != null) {
+			throw new DuplicateKeyException(String.format("The store already has a column for \"%s\".", column.getKey()));
+		}
+		return column;
+	}
+
+	/**
+	 * The values of one setting within the store.
+	 *
+	 * @param <T> The value type of the setting
+	 */
+	public abstract static class Column<T> implements SettingBackend<T> {
+
+		@Getter
+		private final NamespacedKey key;
+		private final PrimitiveUUIDMap map;
+
+		Column(NamespacedKey key, PrimitiveUUIDMap map) {
+			this.key = key;
+			this.map = map;
+		}
+
+		/**
+		 * @return true, if a value is stored for the given UUID.
+		 */
+		public boolean contains(UUID uuid) {
+			return map.contains(uuid);
+		}
+
+		/**
+		 * Removes the value of the given UUID, so that it has the default value again.
+		 */
+		public void remove(UUID uuid) {
+			map.remove(uuid);
+		}
+
+		/**
+		 * Null values are not supported, use {@link #remove(UUID)} to restore the default value.
+		 */
+		@Override
+		public CompletableFuture<Setting.SettingChangeResult> set(UUID uuid, T value) {
+			if (value == null) {
+				return CompletableFuture.completedFuture(Setting.SettingChangeResult.FAIL_INVALID_VALUE);
+			}
+			put(uuid, value);
+			return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+		}
+
+		abstract void put(UUID uuid, T value);
+	}
+
+	public static final class BooleanColumn extends Column<Boolean> {
+
+		private final UUIDBooleanMap values;
+		private final boolean defaultValue;
+
+		private BooleanColumn(NamespacedKey key, UUIDBooleanMap values, boolean defaultValue) {
+			super(key, values);
+			this.values = values;
+			this.defaultValue = defaultValue;
+		}
+
+		public boolean getBoolean(UUID uuid) {
+			return values.get(uuid, defaultValue);
+		}
+
+		public void setBoolean(UUID uuid, boolean value) {
+			values.put(uuid, value);
+		}
+
+		@Override
+		public Boolean get(UUID uuid) {
+			return getBoolean(uuid);
+		}
+
+		@Override
+		void put(UUID uuid, Boolean value) {
+			values.put(uuid, value);
+		}
+	}
+
+	public static final class IntColumn extends Column<Integer> {
+
+		private final UUIDIntMap values;
+		private final int defaultValue;
+
+		private IntColumn(NamespacedKey key, UUIDIntMap values, int defaultValue) {
+			super(key, values);
+			this.values = values;
+			this.defaultValue = defaultValue;
+		}
+
+		public int getInt(UUID uuid) {
+			return values.get(uuid, defaultValue);
+		}
+
+		public void setInt(UUID uuid, int value) {
+			values.put(uuid, value);
+		}
+
+		@Override
+		public Integer get(UUID uuid) {
+			return getInt(uuid);
+		}
+
+		@Override
+		void put(UUID uuid, Integer value) {
+			values.put(uuid, value);
+		}
+	}
+
+	public static final class DoubleColumn extends Column<Double> {
+
+		private final UUIDDoubleMap values;
+		private final double defaultValue;
+
+		private DoubleColumn(NamespacedKey key, UUIDDoubleMap values, double defaultValue) {
+			super(key, values);
+			this.values = values;
+			this.defaultValue = defaultValue;
+		}
+
+		public double getDouble(UUID uuid) {
+			return values.get(uuid, defaultValue);
+		}
+
+		public void setDouble(UUID uuid, double value) {
+			values.put(uuid, value);
+		}
+
+		@Override
+		public Double get(UUID uuid) {
+			return getDouble(uuid);
+		}
+
+		@Override
+		void put(UUID uuid, Double value) {
+			values.put(uuid, value);
+		}
+	}
+
+	public static final class EnumColumn<E extends Enum<E>> extends Column<E> {
+
+		private final UUIDEnumMap<E> values;
+		private final E defaultValue;
+
+		private EnumColumn(NamespacedKey key, UUIDEnumMap<E> values, E defaultValue) {
+			super(key, values);
+			this.values = values;
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public E get(UUID uuid) {
+			return values.get(uuid, defaultValue);
+		}
+
+		@Override
+		void put(UUID uuid, E value) {
+			values.put(uuid, value);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package de.cubbossa.commonsettings.store;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Stores one boolean per UUID as a bit, without any per entry objects. Use it as backing store for boolean settings,
+ * e.g. with {@link de.cubbossa.commonsettings.SettingBuilder#buildBoolean(java.util.function.Predicate)}.
+ */
+public final class UUIDBooleanMap extends PrimitiveUUIDMap {
+
+	private long[] values;
+
+	public UUIDBooleanMap() {
+		this(64);
+	}
+
+	public UUIDBooleanMap(int expectedSize) {
+		super(expectedSize);
+		this.values = new long[words(Math.max(expectedSize, 64))];
+	}
+
+	UUIDBooleanMap(UUIDIndex index, StampedLock lock, int expectedSize) {
+		super(index, lock, expectedSize);
+		this.values = new long[words(Math.max(expectedSize, 64))];
+	}
+
+	public boolean get(UUID uuid, boolean defaultValue) {
+		return readBits(uuid, defaultValue ? 1 : 0) != 0;
+	}
+
+	public void put(UUID uuid, boolean value) {
+		long stamp = lock.writeLock();
+		try {
+			int row = rowForWrite(uuid);
+			if (value) {
+				values[row >>> 6] |= 1L << row;
+			} else {
+				values[row >>> 6] &= ~(1L << row);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	protected long bits(int row) {
+		return (values[row >>> 6] >>> row) & 1;
+	}
+
+	@Override
+	protected void ensureCapacity(int rows) {
+		if (words(rows) > values.length) {
+			values = Arrays.copyOf(values, grow(values.length, words(rows)));
+		}
+	}
+
+	@Override
+	long footprint() {
+		return super.footprint() + (long) values.length * Long.BYTES;
+	}
+}
@@ -0,0 +1,60 @@
+package de.cubbossa.commonsettings.store;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Stores one double per UUID in a primitive array, without any per entry objects. Use it as backing store for
+ * double settings, e.g. with {@link de.cubbossa.commonsettings.SettingBuilder#buildDouble(java.util.function.ToDoubleFunction)}.
+ */
+public final class UUIDDoubleMap extends PrimitiveUUIDMap {
+
+	private double[] values;
+
+	public UUIDDoubleMap() {
+		this(64);
+	}
+
+	public UUIDDoubleMap(int expectedSize) {
+		super(expectedSize);
+		this.values = new double[Math.max(expectedSize, 64)];
+	}
+
+	UUIDDoubleMap(UUIDIndex index, StampedLock lock, int expectedSize) {
+		super(index, lock, expectedSize);
+		this.values = new double[Math.max(expectedSize, 64)];
+	}
+
+	public double get(UUID uuid, double defaultValue) {
+		return Double.longBitsToDouble(readBits(uuid, Double.doubleToRawLongBits(defaultValue)));
+	}
+
+	public void put(UUID uuid, double value) {
+		long stamp = lock.writeLock();
+		try {
+			// resolve the row first, it may grow the values array
+			int row = rowForWrite(uuid);
+			values[row] = value;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	protected long bits(int row) {
+		return Double.doubleToRawLongBits(values[row]);
+	}
+
+	@Override
+	protected void ensureCapacity(int rows) {
+		if (rows > values.length) {
+			values = Arrays.copyOf(values, grow(values.length, rows));
+		}
+	}
+
+	@Override
+	long footprint() {
+		return super.footprint() + (long) values.length * Double.BYTES;
+	}
+}
@@ -0,0 +1,67 @@
+package de.cubbossa.commonsettings.store;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Stores one enum constant per UUID as ordinal in a short array, without any per entry objects.
+ *
+ * @param <E> The enum type
+ */
+public final class UUIDEnumMap<E extends Enum<E>> extends PrimitiveUUIDMap {
+
+	private final E[] constants;
+	private short[] ordinals;
+
+	public UUIDEnumMap(Class<E> type) {
+		this(type, 64);
+	}
+
+	public UUIDEnumMap(Class<E> type, int expectedSize) {
+		this(type, new UUIDIndex(expectedSize), new StampedLock(), expectedSize);
+	}
+
+	UUIDEnumMap(Class<E> type, UUIDIndex index, StampedLock lock, int expectedSize) {
+		super(index, lock, expectedSize);
+		this.constants = type.getEnumConstants();
+		if (constants.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Enums with more than " + Short.MAX_VALUE + " constants are not supported.");
+		}
+		this.ordinals = new short[Math.max(expectedSize, 64)];
+	}
+
+	public E get(UUID uuid, E defaultValue) {
+		int ordinal = (int) readBits(uuid, -1);
+		return ordinal < 0 ? defaultValue : constants[ordinal];
+	}
+
+	public void put(UUID uuid, E value) {
+		short ordinal = (short) value.ordinal();
+		long stamp = lock.writeLock();
+		try {
+			// resolve the row first, it may grow the ordinals array
+			int row = rowForWrite(uuid);
+			ordinals[row] = ordinal;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	protected long bits(int row) {
+		return ordinals[row];
+	}
+
+	@Override
+	protected void ensureCapacity(int rows) {
+		if (rows > ordinals.length) {
+			ordinals = Arrays.copyOf(ordinals, grow(ordinals.length, rows));
+		}
+	}
+
+	@Override
+	long footprint() {
+		return super.footprint() + (long) ordinals.length * Short.BYTES;
+	}
+}
@@ -0,0 +1,139 @@
+package de.cubbossa.commonsettings.store;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * An open addressing hash index that assigns a stable row number to each UUID. Rows are handed out in insertion order
+ * starting at 0, so they can be used as indices into primitive value arrays.
+ * <br>
+ * The index stores the two halves of each UUID in long arrays and never holds references to UUID objects. It is not
+ * thread-safe, the stores that use it guard it with a lock. Reads only access fields of this index and run a bounded
+ * loop, so they may be executed optimistically as long as the result is validated afterwards.
+ */
+public final class UUIDIndex {
+
+	private static final int EMPTY = -1;
+
+	private long[] mostSignificant;
+	private long[] leastSignificant;
+	private int[] rows;
+	private int mask;
+	private int size = 0;
+
+	public UUIDIndex() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize The amount of UUIDs that can be added before the index resizes
+	 */
+	public UUIDIndex(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * @return The row of the given UUID or -1 if the UUID is not part of this index.
+	 */
+	public int get(UUID uuid) {
+		long most = uuid.getMostSignificantBits();
+		long least = uuid.getLeastSignificantBits();
+		long[] mostSignificant = this.mostSignificant;
+		long[] leastSignificant = this.leastSignificant;
+		int[] rows = this.rows;
+		int mask = rows.length - 1;
+		int slot = hash(most, least) & mask;
+		for (int probes = 0; probes <= mask; probes++) {
+			int row = rows[slot];
+			if (row == EMPTY) {
+				return EMPTY;
+			}
+			if (mostSignificant[slot] == most && leastSignificant[slot] == least) {
+				return row;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * @return The row of the given UUID. If the UUID is not part of this index yet, it is added with the next free row.
+	 */
+	public int getOrAdd(UUID uuid) {
+		int row = get(uuid);
+		if (row != EMPTY) {
+			return row;
+		}
+		if ((size + 1) * 2 > rows.length) {
+			resize(rows.length * 2);
+		}
+		row = size++;
+		insert(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), row);
+		return row;
+	}
+
+	/**
+	 * @return The amount of UUIDs in this index, which is also the next row to be handed out.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The UUID that was assigned to the given row.
+	 */
+	public UUID uuidAt(int row) {
+		for (int slot = 0; slot < rows.length; slot++) {
+			if (rows[slot] == row) {
+				return new UUID(mostSignificant[slot], leastSignificant[slot]);
+			}
+		}
+		throw new IndexOutOfBoundsException(row);
+	}
+
+	/**
+	 * @return The approximate amount of bytes used by the arrays of this index.
+	 */
+	public long footprint() {
+		return (long) rows.length * (Long.BYTES * 2 + Integer.BYTES);
+	}
+
+	private void insert(long most, long least, int row) {
+		int slot = hash(most, least) & mask;
+		while (rows[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		mostSignificant[slot] = most;
+		leastSignificant[slot] = least;
+		rows[slot] = row;
+	}
+
+	private void resize(int capacity) {
+		long[] oldMost = mostSignificant;
+		long[] oldLeast = leastSignificant;
+		int[] oldRows = rows;
+		allocate(capacity);
+		for (int slot = 0; slot < oldRows.length; slot++) {
+			if (oldRows[slot] != EMPTY) {
+				insert(oldMost[slot], oldLeast[slot], oldRows[slot]);
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		mostSignificant = new long[capacity];
+		leastSignificant = new long[capacity];
+		rows = new int[capacity];
+		Arrays.fill(rows, EMPTY);
+		mask = capacity - 1;
+	}
+
+	private static int hash(long most, long least) {
+		long hash = most ^ least;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return (int) hash;
+	}
+}
@@ -0,0 +1,60 @@
+package de.cubbossa.commonsettings.store;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Stores one int per UUID in a primitive array, without any per entry objects. Use it as backing store for
+ * int settings, e.g. with {@link de.cubbossa.commonsettings.SettingBuilder#buildInt(java.util.function.ToIntFunction)}.
+ */
+public final class UUIDIntMap extends PrimitiveUUIDMap {
+
+	private int[] values;
+
+	public UUIDIntMap() {
+		this(64);
+	}
+
+	public UUIDIntMap(int expectedSize) {
+		super(expectedSize);
+		this.values = new int[Math.max(expectedSize, 64)];
+	}
+
+	UUIDIntMap(UUIDIndex index, StampedLock lock, int expectedSize) {
+		super(index, lock, expectedSize);
+		this.values = new int[Math.max(expectedSize, 64)];
+	}
+
+	public int get(UUID uuid, int defaultValue) {
+		return (int) readBits(uuid, defaultValue);
+	}
+
+	public void put(UUID uuid, int value) {
+		long stamp = lock.writeLock();
+		try {
+			// resolve the row first, it may grow the values array
+			int row = rowForWrite(uuid);
+			values[row] = value;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	protected long bits(int row) {
+		return values[row];
+	}
+
+	@Override
+	protected void ensureCapacity(int rows) {
+		if (rows > values.length) {
+			values = Arrays.copyOf(values, grow(values.length, rows));
+		}
+	}
+
+	@Override
+	long footprint() {
+		return super.footprint() + (long) values.length * Integer.BYTES;
+	}
+}
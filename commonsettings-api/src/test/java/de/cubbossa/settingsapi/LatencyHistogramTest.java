@@ -0,0 +1,36 @@
+package de.cubbossa.commonsettings;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void bucketBounds() {
+		for (long value : new long[]{0, 1, 15, 16, 17, 35, 1000, 123_456_789, LatencyHistogram.MAX_TRACKABLE}) {
+			int index = LatencyHistogram.index(value);
+			assertTrue(LatencyHistogram.upperBound(index) >= value);
+			assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+		}
+		assertEquals(LatencyHistogram.index(LatencyHistogram.MAX_TRACKABLE), LatencyHistogram.index(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentileNanos(50));
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1_000_000, histogram.getMaxNanos());
+		assertEquals(500_500, histogram.getMeanNanos());
+		assertEquals(500_000, histogram.getPercentileNanos(50), 500_000 / 16.);
+		assertEquals(990_000, histogram.getPercentileNanos(99), 990_000 / 16.);
+		assertEquals(1_000_000, histogram.getPercentileNanos(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+	}
+}
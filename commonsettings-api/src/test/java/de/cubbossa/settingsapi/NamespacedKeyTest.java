@@ -0,0 +1,45 @@
+package de.cubbossa.commonsettings;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NamespacedKeyTest {
+
+	@Test
+	void fromString() {
+		NamespacedKey key = NamespacedKey.fromString("Plugin:Some_Setting1");
+		assertEquals("plugin", key.getNamespace());
+		assertEquals("some_setting1", key.getKey());
+		assertEquals("plugin:some_setting1", key.toString());
+	}
+
+	@Test
+	void fromStringInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> NamespacedKey.fromString("plugin"));
+		assertThrows(IllegalArgumentException.class, () -> NamespacedKey.fromString(":key"));
+		assertThrows(IllegalArgumentException.class, () -> NamespacedKey.fromString("plugin:"));
+		assertThrows(IllegalArgumentException.class, () -> NamespacedKey.fromString("a:b:c"));
+		assertThrows(IllegalArgumentException.class, () -> NamespacedKey.fromString("plugin:some.key"));
+		assertThrows(IllegalArgumentException.class, () -> NamespacedKey.fromString(""));
+	}
+
+	@Test
+	void interning() {
+		NamespacedKey key = NamespacedKey.fromString("plugin:interned");
+		assertSame(key, NamespacedKey.fromString("plugin:interned"));
+		assertSame(key, NamespacedKey.fromString("PLUGIN:Interned"));
+		assertSame(key, NamespacedKey.of("plugin", "interned"));
+	}
+
+	@Test
+	void equalsAndHashCode() {
+		NamespacedKey a = new NamespacedKey("plugin", "key");
+		NamespacedKey b = new NamespacedKey("Plugin", "KEY");
+		assertNotSame(a, b);
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertEquals("plugin:key".hashCode(), a.hashCode());
+		assertNotEquals(a, new NamespacedKey("plugin", "other"));
+	}
+}
@@ -1,11 +1,17 @@
 package de.cubbossa.commonsettings;
 
+import net.kyori.adventure.text.Component;
 import org.junit.jupiter.api.Test;
 
-import java.util.UUID;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class SettingBuilderTest {
 
@@ -20,5 +26,516 @@ public class SettingBuilderTest {
 		assertEquals("value", setting.getValue(UUID.randomUUID()));
 	}
 
+	@Test
+	public void cachedSetting() {
+		Map<UUID, Integer> data = new HashMap<>();
+		AtomicInteger loads = new AtomicInteger();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "cached"))
+				.withGetter(uuid -> {
+					loads.incrementAndGet();
+					return data.getOrDefault(uuid, 0);
+				})
+				.withSetter((uuid, value) -> {
+					data.put(uuid, value);
+					return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+				})
+				.withDefaultValue(0)
+				.withCache(2, Duration.ofMinutes(1))
+				.build();
+		SettingCache<Integer> cache = setting.getCache();
+		assertNotNull(cache);
+
+		UUID a = UUID.randomUUID();
+		assertEquals(0, setting.getValue(a));
+		assertEquals(0, setting.getValue(a));
+		assertEquals(0, setting.requestValue(a).join());
+		assertEquals(1, loads.get());
+		assertEquals(new SettingCache.Stats(2, 1, 0, 1), cache.getStats());
+
+		setting.setValue(a, 5).join();
+		assertEquals(5, setting.getValue(a));
+		assertEquals(2, loads.get());
+
+		setting.getValue(UUID.randomUUID());
+		setting.getValue(UUID.randomUUID());
+		assertEquals(1, cache.getStats().evictions());
+		assertEquals(2, cache.getStats().size());
+	}
+
+	@Test
+	public void cachePerBuiltSetting() {
+		SettingBuilder<Integer> builder = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "cached"))
+				.withGetter(uuid -> 0)
+				.withCache(10, null);
+		ManagedSetting<Integer> first = builder.build();
+		ManagedSetting<Integer> second = builder.build();
+		assertNotSame(first.getCache(), second.getCache());
+	}
+
+	@Test
+	public void cacheExpires() throws InterruptedException {
+		AtomicInteger loads = new AtomicInteger();
+		SettingCache<Integer> cache = new SettingCache<>(10, Duration.ofMillis(1));
+		UUID uuid = UUID.randomUUID();
+		cache.get(uuid, u -> loads.incrementAndGet());
+		Thread.sleep(5);
+		cache.get(uuid, u -> loads.incrementAndGet());
+		assertEquals(2, loads.get());
+		assertEquals(1, cache.getStats().evictions());
+	}
+
+	@Test
+	public void cacheInvalidationPerUUID() {
+		SettingCache<Integer> cache = new SettingCache<>(10, null);
+		UUID loaded = new UUID(0, 0);
+		UUID invalidated = new UUID(0, 1);
+		CompletableFuture<Integer> first = new CompletableFuture<>();
+		cache.request(loaded, u -> first);
+		cache.invalidate(invalidated);
+		first.complete(1);
+		// invalidating another UUID must not discard the load
+		assertEquals(1, cache.getOrDefault(loaded, -1));
 
+		CompletableFuture<Integer> second = new CompletableFuture<>();
+		cache.invalidate(loaded);
+		cache.request(loaded, u -> second);
+		cache.invalidate(loaded);
+		second.complete(2);
+		assertEquals(-1, cache.getOrDefault(loaded, -1));
+	}
+
+	@Test
+	public void uncachedSetting() {
+		ManagedSetting<String> setting = new SettingBuilder<>(String.class, new NamespacedKey("plugin", "uncached"))
+				.withGetter(uuid -> "value")
+				.build();
+		assertNull(setting.getCache());
+	}
+
+	@Test
+	public void batchGetter() {
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		UUID c = UUID.randomUUID();
+		List<Collection<UUID>> batches = new ArrayList<>();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "batched"))
+				.withGetter(uuid -> fail("Batch requests must not call the single getter."))
+				.withBatchGetter(uuids -> {
+					batches.add(List.copyOf(uuids));
+					return CompletableFuture.completedFuture(uuids.contains(a) ? Map.of(a, 1) : Map.of());
+				})
+				.withDefaultValue(-1)
+				.withCache(10, null)
+				.build();
+
+		Map<UUID, Integer> values = setting.requestValues(List.of(a, b)).join();
+		assertEquals(Map.of(a, 1, b, -1), values);
+		values = setting.requestValues(List.of(a, b, c)).join();
+		assertEquals(Map.of(a, 1, b, -1, c, -1), values);
+		assertEquals(List.of(List.of(a, b), List.of(c)), batches);
+	}
+
+	@Test
+	public void batchSetter() {
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		List<Map<UUID, Integer>> batches = new ArrayList<>();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "batch_set"))
+				.withGetter(uuid -> 0)
+				.withBatchSetter(values -> {
+					batches.add(Map.copyOf(values));
+					return CompletableFuture.completedFuture(Map.of(a, Setting.SettingChangeResult.SUCCESS));
+				})
+				.withDefaultValue(7)
+				.build();
+		assertFalse(setting.getFlags().readonly());
+
+		Map<UUID, Setting.SettingChangeResult> results = setting.setValues(Map.of(a, 1, b, 2)).join();
+		assertEquals(Map.of(a, Setting.SettingChangeResult.SUCCESS, b, Setting.SettingChangeResult.FAIL_OTHER), results);
+		setting.resetAll(List.of(a)).join();
+		assertEquals(List.of(Map.of(a, 1, b, 2), Map.of(a, 7)), batches);
+	}
+
+	@Test
+	public void writeBehind() {
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		List<Map<UUID, Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "write_behind"))
+				.withGetter(uuid -> 0)
+				.withBatchSetter(values -> {
+					batches.add(Map.copyOf(values));
+					Map<UUID, Setting.SettingChangeResult> results = new HashMap<>();
+					values.keySet().forEach(uuid -> results.put(uuid, Setting.SettingChangeResult.SUCCESS));
+					return CompletableFuture.completedFuture(results);
+				})
+				.withWriteBehind(Duration.ofHours(1))
+				.build();
+
+		CompletableFuture<Setting.SettingChangeResult> first = setting.setValue(a, 1);
+		CompletableFuture<Setting.SettingChangeResult> second = setting.setValue(a, 2);
+		CompletableFuture<Setting.SettingChangeResult> third = setting.setValue(b, 3);
+		assertFalse(first.isDone());
+		assertEquals(2, setting.getValue(a));
+		assertTrue(batches.isEmpty());
+
+		setting.flush().join();
+		assertEquals(List.of(Map.of(a, 2, b, 3)), batches);
+		assertEquals(Setting.SettingChangeResult.SUCCESS, first.join());
+		assertEquals(Setting.SettingChangeResult.SUCCESS, second.join());
+		assertEquals(Setting.SettingChangeResult.SUCCESS, third.join());
+		assertEquals(0, setting.getValue(a));
+	}
+
+	@Test
+	public void writeBehindFlushesOneBatchAtATime() throws Exception {
+		UUID uuid = UUID.randomUUID();
+		// the batch setter is dispatched to the worker pool, so the batches are handed over through queues
+		BlockingQueue<Map<UUID, Integer>> batches = new LinkedBlockingQueue<>();
+		BlockingQueue<CompletableFuture<Map<UUID, Setting.SettingChangeResult>>> writes = new LinkedBlockingQueue<>();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "ordered"))
+				.withGetter(u -> 0)
+				.withBatchSetter(values -> {
+					CompletableFuture<Map<UUID, Setting.SettingChangeResult>> write = new CompletableFuture<>();
+					batches.add(values);
+					writes.add(write);
+					return write;
+				})
+				.withWriteBehind(Duration.ofHours(1))
+				.build();
+
+		setting.setValue(uuid, 1);
+		CompletableFuture<Void> first = setting.flush();
+		setting.setValue(uuid, 2);
+		CompletableFuture<Void> second = setting.flush();
+		assertEquals(Map.of(uuid, 1), batches.poll(1, TimeUnit.SECONDS));
+		// the second batch waits for the first one, both stay visible to reads
+		assertNull(batches.poll(50, TimeUnit.MILLISECONDS));
+		assertEquals(2, setting.getValue(uuid));
+
+		writes.take().complete(Map.of(uuid, Setting.SettingChangeResult.SUCCESS));
+		first.get(1, TimeUnit.SECONDS);
+		assertEquals(Map.of(uuid, 2), batches.poll(1, TimeUnit.SECONDS));
+		assertEquals(2, setting.getValue(uuid));
+		writes.take().complete(Map.of(uuid, Setting.SettingChangeResult.SUCCESS));
+		second.get(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void readonlyFlag() {
+		ManagedSetting<String> setting = new SettingBuilder<>(String.class, new NamespacedKey("plugin", "readonly"))
+				.withGetter(uuid -> "value")
+				.build();
+		assertTrue(setting.getFlags().readonly());
+		assertEquals(Setting.SettingChangeResult.FAIL_READ_ONLY, setting.setValue(UUID.randomUUID(), "other").join());
+	}
+
+	@Test
+	public void syncTimeout() {
+		UUID uuid = UUID.randomUUID();
+		CompletableFuture<Integer> pending = new CompletableFuture<>();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "timeout"))
+				.withAsyncGetter(u -> pending)
+				.withDefaultValue(3)
+				.withSyncTimeout(Duration.ofMillis(5), SettingBuilder.SyncFallback.DEFAULT_VALUE)
+				.build();
+		assertEquals(3, setting.getValue(uuid));
+		BlockingStats stats = setting.getBlockingStats();
+		assertEquals(1, stats.calls());
+		assertEquals(1, stats.timeouts());
+		assertTrue(stats.maxNanos() >= Duration.ofMillis(5).toNanos());
+
+		pending.complete(8);
+		assertEquals(8, setting.getValue(uuid));
+		assertEquals(1, setting.getBlockingStats().timeouts());
+	}
+
+	@Test
+	public void syncTimeoutFallbackNotCached() {
+		UUID uuid = UUID.randomUUID();
+		CompletableFuture<Integer> pending = new CompletableFuture<>();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "timeout_cached"))
+				.withAsyncGetter(u -> pending)
+				.withDefaultValue(3)
+				.withCache(16, null)
+				.withSyncTimeout(Duration.ofMillis(5), SettingBuilder.SyncFallback.DEFAULT_VALUE)
+				.build();
+		assertEquals(3, setting.getValue(uuid));
+
+		pending.complete(8);
+		assertEquals(8, setting.getValue(uuid));
+		// the loaded value is cached, the fallback was not
+		assertEquals(8, setting.getValue(uuid));
+		assertEquals(2, setting.getBlockingStats().calls());
+	}
+
+	@Test
+	public void syncTimeoutLastKnown() {
+		UUID uuid = UUID.randomUUID();
+		AtomicInteger requests = new AtomicInteger();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "last_known"))
+				.withAsyncGetter(u -> requests.getAndIncrement() == 0
+						? CompletableFuture.completedFuture(5)
+						: new CompletableFuture<>())
+				.withDefaultValue(3)
+				.withSyncTimeout(Duration.ofMillis(5), SettingBuilder.SyncFallback.LAST_KNOWN_VALUE)
+				.build();
+		assertEquals(5, setting.requestValue(uuid).join());
+		assertEquals(5, setting.getValue(uuid));
+		assertEquals(3, setting.getValue(UUID.randomUUID()));
+	}
+
+	@Test
+	public void syncTimeoutLastKnownAfterWrite() {
+		UUID uuid = UUID.randomUUID();
+		AtomicInteger requests = new AtomicInteger();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "last_known"))
+				.withAsyncGetter(u -> requests.getAndIncrement() == 0
+						? CompletableFuture.completedFuture(5)
+						: new CompletableFuture<>())
+				.withSetter((u, value) -> CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS))
+				.withDefaultValue(3)
+				.withSyncTimeout(Duration.ofMillis(5), SettingBuilder.SyncFallback.LAST_KNOWN_VALUE)
+				.build();
+		assertEquals(5, setting.requestValue(uuid).join());
+		setting.setValue(uuid, 7).join();
+		// the value from before the write is no longer known
+		assertEquals(3, setting.getValue(uuid));
+	}
+
+	@Test
+	public void syncTimeoutFail() {
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "fail"))
+				.withAsyncGetter(u -> new CompletableFuture<>())
+				.withSyncTimeout(Duration.ofMillis(5), SettingBuilder.SyncFallback.FAIL)
+				.build();
+		assertThrows(SettingTimeoutException.class, () -> setting.getValue(UUID.randomUUID()));
+	}
+
+	@Test
+	public void setterRouting() {
+		SettingExecutors executors = SettingsAPI.getInstance().getExecutors();
+		List<Runnable> mainThreadTasks = new ArrayList<>();
+		executors.setMainThreadExecutor(mainThreadTasks::add);
+		try {
+			Set<Thread> setterThreads = Collections.synchronizedSet(new HashSet<>());
+			ManagedSetting<Integer> unsafe = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "unsafe"))
+					.withGetter(uuid -> 0)
+					.withSetter((uuid, value) -> {
+						setterThreads.add(Thread.currentThread());
+						return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+					})
+					.withFlagNotThreadSafe()
+					.build();
+			CompletableFuture<Setting.SettingChangeResult> result = unsafe.setValue(UUID.randomUUID(), 1);
+			assertFalse(result.isDone());
+			assertEquals(1, mainThreadTasks.size());
+			mainThreadTasks.get(0).run();
+			assertEquals(Setting.SettingChangeResult.SUCCESS, result.join());
+			assertEquals(Set.of(Thread.currentThread()), setterThreads);
+
+			setterThreads.clear();
+			ManagedSetting<Integer> safe = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "safe"))
+					.withGetter(uuid -> 0)
+					.withSetter((uuid, value) -> {
+						setterThreads.add(Thread.currentThread());
+						return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+					})
+					.build();
+			assertEquals(Setting.SettingChangeResult.SUCCESS, safe.setValue(UUID.randomUUID(), 1).join());
+			assertEquals(1, mainThreadTasks.size());
+			assertFalse(setterThreads.contains(Thread.currentThread()));
+		} finally {
+			executors.setMainThreadExecutor(null);
+		}
+	}
+
+	@Test
+	public void primitiveSettings() {
+		UUID uuid = UUID.randomUUID();
+		BooleanSetting bool = new SettingBuilder<>(Boolean.class, new NamespacedKey("plugin", "bool"))
+				.buildBoolean(u -> u.equals(uuid));
+		assertTrue(bool.getBoolean(uuid));
+		assertFalse(bool.getBoolean(UUID.randomUUID()));
+		assertEquals(true, bool.getValue(uuid));
+
+		IntSetting ints = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "int"))
+				.withCache(10, null)
+				.buildInt(u -> 42);
+		assertEquals(42, ints.getInt(uuid));
+		assertEquals(42, ints.requestValue(uuid).join());
+		assertEquals(1, ((ManagedSetting<Integer>) ints).getCache().getStats().hits());
+
+		DoubleSetting doubles = new SettingBuilder<>(Double.class, new NamespacedKey("plugin", "double"))
+				.buildDouble(u -> .5);
+		assertEquals(.5, doubles.getDouble(uuid));
+
+		assertThrows(IllegalStateException.class, () -> new SettingBuilder<>(String.class, new NamespacedKey("plugin", "str"))
+				.buildBoolean(u -> true));
+		assertThrows(IllegalStateException.class, () -> new SettingBuilder<>(Boolean.class, new NamespacedKey("plugin", "null"))
+				.withFlagNullable()
+				.buildBoolean(u -> true));
+	}
+
+	@Test
+	public void sessionCache() {
+		Map<UUID, String> data = new HashMap<>();
+		AtomicInteger loads = new AtomicInteger();
+		NamespacedKey key = new NamespacedKey("plugin", "session");
+		Setting<String> setting = new SettingBuilder<>(String.class, key)
+				.withGetter(uuid -> {
+					loads.incrementAndGet();
+					return data.getOrDefault(uuid, "default");
+				})
+				.withSetter((uuid, value) -> {
+					data.put(uuid, value);
+					return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+				})
+				.build();
+		SessionCache sessions = SettingsAPI.getInstance().getSessions();
+		UUID uuid = UUID.randomUUID();
+		sessions.open(uuid);
+		try {
+			long stamp = sessions.stamp(uuid);
+			assertTrue(sessions.put(uuid, key, setting.getValue(uuid), stamp));
+			assertEquals("default", setting.getValue(uuid));
+			assertEquals("default", setting.requestValue(uuid).join());
+			assertEquals(1, loads.get());
+
+			setting.setValue(uuid, "changed").join();
+			assertSame(SessionCache.MISSING, sessions.lookup(uuid, key));
+			// a value requested before the change must not be stored
+			assertFalse(sessions.put(uuid, key, "default", stamp));
+			assertEquals("changed", setting.getValue(uuid));
+		} finally {
+			sessions.close(uuid);
+		}
+		assertFalse(sessions.put(uuid, key, "closed", 0));
+	}
+
+	@Test
+	public void primitiveGetterReadsSession() {
+		NamespacedKey key = new NamespacedKey("plugin", "session_primitive");
+		IntSetting setting = new SettingBuilder<>(Integer.class, key)
+				.withGetter(uuid -> 1)
+				.buildInt(uuid -> 1);
+		SessionCache sessions = SettingsAPI.getInstance().getSessions();
+		UUID uuid = UUID.randomUUID();
+		sessions.open(uuid);
+		try {
+			assertTrue(sessions.put(uuid, key, 2, sessions.stamp(uuid)));
+			assertEquals(2, setting.getValue(uuid));
+			assertEquals(2, setting.getInt(uuid));
+		} finally {
+			sessions.close(uuid);
+		}
+		assertEquals(1, setting.getInt(uuid));
+	}
+
+	@Test
+	public void requestCoalescing() {
+		List<CompletableFuture<Integer>> loads = new ArrayList<>();
+		Map<UUID, Integer> data = new HashMap<>();
+		ManagedSetting<Integer> setting = new SettingBuilder<>(Integer.class, new NamespacedKey("plugin", "coalesced"))
+				.withAsyncGetter(uuid -> {
+					CompletableFuture<Integer> load = new CompletableFuture<>();
+					loads.add(load);
+					return load;
+				})
+				.withSetter((uuid, value) -> {
+					data.put(uuid, value);
+					return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+				})
+				.withRequestCoalescing()
+				.build();
+
+		UUID uuid = UUID.randomUUID();
+		CompletableFuture<Integer> first = setting.requestValue(uuid);
+		CompletableFuture<Integer> second = setting.requestValue(uuid);
+		CompletableFuture<Integer> third = setting.requestValue(uuid);
+		setting.requestValue(UUID.randomUUID());
+		assertEquals(2, loads.size());
+		assertEquals(2, setting.getCoalescedRequests());
+
+		// cancelling one request does not affect the others
+		second.cancel(false);
+		loads.get(0).complete(7);
+		assertEquals(7, first.join());
+		assertEquals(7, third.join());
+
+		setting.requestValue(uuid);
+		assertEquals(3, loads.size());
+		// a change ends the sharing of the running request
+		setting.setValue(uuid, 8).join();
+		setting.requestValue(uuid);
+		assertEquals(4, loads.size());
+		assertEquals(2, setting.getCoalescedRequests());
+	}
+
+	@Test
+	public void localizedDisplayOptions() {
+		AtomicInteger renders = new AtomicInteger();
+		Setting<Boolean> setting = new SettingBuilder<>(Boolean.class, new NamespacedKey("plugin", "localized"))
+				.withTitle(locale -> {
+					renders.incrementAndGet();
+					return Component.text(locale.getLanguage().equals("de") ? "Fliegen" : "Fly");
+				})
+				.withDescription("Allows flying")
+				.withGetter(uuid -> true)
+				.build();
+		assertEquals(0, renders.get());
+
+		Setting.DisplayOptions options = setting.getDisplayOptions();
+		assertEquals(Component.text("Fliegen"), options.getTitle(Locale.GERMAN));
+		assertEquals(Component.text("Fliegen"), options.getTitle(Locale.GERMAN));
+		assertEquals(Component.text("Fly"), options.getTitle(Locale.ENGLISH));
+		assertEquals(Component.text("Allows flying"), options.getShortDescription(Locale.GERMAN));
+		assertNull(options.getLongDescription(Locale.GERMAN));
+		assertEquals(2, renders.get());
+
+		SettingsAPI.getInstance().getDisplayCache().invalidate(setting);
+		options.getTitle(Locale.GERMAN);
+		assertEquals(3, renders.get());
+	}
+
+	@Test
+	public void displayCachePerApi() {
+		DisplayCache defaultCache = SettingsAPI.getInstance().getDisplayCache();
+		long misses = defaultCache.getStats().misses();
+		Setting<Boolean> plain = new SettingBuilder<>(Boolean.class, new NamespacedKey("plugin", "plain_display"))
+				.withTitle("Fly")
+				.withGetter(uuid -> true)
+				.build();
+		assertEquals(Component.text("Fly"), plain.getDisplayOptions().getTitle(Locale.GERMAN));
+		// components without translations are not cached
+		assertEquals(misses, defaultCache.getStats().misses());
+
+		SettingsAPI api = new SettingsAPI() {
+		};
+		Setting<Boolean> localized = new SettingBuilder<>(Boolean.class, new NamespacedKey("plugin", "api_display"))
+				.withTitle(locale -> Component.text(locale.getLanguage()))
+				.withGetter(uuid -> true)
+				.build();
+		api.registerSetting(localized);
+		assertEquals(Component.text("de"), localized.getDisplayOptions().getTitle(Locale.GERMAN));
+		assertEquals(1, api.getDisplayCache().size());
+		assertEquals(misses, defaultCache.getStats().misses());
+		api.unregisterSetting(localized);
+		assertEquals(0, api.getDisplayCache().size());
+	}
+
+	@Test
+	public void displayCacheEviction() {
+		DisplayCache cache = new DisplayCache(2);
+		Setting.DisplayOptions options = new SettingBuilder<>(Boolean.class, new NamespacedKey("plugin", "evicted"))
+				.withGetter(uuid -> true)
+				.build()
+				.getDisplayOptions();
+		DisplayCache.Rendered rendered = new DisplayCache.Rendered(Component.text("title"), null, null);
+		for (Locale locale : List.of(Locale.GERMAN, Locale.ENGLISH, Locale.FRENCH)) {
+			cache.get(options, locale, l -> rendered);
+		}
+		assertSame(rendered, cache.get(options, Locale.FRENCH, l -> null));
+		assertEquals(new SettingCache.Stats(1, 3, 1, 2), cache.getStats());
+	}
 }
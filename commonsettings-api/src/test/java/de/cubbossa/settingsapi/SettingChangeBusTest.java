@@ -0,0 +1,135 @@
+package de.cubbossa.commonsettings;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettingChangeBusTest {
+
+	private static ManagedSetting<Integer> newSetting(String key, Map<UUID, Integer> data) {
+		return new SettingBuilder<>(Integer.class, new NamespacedKey("bus", key))
+				.withGetter(uuid -> data.getOrDefault(uuid, 0))
+				.withSetter((uuid, value) -> {
+					data.put(uuid, value);
+					return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+				})
+				.withTags("chat")
+				.build();
+	}
+
+	@Test
+	void onChange() {
+		SettingChangeBus bus = SettingsAPI.getInstance().getChangeBus();
+		Map<UUID, Integer> data = new HashMap<>();
+		ManagedSetting<Integer> setting = newSetting("on_change", data);
+		UUID uuid = UUID.randomUUID();
+		List<String> received = new ArrayList<>();
+
+		SettingChangeBus.Subscription byKey = bus.onChange(setting.getKey(),
+				e -> received.add("key " + e.getOldValue() + "->" + e.getNewValue()));
+		SettingChangeBus.Subscription byNamespace = bus.onChangeInNamespace("bus", e -> received.add("namespace"));
+		SettingChangeBus.Subscription byTag = bus.onChangeWithTag("chat", e -> received.add("tag"));
+		try {
+			assertEquals(Setting.SettingChangeResult.SUCCESS, setting.setValue(uuid, 4).join());
+			assertEquals(List.of("key 0->4", "namespace", "tag"), received);
+		} finally {
+			byKey.unsubscribe();
+			byNamespace.unsubscribe();
+			byTag.unsubscribe();
+		}
+		received.clear();
+		setting.setValue(uuid, 5).join();
+		assertTrue(received.isEmpty());
+		assertFalse(bus.hasListeners(setting));
+	}
+
+	@Test
+	void publishesToRegisteringApi() {
+		SettingsAPI api = new SettingsAPI() {
+		};
+		ManagedSetting<Integer> setting = newSetting("own_api", new HashMap<>());
+		api.registerSetting(setting);
+		List<UUID> committed = new ArrayList<>();
+		List<UUID> global = new ArrayList<>();
+		SettingChangeBus.Subscription own = api.getChangeBus().onCommit((s, uuid) -> committed.add(uuid));
+		SettingChangeBus.Subscription other = SettingsAPI.getInstance().getChangeBus().onCommit((s, uuid) -> global.add(uuid));
+		try {
+			UUID uuid = UUID.randomUUID();
+			setting.setValue(uuid, 4).join();
+			assertEquals(List.of(uuid), committed);
+			assertTrue(global.isEmpty());
+		} finally {
+			own.unsubscribe();
+			other.unsubscribe();
+		}
+	}
+
+	@Test
+	void cancel() {
+		SettingChangeBus bus = SettingsAPI.getInstance().getChangeBus();
+		Map<UUID, Integer> data = new HashMap<>();
+		ManagedSetting<Integer> setting = newSetting("cancel", data);
+		UUID uuid = UUID.randomUUID();
+		List<SettingsChangeEvent<?>> received = new ArrayList<>();
+
+		SettingChangeBus.Subscription before = bus.beforeChange(setting.getKey(), e -> e.setCancelled(true));
+		SettingChangeBus.Subscription after = bus.onChange(setting.getKey(), received::add);
+		try {
+			assertEquals(Setting.SettingChangeResult.FAIL_EVENT_CANCELLED, setting.setValue(uuid, 4).join());
+			assertEquals(0, setting.getValue(uuid));
+			assertTrue(received.isEmpty());
+		} finally {
+			before.unsubscribe();
+			after.unsubscribe();
+		}
+	}
+
+	@Test
+	void asyncDelivery() {
+		SettingChangeBus bus = SettingsAPI.getInstance().getChangeBus();
+		ManagedSetting<Integer> setting = newSetting("async", new HashMap<>());
+		List<Runnable> deliveries = new ArrayList<>();
+		List<SettingsChangeEvent<?>> received = new ArrayList<>();
+
+		SettingChangeBus.Subscription subscription = bus.onChange(setting.getKey(), received::add, deliveries::add);
+		try {
+			setting.setValue(UUID.randomUUID(), 1).join();
+			assertTrue(received.isEmpty());
+			assertEquals(1, deliveries.size());
+			deliveries.get(0).run();
+			assertEquals(1, received.size());
+		} finally {
+			subscription.unsubscribe();
+		}
+	}
+
+	@Test
+	void onCommit() {
+		SettingChangeBus bus = SettingsAPI.getInstance().getChangeBus();
+		Map<UUID, Integer> data = new HashMap<>();
+		ManagedSetting<Integer> setting = newSetting("on_commit", data);
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		List<UUID> committed = new ArrayList<>();
+
+		SettingChangeBus.Subscription subscription = bus.onCommit((s, uuid) -> {
+			if (s == setting) {
+				committed.add(uuid);
+			}
+		});
+		try {
+			// commit listeners don't need the old value, so the change takes the direct path
+			assertFalse(bus.hasListeners(setting));
+			setting.setValue(a, 1).join();
+			setting.setValues(Map.of(b, 2)).join();
+			assertEquals(List.of(a, b), committed);
+		} finally {
+			subscription.unsubscribe();
+		}
+		setting.setValue(a, 3).join();
+		assertEquals(2, committed.size());
+	}
+}
@@ -0,0 +1,96 @@
+package de.cubbossa.commonsettings;
+
+import net.kyori.adventure.key.Key;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextDecoration;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettingCodecsTest {
+
+	private final SettingCodecs codecs = new SettingCodecs();
+
+	private <T> T roundTrip(Class<T> type, T value) {
+		SettingCodec<T> codec = codecs.get(type);
+		ByteBuffer buffer = ByteBuffer.allocate(codec.maxSize(value));
+		codec.write(buffer, value);
+		T read = codec.read(buffer.flip());
+		assertEquals(value, codec.fromText(codec.toText(value)));
+		return read;
+	}
+
+	@Test
+	void defaults() {
+		assertEquals(true, roundTrip(Boolean.class, true));
+		assertEquals(-3, roundTrip(Integer.class, -3));
+		assertEquals(Long.MAX_VALUE, roundTrip(Long.class, Long.MAX_VALUE));
+		assertEquals(0.1, roundTrip(Double.class, 0.1));
+		assertEquals("äöü 😀 text", roundTrip(String.class, "äöü 😀 text"));
+		assertThrows(IllegalArgumentException.class, () -> codecs.get(Boolean.class).fromText("yes"));
+		// the text form follows the rules of the parsers
+		assertEquals(true, codecs.get(Boolean.class).fromText("TRUE"));
+	}
+
+	@Test
+	void enums() {
+		assertTrue(codecs.isSupported(TimeUnit.class));
+		assertEquals(TimeUnit.HOURS, roundTrip(TimeUnit.class, TimeUnit.HOURS));
+		SettingCodec<TimeUnit> codec = codecs.get(TimeUnit.class);
+
+		// a value that only consists of the name
+		assertEquals(TimeUnit.DAYS, codec.read(ByteBuffer.wrap("DAYS".getBytes(StandardCharsets.UTF_8))));
+		// an ordinal that belongs to another constant after the enum was reordered
+		ByteBuffer reordered = ByteBuffer.allocate(16).put((byte) 0).putShort((short) 0).put("SECONDS".getBytes(StandardCharsets.UTF_8));
+		assertEquals(TimeUnit.SECONDS, codec.read(reordered.flip()));
+		// long names are stored as ordinal and name hash, short names as they are
+		assertEquals(7, codec.maxSize(TimeUnit.MILLISECONDS));
+		assertEquals(4, codec.maxSize(TimeUnit.DAYS));
+		assertEquals(TimeUnit.DAYS, roundTrip(TimeUnit.class, TimeUnit.DAYS));
+		ByteBuffer hashed = ByteBuffer.allocate(7).put((byte) 1).putShort((short) 0).putInt("MILLISECONDS".hashCode());
+		assertEquals(TimeUnit.MILLISECONDS, codec.read(hashed.flip()));
+		ByteBuffer unknownHash = ByteBuffer.allocate(7).put((byte) 1).putShort((short) 0).putInt("WEEKS".hashCode());
+		assertThrows(IllegalArgumentException.class, () -> codec.read(unknownHash.flip()));
+		assertThrows(IllegalArgumentException.class, () -> codec.fromText("WEEKS"));
+		assertEquals(TimeUnit.HOURS, codec.fromText("hours"));
+	}
+
+	@Test
+	void components() {
+		Component component = Component.text("Hello ", NamedTextColor.GOLD, TextDecoration.BOLD)
+				.decoration(TextDecoration.ITALIC, false)
+				.font(Key.key("minecraft", "uniform"))
+				.clickEvent(ClickEvent.runCommand("/help"))
+				.hoverEvent(HoverEvent.showText(Component.text("click me")))
+				.append(Component.translatable("block.minecraft.stone", Component.keybind("key.jump")))
+				.append(Component.score("player", "kills"));
+		assertEquals(component, roundTrip(Component.class, component));
+
+		byte[] truncated = new byte[]{0, 0, 0};
+		assertThrows(IllegalArgumentException.class, () -> codecs.get(Component.class).read(ByteBuffer.wrap(truncated)));
+		SettingCodec<Component> codec = codecs.get(Component.class);
+		Component nbt = Component.text("stored ").append(Component.storageNBT("path", Key.key("plugin", "storage")));
+		assertThrows(IllegalArgumentException.class, () -> codec.maxSize(nbt));
+		assertThrows(IllegalArgumentException.class, () -> codec.toText(nbt));
+		Component entity = Component.text("pig").hoverEvent(HoverEvent.showEntity(Key.key("minecraft", "pig"), UUID.randomUUID()));
+		assertThrows(IllegalArgumentException.class, () -> codec.write(ByteBuffer.allocate(256), entity));
+	}
+
+	@Test
+	void customTypes() {
+		assertFalse(codecs.isSupported(Duration.class));
+		codecs.registerText(Duration.class, Duration::toString, Duration::parse);
+		assertEquals(Duration.ofSeconds(90), roundTrip(Duration.class, Duration.ofSeconds(90)));
+		codecs.unregister(Duration.class);
+		assertNull(codecs.get(Duration.class));
+	}
+}
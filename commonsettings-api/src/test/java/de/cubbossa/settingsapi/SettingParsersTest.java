@@ -0,0 +1,51 @@
+package de.cubbossa.commonsettings;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettingParsersTest {
+
+	@Test
+	void defaults() {
+		SettingParsers parsers = new SettingParsers();
+		assertEquals(true, parsers.parse(Boolean.class, "TRUE"));
+		assertEquals(false, parsers.parse(Boolean.class, "false"));
+		assertThrows(SettingValueParseException.class, () -> parsers.parse(Boolean.class, "yes"));
+		assertEquals(42, parsers.parse(Integer.class, "42"));
+		assertEquals(1.5, parsers.parse(Double.class, "1.5"));
+		assertThrows(SettingValueParseException.class, () -> parsers.parse(Integer.class, "1.5"));
+		assertEquals("any text", parsers.parse(String.class, "any text"));
+		assertEquals("7", parsers.serialize(Long.class, 7L));
+	}
+
+	@Test
+	void enums() {
+		SettingParsers parsers = new SettingParsers();
+		assertTrue(parsers.isSupported(TimeUnit.class));
+		assertEquals(TimeUnit.SECONDS, parsers.parse(TimeUnit.class, "seconds"));
+		assertEquals(TimeUnit.SECONDS, parsers.parse(TimeUnit.class, "SeCoNdS"));
+		assertEquals("MINUTES", parsers.serialize(TimeUnit.class, TimeUnit.MINUTES));
+		assertThrows(SettingValueParseException.class, () -> parsers.parse(TimeUnit.class, "weeks"));
+	}
+
+	@Test
+	void customTypes() {
+		SettingParsers parsers = new SettingParsers();
+		assertFalse(parsers.isSupported(Duration.class));
+		assertThrows(SettingValueParseException.class, () -> parsers.parse(Duration.class, "PT1S"));
+		assertEquals("PT1S", parsers.serialize(Duration.class, Duration.ofSeconds(1)));
+
+		parsers.register(Duration.class, input -> Duration.ofSeconds(Long.parseLong(input)),
+				value -> String.valueOf(value.toSeconds()));
+		assertEquals(Duration.ofSeconds(5), parsers.parse(Duration.class, "5"));
+		assertEquals("5", parsers.serialize(Duration.class, Duration.ofSeconds(5)));
+		assertThrows(SettingValueParseException.class, () -> parsers.parse(Duration.class, "five"));
+
+		parsers.unregister(Duration.class);
+		assertFalse(parsers.isSupported(Duration.class));
+	}
+}
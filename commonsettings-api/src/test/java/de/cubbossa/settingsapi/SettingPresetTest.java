@@ -0,0 +1,107 @@
+package de.cubbossa.commonsettings;
+
+import de.cubbossa.commonsettings.Setting.SettingChangeResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettingPresetTest {
+
+	private final Map<NamespacedKey, Object> values = new ConcurrentHashMap<>();
+	private final UUID uuid = UUID.randomUUID();
+
+	/**
+	 * A setting that stores its value in the shared map and fails to set every value that matches the predicate.
+	 */
+	private <T> Setting<T> setting(Class<T> type, String namespace, String key, T initial, Predicate<T> failing) {
+		NamespacedKey namespacedKey = NamespacedKey.of(namespace, key);
+		values.put(namespacedKey, initial);
+		return new SettingBuilder<>(type, namespacedKey)
+				.withGetter(uuid -> type.cast(values.get(namespacedKey)))
+				.withSetter((uuid, value) -> {
+					if (failing.test(value)) {
+						return CompletableFuture.completedFuture(SettingChangeResult.FAIL_OTHER);
+					}
+					values.put(namespacedKey, value);
+					return CompletableFuture.completedFuture(SettingChangeResult.SUCCESS);
+				})
+				.build();
+	}
+
+	@Test
+	void applied() {
+		Setting<Boolean> chat = setting(Boolean.class, "chat", "mentions", true, value -> false);
+		Setting<Integer> particles = setting(Integer.class, "particles", "amount", 100, value -> false);
+		SettingPreset preset = SettingPreset.builder()
+				.with(chat, false)
+				.with(particles, 10)
+				.build();
+
+		SettingPreset.Result result = SettingsAPI.getInstance().applyPreset(uuid, preset).join();
+		assertTrue(result.isApplied());
+		assertEquals(Map.of(chat.getKey(), SettingChangeResult.SUCCESS, particles.getKey(), SettingChangeResult.SUCCESS),
+				result.results());
+		assertEquals(false, chat.getValue(uuid));
+		assertEquals(10, particles.getValue(uuid));
+	}
+
+	@Test
+	void revertsOnFailure() {
+		Setting<Boolean> mentions = setting(Boolean.class, "chat", "mentions", true, value -> false);
+		Setting<String> color = setting(String.class, "chat", "color", "white", value -> value.equals("gray"));
+		Setting<Boolean> sounds = setting(Boolean.class, "chat", "sounds", true, value -> false);
+		Setting<Integer> particles = setting(Integer.class, "particles", "amount", 100, value -> false);
+		SettingPreset preset = SettingPreset.builder()
+				.with(mentions, false)
+				.with(color, "gray")
+				.with(sounds, false)
+				.with(particles, 10)
+				.build();
+
+		SettingPreset.Result result = SettingsAPI.getInstance().applyPreset(uuid, preset).join();
+		assertEquals(SettingPreset.Outcome.REVERTED, result.outcome());
+		assertEquals(SettingChangeResult.FAIL_OTHER, result.results().get(color.getKey()));
+		// the values after the failing one of the same plugin are skipped
+		assertFalse(result.results().containsKey(sounds.getKey()));
+		assertEquals(true, mentions.getValue(uuid));
+		assertEquals(true, sounds.getValue(uuid));
+		assertEquals(100, particles.getValue(uuid));
+	}
+
+	@Test
+	void reportsFailedReverts() {
+		Setting<Integer> volume = setting(Integer.class, "sounds", "volume", 100, value -> value == 100);
+		Setting<Integer> particles = setting(Integer.class, "particles", "amount", 100, value -> value == 10);
+		SettingPreset preset = SettingPreset.builder()
+				.with(volume, 0)
+				.with(particles, 10)
+				.build();
+
+		SettingPreset.Result result = SettingsAPI.getInstance().applyPreset(uuid, preset).join();
+		assertEquals(SettingPreset.Outcome.PARTIALLY_REVERTED, result.outcome());
+		assertEquals(Set.of(volume.getKey()), result.notReverted());
+		assertEquals(0, volume.getValue(uuid));
+	}
+
+	@Test
+	void rejectsBeforeWriting() {
+		Setting<Integer> particles = setting(Integer.class, "particles", "amount", 100, value -> false);
+		NamespacedKey unknown = NamespacedKey.of("unknown", "setting");
+		SettingPreset preset = SettingPreset.builder()
+				.with(particles, 10)
+				.with(unknown, true)
+				.build();
+
+		SettingPreset.Result result = SettingsAPI.getInstance().applyPreset(uuid, preset).join();
+		assertEquals(SettingPreset.Outcome.REVERTED, result.outcome());
+		assertEquals(Map.of(unknown, SettingChangeResult.FAIL_OTHER), result.results());
+		assertEquals(100, particles.getValue(uuid));
+	}
+}
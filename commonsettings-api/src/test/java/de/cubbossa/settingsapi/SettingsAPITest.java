@@ -110,6 +110,27 @@ class SettingsAPITest {
 
 	@Test @Order(8)
 	void testGetSettings1() {
+		SettingsAPI api = new SettingsAPI() {
+		};
+		Setting<Boolean> a = newTestSetting(Boolean.class, "a", List.of("chat", "pvp"));
+		Setting<Boolean> b = newTestSetting(Boolean.class, "b", List.of("chat"));
+		Setting<String> c = newTestSetting(String.class, "c", List.of("pvp", "sound"));
+		api.registerSetting(a);
+		api.registerSetting(b);
+		api.registerSetting(c);
+
+		assertEquals(List.of(a, b, c), api.getSettings("setting"));
+		assertEquals(List.of(a, b), api.getSettings(Boolean.class));
+		assertEquals(List.of(a, b), api.getSettingsWithTag("chat"));
+		assertEquals(List.of(a), api.getSettingsWithAllTags(List.of("chat", "pvp")));
+		assertEquals(List.of(), api.getSettingsWithAllTags(List.of("chat", "unknown")));
+		assertEquals(Set.of(a, b, c), Set.copyOf(api.getSettingsWithSomeTags(List.of("chat", "sound"))));
+		assertThrows(UnsupportedOperationException.class, () -> api.getSettingsWithTag("chat").clear());
+
+		api.unregisterSetting(a);
+		assertEquals(List.of(b), api.getSettingsWithTag("chat"));
+		assertEquals(List.of(c), api.getSettingsWithTag("pvp"));
+		assertEquals(List.of(b), api.getSettings(Boolean.class));
 	}
 
 	@Test @Order(9)
@@ -117,15 +138,56 @@ class SettingsAPITest {
 	}
 
 	@Test @Order(10)
+	void requestValues() {
+		UUID uuid = UUID.randomUUID();
+		Setting<Boolean> a = newTestSetting(Boolean.class, "values_a");
+		Setting<String> b = newTestSetting(String.class, "values_b");
+		a.setValue(uuid, true);
+		b.setValue(uuid, "b");
+
+		Map<NamespacedKey, Object> values = SettingsAPI.getInstance().requestValues(uuid, List.of(a, b)).join();
+		assertEquals(Map.of(a.getKey(), true, b.getKey(), "b"), values);
+	}
+
+	@Test @Order(11)
 	void testGetSetting() {
 	}
 
+	@Test @Order(12)
+	void getSettingsWithPrefix() {
+		SettingsAPI api = new SettingsAPI() {
+		};
+		Setting<Boolean> chat = newTestSetting(Boolean.class, "chat");
+		Setting<Boolean> chatColor = newTestSetting(Boolean.class, "chat_color");
+		Setting<Boolean> sound = newTestSetting(Boolean.class, "sound");
+		api.registerSetting(sound);
+		api.registerSetting(chatColor);
+		api.registerSetting(chat);
+
+		assertEquals(List.of(chat, chatColor), api.getSettingsWithPrefix("setting:ch", 10));
+		assertEquals(List.of(chat), api.getSettingsWithPrefix("SETTING:CH", 1));
+		assertEquals(List.of(chat, chatColor, sound), api.getSettingsWithPrefix("", 10));
+		assertEquals(List.of(), api.getSettingsWithPrefix("settings", 10));
+
+		assertEquals(List.of(chat, chatColor), api.getSettingsSorted(0, 2));
+		assertEquals(List.of(sound), api.getSettingsSorted(2, 2));
+		assertEquals(List.of(), api.getSettingsSorted(4, 2));
+
+		api.unregisterSetting(chat);
+		assertEquals(List.of(chatColor), api.getSettingsWithPrefix("setting:ch", 10));
+		assertEquals(2, api.getSettingCount());
+	}
+
 	private static <T> Setting<T> newTestSetting(Class<T> type, String name) {
+		return newTestSetting(type, name, List.of("abc"));
+	}
+
+	private static <T> Setting<T> newTestSetting(Class<T> type, String name, List<String> tags) {
 		return new DummySetting<>(
 				type,
 				NamespacedKey.fromString("setting:" + name),
 				new SimpleFlags(false, false, true),
-				List.of("abc")
+				tags
 		);
 	}
 
@@ -0,0 +1,69 @@
+package de.cubbossa.commonsettings;
+
+import de.cubbossa.commonsettings.SettingInstrumentation.Operation;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SettingsMetricsTest {
+
+	@Test
+	public void recordCalls() {
+		NamespacedKey key = new NamespacedKey("metrics", "setting");
+		BooleanSetting setting = new SettingBuilder<>(Boolean.class, key)
+				.withSetter((uuid, value) -> CompletableFuture.completedFuture(value
+						? Setting.SettingChangeResult.SUCCESS
+						: Setting.SettingChangeResult.FAIL_INVALID_VALUE))
+				.withDefaultValue(false)
+				.buildBoolean(uuid -> true);
+		UUID uuid = UUID.randomUUID();
+
+		SettingsMetrics metrics = new SettingsMetrics();
+		SettingsAPI.getInstance().setInstrumentation(metrics);
+		try {
+			setting.getBoolean(uuid);
+			setting.getValue(uuid);
+			setting.requestValue(uuid).join();
+			setting.setValue(uuid, true).join();
+			setting.reset(uuid).join();
+		} finally {
+			SettingsAPI.getInstance().setInstrumentation(null);
+		}
+		// not recorded anymore
+		setting.getValue(uuid);
+
+		SettingsMetrics.Metrics recorded = metrics.getMetrics(key);
+		assertNotNull(recorded);
+		assertEquals(2, recorded.getCalls(Operation.GET_VALUE));
+		assertEquals(1, recorded.getCalls(Operation.REQUEST_VALUE));
+		assertEquals(1, recorded.getCalls(Operation.SET_VALUE));
+		assertEquals(1, recorded.getCalls(Operation.RESET));
+		assertEquals(1, recorded.getResults(Setting.SettingChangeResult.SUCCESS));
+		assertEquals(1, recorded.getResults(Setting.SettingChangeResult.FAIL_INVALID_VALUE));
+		assertEquals(0, recorded.getErrors());
+		assertEquals(2 / 3., recorded.getSyncRatio(), 1e-9);
+		assertTrue(recorded.getLatency(Operation.GET_VALUE).getMaxNanos() > 0);
+	}
+
+	@Test
+	public void recordErrors() {
+		NamespacedKey key = new NamespacedKey("metrics", "failing");
+		Setting<String> setting = new SettingBuilder<>(String.class, key)
+				.withGetter(uuid -> {
+					throw new IllegalStateException();
+				})
+				.build();
+		SettingsMetrics metrics = new SettingsMetrics();
+		SettingsAPI.getInstance().setInstrumentation(metrics);
+		try {
+			assertThrows(IllegalStateException.class, () -> setting.getValue(UUID.randomUUID()));
+		} finally {
+			SettingsAPI.getInstance().setInstrumentation(null);
+		}
+		assertEquals(1, metrics.getMetrics(key).getErrors());
+		assertEquals(1, metrics.getMetrics(key).getCalls(Operation.GET_VALUE));
+	}
+}
@@ -0,0 +1,169 @@
+package de.cubbossa.commonsettings;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettingsTransferTest {
+
+	private static <T> Setting<T> setting(SettingsAPI api, Class<T> type, String key, Map<UUID, T> data, T defaultValue) {
+		Setting<T> setting = new SettingBuilder<>(type, new NamespacedKey("transfer", key))
+				.withGetter(uuid -> data.getOrDefault(uuid, defaultValue))
+				.withSetter((uuid, value) -> {
+					data.put(uuid, value);
+					return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+				})
+				.withFlagNullable()
+				.withDefaultValue(defaultValue)
+				.build();
+		api.registerSetting(setting);
+		return setting;
+	}
+
+	@Test
+	void exportAndImport() throws Exception {
+		SettingsAPI source = new SettingsAPI() {
+		};
+		Map<UUID, Integer> ints = new HashMap<>();
+		Map<UUID, TimeUnit> units = new HashMap<>();
+		Map<UUID, String> strings = new HashMap<>();
+		setting(source, Integer.class, "int", ints, 0);
+		setting(source, TimeUnit.class, "unit", units, TimeUnit.SECONDS);
+		setting(source, String.class, "string", strings, null);
+		// components have a codec but no parser
+		Map<UUID, Component> components = new HashMap<>();
+		setting(source, Component.class, "component", components, Component.empty());
+		setting(source, Object.class, "unsupported", new HashMap<>(), null);
+		setting(source, Integer.class, "removed", new HashMap<>(), 1);
+
+		List<UUID> uuids = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			UUID uuid = UUID.randomUUID();
+			uuids.add(uuid);
+			ints.put(uuid, i);
+			units.put(uuid, TimeUnit.values()[i % TimeUnit.values().length]);
+			if (i % 3 == 0) {
+				strings.put(uuid, "wert " + i + " ä");
+			}
+			components.put(uuid, Component.text(i, NamedTextColor.GREEN));
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		List<SettingsTransfer.Progress> exportProgress = new ArrayList<>();
+		SettingsTransfer.ExportResult exported = new SettingsTransfer(source).export(Channels.newChannel(out), uuids,
+				source.getSettings(), exportProgress::add);
+		assertEquals(2000, exported.uuids());
+		assertEquals(2000 * 5, exported.values());
+		assertEquals(out.size(), exported.bytes());
+		assertEquals(List.of(new NamespacedKey("transfer", "unsupported")), exported.skippedSettings());
+		assertEquals(4, exportProgress.size());
+
+		SettingsAPI target = new SettingsAPI() {
+		};
+		Map<UUID, Integer> importedInts = new HashMap<>();
+		Map<UUID, TimeUnit> importedUnits = new HashMap<>();
+		Map<UUID, String> importedStrings = new HashMap<>();
+		setting(target, Integer.class, "int", importedInts, 0);
+		setting(target, TimeUnit.class, "unit", importedUnits, TimeUnit.SECONDS);
+		setting(target, String.class, "string", importedStrings, null);
+		Map<UUID, Component> importedComponents = new HashMap<>();
+		setting(target, Component.class, "component", importedComponents, Component.empty());
+
+		List<SettingsTransfer.Progress> importProgress = new ArrayList<>();
+		SettingsTransfer.ImportResult imported = new SettingsTransfer(target).importValues(
+				Channels.newChannel(new ByteArrayInputStream(out.toByteArray())), importProgress::add);
+		assertEquals(2000, imported.uuids());
+		assertEquals(2000 * 5, imported.values());
+		assertEquals(Map.of(Setting.SettingChangeResult.SUCCESS, 2000L * 4), imported.results());
+		assertEquals(List.of(new NamespacedKey("transfer", "removed")), imported.unknownSettings());
+		assertEquals(0, imported.invalidValues());
+		assertEquals(out.size(), imported.bytes());
+		assertFalse(importProgress.isEmpty());
+
+		assertEquals(ints, importedInts);
+		assertEquals(units, importedUnits);
+		assertEquals(components, importedComponents);
+		for (UUID uuid : uuids) {
+			assertEquals(strings.get(uuid), importedStrings.get(uuid));
+		}
+	}
+
+	@Test
+	void truncatedStream() throws Exception {
+		SettingsAPI api = new SettingsAPI() {
+		};
+		setting(api, Integer.class, "int", new HashMap<>(), 0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new SettingsTransfer(api).export(Channels.newChannel(out), List.of(UUID.randomUUID(), UUID.randomUUID()));
+		byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 10);
+		assertThrows(EOFException.class, () -> new SettingsTransfer(api).importValues(
+				Channels.newChannel(new ByteArrayInputStream(truncated)), null));
+	}
+
+	@Test
+	void corruptStream() throws Exception {
+		SettingsAPI api = new SettingsAPI() {
+		};
+		setting(api, Integer.class, "int", new HashMap<>(), 0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new SettingsTransfer(api).export(Channels.newChannel(out), List.of(UUID.randomUUID()));
+		byte[] bytes = out.toByteArray();
+		// header: magic, version, setting count, key and type of the setting, then the block length and the UUID
+		int block = Integer.BYTES + 1 + Short.BYTES
+				+ Short.BYTES + "transfer:int".length() + Short.BYTES + Integer.class.getName().length();
+		int firstValue = block + Integer.BYTES + 16 + Short.BYTES;
+
+		byte[] index = bytes.clone();
+		ByteBuffer.wrap(index).putShort(firstValue, (short) 5);
+		byte[] length = bytes.clone();
+		ByteBuffer.wrap(length).putInt(firstValue + Short.BYTES, 1 << 20);
+		byte[] count = bytes.clone();
+		ByteBuffer.wrap(count).putShort(firstValue - Short.BYTES, (short) 3);
+		byte[] settings = bytes.clone();
+		ByteBuffer.wrap(settings).putShort(Integer.BYTES + 1, (short) -1);
+		for (byte[] corrupt : List.of(index, length, count, settings)) {
+			assertThrows(IOException.class, () -> new SettingsTransfer(api).importValues(
+					Channels.newChannel(new ByteArrayInputStream(corrupt)), null));
+		}
+	}
+
+	@Test
+	void importParserVersion() throws Exception {
+		SettingsAPI api = new SettingsAPI() {
+		};
+		Map<UUID, Integer> ints = new HashMap<>();
+		setting(api, Integer.class, "int", ints, 0);
+		UUID uuid = UUID.randomUUID();
+		byte[] key = "transfer:int".getBytes(StandardCharsets.UTF_8);
+		byte[] type = Integer.class.getName().getBytes(StandardCharsets.UTF_8);
+		byte[] value = "42".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer stream = ByteBuffer.allocate(128)
+				.putInt(SettingsTransfer.MAGIC).put((byte) 1).putShort((short) 1)
+				.putShort((short) key.length).put(key).putShort((short) type.length).put(type)
+				.putInt(16 + Short.BYTES * 2 + Integer.BYTES + value.length)
+				.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).putShort((short) 1)
+				.putShort((short) 0).putInt(value.length).put(value)
+				.putInt(0)
+				.flip();
+		byte[] bytes = new byte[stream.remaining()];
+		stream.get(bytes);
+
+		SettingsTransfer.ImportResult imported = new SettingsTransfer(api).importValues(
+				Channels.newChannel(new ByteArrayInputStream(bytes)), null);
+		assertEquals(1, imported.values());
+		assertEquals(Map.of(uuid, 42), ints);
+	}
+}
@@ -0,0 +1,75 @@
+package de.cubbossa.commonsettings.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveUUIDMapTest {
+
+	@Test
+	void uuidIndex() {
+		UUIDIndex index = new UUIDIndex(4);
+		List<UUID> uuids = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			UUID uuid = UUID.randomUUID();
+			uuids.add(uuid);
+			assertEquals(i, index.getOrAdd(uuid));
+		}
+		assertEquals(1000, index.size());
+		for (int i = 0; i < uuids.size(); i++) {
+			assertEquals(i, index.get(uuids.get(i)));
+			assertEquals(i, index.getOrAdd(uuids.get(i)));
+		}
+		assertEquals(uuids.get(500), index.uuidAt(500));
+		assertEquals(-1, index.get(UUID.randomUUID()));
+		assertEquals(-1, index.get(new UUID(0, 0)));
+	}
+
+	@Test
+	void booleanMap() {
+		UUIDBooleanMap map = new UUIDBooleanMap(2);
+		List<UUID> uuids = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			UUID uuid = UUID.randomUUID();
+			uuids.add(uuid);
+			map.put(uuid, i % 3 == 0);
+		}
+		assertEquals(500, map.size());
+		for (int i = 0; i < uuids.size(); i++) {
+			assertEquals(i % 3 == 0, map.get(uuids.get(i), i % 3 != 0));
+		}
+		UUID unknown = UUID.randomUUID();
+		assertTrue(map.get(unknown, true));
+		assertFalse(map.contains(unknown));
+
+		map.remove(uuids.get(0));
+		assertFalse(map.contains(uuids.get(0)));
+		assertFalse(map.get(uuids.get(0), false));
+		assertEquals(499, map.size());
+	}
+
+	@Test
+	void intAndDoubleMap() {
+		UUIDIntMap ints = new UUIDIntMap(2);
+		UUIDDoubleMap doubles = new UUIDDoubleMap(2);
+		List<UUID> uuids = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			UUID uuid = UUID.randomUUID();
+			uuids.add(uuid);
+			ints.put(uuid, i);
+			doubles.put(uuid, i / 2.);
+		}
+		for (int i = 0; i < uuids.size(); i++) {
+			assertEquals(i, ints.get(uuids.get(i), -1));
+			assertEquals(i / 2., doubles.get(uuids.get(i), -1));
+		}
+		assertEquals(-1, ints.get(UUID.randomUUID(), -1));
+		ints.put(uuids.get(7), 70);
+		assertEquals(70, ints.get(uuids.get(7), -1));
+		assertEquals(500, ints.size());
+	}
+}
@@ -0,0 +1,101 @@
+package de.cubbossa.commonsettings.store;
+
+import de.cubbossa.commonsettings.BooleanSetting;
+import de.cubbossa.commonsettings.DuplicateKeyException;
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettingStoreTest {
+
+	enum Mode {
+		OFF, FRIENDS, ALL
+	}
+
+	@Test
+	void columns() {
+		SettingStore store = new SettingStore(2);
+		SettingStore.BooleanColumn bools = store.booleanColumn(NamespacedKey.of("test", "bool"), true);
+		SettingStore.IntColumn ints = store.intColumn(NamespacedKey.of("test", "int"), -1);
+		SettingStore.DoubleColumn doubles = store.doubleColumn(NamespacedKey.of("test", "double"), .5);
+		SettingStore.EnumColumn<Mode> modes = store.enumColumn(NamespacedKey.of("test", "mode"), Mode.class, Mode.ALL);
+
+		List<UUID> uuids = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			UUID uuid = UUID.randomUUID();
+			uuids.add(uuid);
+			bools.setBoolean(uuid, i % 2 == 0);
+			ints.setInt(uuid, i);
+			if (i % 3 == 0) {
+				doubles.setDouble(uuid, i / 4.);
+				modes.set(uuid, Mode.values()[i % 2]);
+			}
+		}
+		assertEquals(300, store.size());
+		for (int i = 0; i < uuids.size(); i++) {
+			UUID uuid = uuids.get(i);
+			assertEquals(i % 2 == 0, bools.getBoolean(uuid));
+			assertEquals(i, ints.getInt(uuid));
+			assertEquals(i % 3 == 0 ? i / 4. : .5, doubles.getDouble(uuid));
+			assertEquals(i % 3 == 0 ? Mode.values()[i % 2] : Mode.ALL, modes.get(uuid));
+			assertEquals(i % 3 == 0, modes.contains(uuid));
+		}
+
+		UUID unknown = UUID.randomUUID();
+		assertTrue(bools.getBoolean(unknown));
+		assertEquals(-1, ints.getInt(unknown));
+		assertFalse(ints.contains(unknown));
+
+		ints.remove(uuids.get(4));
+		assertEquals(-1, ints.getInt(uuids.get(4)));
+		assertTrue(bools.contains(uuids.get(4)));
+
+		assertEquals(300, store.size());
+		bools.remove(uuids.get(1));
+		ints.remove(uuids.get(1));
+		assertEquals(299, store.size());
+
+		assertSame(ints, store.getColumn(NamespacedKey.of("test", "int")));
+		assertThrows(DuplicateKeyException.class, () -> store.intColumn(NamespacedKey.of("test", "int"), 0));
+		assertTrue(store.footprint() > 0);
+	}
+
+	@Test
+	void backend() throws Exception {
+		SettingStore store = new SettingStore();
+		NamespacedKey key = NamespacedKey.of("test", "store_backend");
+		SettingStore.BooleanColumn column = store.booleanColumn(key, false);
+		BooleanSetting setting = new SettingBuilder<>(Boolean.class, key)
+				.withBackend(column)
+				.buildBoolean(column::getBoolean);
+
+		UUID uuid = UUID.randomUUID();
+		assertFalse(setting.getBoolean(uuid));
+		assertEquals(Setting.SettingChangeResult.SUCCESS, setting.setValue(uuid, true).get(1, TimeUnit.SECONDS));
+		assertTrue(setting.getBoolean(uuid));
+		assertTrue(setting.getValue(uuid));
+		assertEquals(Setting.SettingChangeResult.FAIL_INVALID_VALUE,
+				column.set(uuid, null).get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void batches() throws Exception {
+		SettingStore store = new SettingStore();
+		SettingStore.IntColumn column = store.intColumn(NamespacedKey.of("test", "store_batches"), 0);
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+
+		assertEquals(Map.of(a, Setting.SettingChangeResult.SUCCESS, b, Setting.SettingChangeResult.SUCCESS),
+				column.setAll(Map.of(a, 1, b, 2)).get(1, TimeUnit.SECONDS));
+		assertEquals(Map.of(a, 1, b, 2), column.requestAll(List.of(a, b)).get(1, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,63 @@
+package de.cubbossa.commonsettings.benchmark;
+
+import de.cubbossa.commonsettings.SettingCodec;
+import de.cubbossa.commonsettings.SettingCodecs;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading strings and enums with the binary {@link SettingCodecs}, compared to copying the bytes of the
+ * string and looking up enum constants by name, as the log storage did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	private final SettingCodec<String> strings = new SettingCodecs().get(String.class);
+	private final SettingCodec<TimeUnit> enums = new SettingCodecs().get(TimeUnit.class);
+	private final ByteBuffer encodedString = ByteBuffer.wrap("The quick brown fox jumps over the lazy dog"
+			.getBytes(StandardCharsets.UTF_8));
+	private ByteBuffer encodedEnum;
+	private ByteBuffer encodedName;
+
+	@Setup
+	public void setUp() {
+		encodedEnum = ByteBuffer.allocate(enums.maxSize(TimeUnit.MILLISECONDS));
+		enums.write(encodedEnum, TimeUnit.MILLISECONDS);
+		encodedEnum.flip();
+		encodedName = ByteBuffer.wrap(TimeUnit.MILLISECONDS.name().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public String stringCodec() {
+		return strings.read(encodedString.duplicate());
+	}
+
+	@Benchmark
+	public String stringCopy() {
+		ByteBuffer text = encodedString.duplicate();
+		byte[] bytes = new byte[text.remaining()];
+		text.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public TimeUnit enumCodec() {
+		return enums.read(encodedEnum.duplicate());
+	}
+
+	@Benchmark
+	public TimeUnit enumByName() {
+		ByteBuffer name = encodedName.duplicate();
+		byte[] bytes = new byte[name.remaining()];
+		name.get(bytes);
+		return TimeUnit.valueOf(new String(bytes, StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,76 @@
+package de.cubbossa.commonsettings.benchmark;
+
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead that {@link SettingBuilder} adds around the getters and setters of a provider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+	private final UUID uuid = UUID.randomUUID();
+	private Setting<Boolean> plain;
+	private Setting<Boolean> cached;
+	private Setting<Boolean> asyncOnly;
+	private Setting<Boolean> notThreadSafe;
+
+	@Setup
+	public void setup() {
+		plain = builder("plain").build();
+		cached = builder("cached").withCache(1024, Duration.ofMinutes(5)).build();
+		asyncOnly = new SettingBuilder<>(Boolean.class, new NamespacedKey("benchmark", "async"))
+				.withAsyncGetter(uuid -> CompletableFuture.completedFuture(true))
+				.build();
+		notThreadSafe = builder("not_thread_safe").withFlagNotThreadSafe().build();
+	}
+
+	private static SettingBuilder<Boolean> builder(String key) {
+		return new SettingBuilder<>(Boolean.class, new NamespacedKey("benchmark", key))
+				.withGetter(uuid -> true)
+				.withSetter((uuid, value) -> CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS));
+	}
+
+	@Benchmark
+	public Boolean getValue() {
+		return plain.getValue(uuid);
+	}
+
+	@Benchmark
+	public Boolean getValueCached() {
+		return cached.getValue(uuid);
+	}
+
+	@Benchmark
+	public Boolean getValueAsyncOnly() {
+		return asyncOnly.getValue(uuid);
+	}
+
+	@Benchmark
+	public Boolean requestValue() {
+		return plain.requestValue(uuid).join();
+	}
+
+	@Benchmark
+	public Setting.SettingChangeResult setValueWorkerPool() {
+		return plain.setValue(uuid, false).join();
+	}
+
+	@Benchmark
+	public Setting.SettingChangeResult setValueMainThread() {
+		// without the plugin, the main thread executor runs the setter on the calling thread
+		return notThreadSafe.setValue(uuid, false).join();
+	}
+}
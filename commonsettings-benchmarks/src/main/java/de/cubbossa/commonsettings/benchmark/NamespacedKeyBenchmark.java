@@ -0,0 +1,72 @@
+package de.cubbossa.commonsettings.benchmark;
+
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingsAPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures hashing, comparing, parsing and looking up {@link NamespacedKey}s.
+ * <br>
+ * Run with the gc profiler to see the allocation per operation (gc.alloc.rate.norm), which should be zero for all
+ * lookups and for parsing an already known key:
+ * java -jar commonsettings-benchmarks/target/benchmarks.jar NamespacedKeyBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamespacedKeyBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	private int size;
+
+	private SettingsAPI api;
+	private Map<NamespacedKey, Object> map;
+	private NamespacedKey key;
+	private NamespacedKey equalKey;
+	private String keyString;
+
+	@Setup
+	public void setup() {
+		api = Registries.create(size);
+		map = new HashMap<>();
+		for (Setting<?> setting : api.getSettings()) {
+			map.put(setting.getKey(), setting);
+		}
+		key = Registries.key(size / 2);
+		equalKey = Registries.key(size / 2);
+		keyString = key.toString();
+	}
+
+	@Benchmark
+	public int hash() {
+		return key.hashCode();
+	}
+
+	@Benchmark
+	public boolean equalsDistinctInstance() {
+		return key.equals(equalKey);
+	}
+
+	@Benchmark
+	public Object hashMapLookup() {
+		return map.get(equalKey);
+	}
+
+	@Benchmark
+	public Setting<?> registryLookup() {
+		return api.getSetting(equalKey);
+	}
+
+	@Benchmark
+	public NamespacedKey fromString() {
+		return NamespacedKey.fromString(keyString);
+	}
+}
@@ -0,0 +1,52 @@
+package de.cubbossa.commonsettings.benchmark;
+
+import de.cubbossa.commonsettings.SettingParsers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SettingParsers} for the inputs of a set command, compared to the reflective enum lookup and the
+ * regex based boolean check that the command used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	private final SettingParsers parsers = new SettingParsers();
+	private final String enumInput = "MILLISECONDS";
+	private final String booleanInput = "true";
+	private final String intInput = "12345";
+
+	@Benchmark
+	public TimeUnit enumRegistry() {
+		return parsers.parse(TimeUnit.class, enumInput);
+	}
+
+	@Benchmark
+	public Object enumReflection() throws ReflectiveOperationException {
+		return TimeUnit.class.getDeclaredMethod("valueOf", String.class).invoke(null, enumInput);
+	}
+
+	@Benchmark
+	public Boolean booleanRegistry() {
+		return parsers.parse(Boolean.class, booleanInput);
+	}
+
+	@Benchmark
+	public Boolean booleanRegex() {
+		if (!booleanInput.matches("(?i)true|false")) {
+			throw new IllegalArgumentException();
+		}
+		return Boolean.parseBoolean(booleanInput);
+	}
+
+	@Benchmark
+	public Integer integerRegistry() {
+		return parsers.parse(Integer.class, intInput);
+	}
+}
@@ -0,0 +1,77 @@
+package de.cubbossa.commonsettings.benchmark;
+
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingsAPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the namespace, type and tag queries of the {@link SettingsAPI}, as used by GUIs on every page render, and
+ * the prefix and page queries used by tab completion and the list command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+	@Param({"10", "100", "1000", "10000", "100000"})
+	private int size;
+
+	private SettingsAPI api;
+	private String namespace;
+	private List<String> twoTags;
+	private String prefix;
+
+	@Setup
+	public void setup() {
+		api = Registries.create(size);
+		namespace = Registries.namespace(size / 2);
+		twoTags = List.of(Registries.tag(1), Registries.tag(10));
+		prefix = namespace + ":setting_1";
+	}
+
+	@Benchmark
+	public List<Setting<?>> all() {
+		return api.getSettings();
+	}
+
+	@Benchmark
+	public List<Setting<?>> byNamespace() {
+		return api.getSettings(namespace);
+	}
+
+	@Benchmark
+	public List<Setting<Boolean>> byType() {
+		return api.getSettings(Boolean.class);
+	}
+
+	@Benchmark
+	public List<Setting<?>> byTag() {
+		return api.getSettingsWithTag("tag5");
+	}
+
+	@Benchmark
+	public List<Setting<?>> withAllTags() {
+		return api.getSettingsWithAllTags(twoTags);
+	}
+
+	@Benchmark
+	public List<Setting<?>> withSomeTags() {
+		return api.getSettingsWithSomeTags(twoTags);
+	}
+
+	@Benchmark
+	public List<Setting<?>> withPrefix() {
+		return api.getSettingsWithPrefix(prefix, 50);
+	}
+
+	@Benchmark
+	public List<Setting<?>> lastPage() {
+		return api.getSettingsSorted(Math.max(0, size - 10), 10);
+	}
+}
@@ -0,0 +1,51 @@
+package de.cubbossa.commonsettings.benchmark;
+
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBuilder;
+import de.cubbossa.commonsettings.SettingsAPI;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Creates registries of a given size that resemble a production server: settings are spread over one namespace per
+ * 50 settings, four value types and a pool of 32 tags with two tags per setting.
+ */
+final class Registries {
+
+	static final int SETTINGS_PER_NAMESPACE = 50;
+	static final int TAGS = 32;
+	static final Class<?>[] TYPES = {Boolean.class, Integer.class, String.class, Double.class};
+
+	private Registries() {
+	}
+
+	static SettingsAPI create(int size) {
+		SettingsAPI api = new SettingsAPI() {
+		};
+		for (int i = 0; i < size; i++) {
+			api.registerSetting(setting(TYPES[i % TYPES.length], key(i), tag(i), tag(i * 7 + 3)));
+		}
+		return api;
+	}
+
+	static NamespacedKey key(int index) {
+		return new NamespacedKey(namespace(index), "setting_" + index);
+	}
+
+	static String namespace(int index) {
+		return "plugin" + (index / SETTINGS_PER_NAMESPACE);
+	}
+
+	static String tag(int index) {
+		return "tag" + (index % TAGS);
+	}
+
+	private static <T> Setting<T> setting(Class<T> type, NamespacedKey key, String... tags) {
+		return new SettingBuilder<>(type, key)
+				.withGetter(uuid -> null)
+				.withSetter((uuid, value) -> CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS))
+				.withTags(tags)
+				.build();
+	}
+}
@@ -0,0 +1,67 @@
+package de.cubbossa.commonsettings.benchmark;
+
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBuilder;
+import de.cubbossa.commonsettings.SettingsAPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SettingsAPI#getSetting(NamespacedKey)} while 16 reader threads look up settings and one writer
+ * thread keeps registering and unregistering a setting, like a plugin reload would. The registry size ranges from 10 to
+ * 100k settings.
+ * <br>
+ * Run with: java -jar commonsettings-benchmarks/target/benchmarks.jar RegistryBenchmark
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+
+	@Param({"10", "100", "1000", "10000", "100000"})
+	private int size;
+
+	private SettingsAPI api;
+	private NamespacedKey[] keys;
+	private Setting<Boolean> churnSetting;
+
+	@State(Scope.Thread)
+	public static class ReaderState {
+		private int index;
+	}
+
+	@Setup
+	public void setup() {
+		api = Registries.create(size);
+		keys = new NamespacedKey[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = Registries.key(i);
+		}
+		churnSetting = new SettingBuilder<>(Boolean.class, new NamespacedKey("reloading", "setting"))
+				.withGetter(uuid -> true)
+				.build();
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(16)
+	public Setting<?> read(ReaderState state) {
+		if (++state.index >= keys.length) {
+			state.index = 0;
+		}
+		return api.getSetting(keys[state.index]);
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public void churn() {
+		api.registerSetting(churnSetting);
+		api.unregisterSetting(churnSetting);
+	}
+}
@@ -0,0 +1,108 @@
+package de.cubbossa.commonsettings.benchmark;
+
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.store.SettingStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the memory of the columnar {@link SettingStore} with one HashMap per setting, for one boolean, int, double
+ * and enum setting per UUID. Each benchmark populates a fresh storage, so the allocation per operation of the gc
+ * profiler (gc.alloc.rate.norm) approximates the size of the populated storage:
+ * java -jar commonsettings-benchmarks/target/benchmarks.jar StoreFootprintBenchmark -prof gc
+ * <br>
+ * The lookup benchmarks measure reading one value of a populated storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreFootprintBenchmark {
+
+	enum Visibility {
+		NONE, FRIENDS, ALL
+	}
+
+	private static final NamespacedKey BOOL = NamespacedKey.of("bench", "bool");
+	private static final NamespacedKey INT = NamespacedKey.of("bench", "int");
+	private static final NamespacedKey DOUBLE = NamespacedKey.of("bench", "double");
+	private static final NamespacedKey ENUM = NamespacedKey.of("bench", "enum");
+
+	@Param({"1000", "100000"})
+	private int size;
+
+	private UUID[] uuids;
+	private SettingStore.IntColumn intColumn;
+	private Map<UUID, Integer> intMap;
+	private UUID uuid;
+
+	@Setup
+	public void setup() {
+		uuids = new UUID[size];
+		for (int i = 0; i < size; i++) {
+			uuids[i] = UUID.randomUUID();
+		}
+		uuid = uuids[size / 2];
+		SettingStore store = new SettingStore(size);
+		intColumn = store.intColumn(INT, 0);
+		intMap = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			intColumn.setInt(uuids[i], i);
+			intMap.put(uuids[i], i);
+		}
+	}
+
+	@Benchmark
+	public SettingStore populateStore() {
+		SettingStore store = new SettingStore(size);
+		SettingStore.BooleanColumn bools = store.booleanColumn(BOOL, false);
+		SettingStore.IntColumn ints = store.intColumn(INT, 0);
+		SettingStore.DoubleColumn doubles = store.doubleColumn(DOUBLE, 0);
+		SettingStore.EnumColumn<Visibility> enums = store.enumColumn(ENUM, Visibility.class, Visibility.ALL);
+		Visibility[] visibilities = Visibility.values();
+		for (int i = 0; i < size; i++) {
+			UUID uuid = uuids[i];
+			bools.setBoolean(uuid, (i & 1) == 0);
+			ints.setInt(uuid, i);
+			doubles.setDouble(uuid, i * .5);
+			enums.set(uuid, visibilities[i % visibilities.length]);
+		}
+		return store;
+	}
+
+	@Benchmark
+	public Map<NamespacedKey, Map<UUID, Object>> populateHashMaps() {
+		Map<NamespacedKey, Map<UUID, Object>> maps = new HashMap<>();
+		Map<UUID, Object> bools = maps.computeIfAbsent(BOOL, k -> new HashMap<>());
+		Map<UUID, Object> ints = maps.computeIfAbsent(INT, k -> new HashMap<>());
+		Map<UUID, Object> doubles = maps.computeIfAbsent(DOUBLE, k -> new HashMap<>());
+		Map<UUID, Object> enums = maps.computeIfAbsent(ENUM, k -> new HashMap<>());
+		Visibility[] visibilities = Visibility.values();
+		for (int i = 0; i < size; i++) {
+			UUID uuid = uuids[i];
+			bools.put(uuid, (i & 1) == 0);
+			ints.put(uuid, i);
+			doubles.put(uuid, i * .5);
+			enums.put(uuid, visibilities[i % visibilities.length]);
+		}
+		return maps;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int storeLookup() {
+		return intColumn.getInt(uuid);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Integer hashMapLookup() {
+		return intMap.get(uuid);
+	}
+}
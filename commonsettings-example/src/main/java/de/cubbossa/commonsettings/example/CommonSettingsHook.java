@@ -4,6 +4,7 @@ import de.cubbossa.commonsettings.NamespacedKey;
 import de.cubbossa.commonsettings.Setting;
 import de.cubbossa.commonsettings.SettingBuilder;
 import de.cubbossa.commonsettings.SettingsAPI;
+import de.cubbossa.commonsettings.store.UUIDBooleanMap;
 import org.bukkit.Material;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -13,7 +14,7 @@ import java.util.concurrent.CompletableFuture;
 
 public class CommonSettingsHook {
 
-	private static final HashMap<UUID, Boolean> BOOL = new HashMap<>();
+	private static final UUIDBooleanMap BOOL = new UUIDBooleanMap();
 	private static final HashMap<UUID, String> STRING = new HashMap<>();
 	private static final HashMap<UUID, Material> ENUM = new HashMap<>();
 
@@ -22,12 +23,11 @@ public class CommonSettingsHook {
 
 		SettingsAPI.getInstance().registerSetting(new SettingBuilder<>(Boolean.class, new NamespacedKey(plugin.getName(), "boolean"))
 				.withTitle("Boolean Setting")
-				.withGetter(uuid -> BOOL.getOrDefault(uuid, false))
 				.withSetter((uuid, newValue) -> {
 					BOOL.put(uuid, newValue);
 					return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
 				})
-				.build());
+				.buildBoolean(uuid -> BOOL.get(uuid, false)));
 
 		SettingsAPI.getInstance().registerSetting(new SettingBuilder<>(String.class, new NamespacedKey(plugin.getName(), "string"))
 				.withTitle("String Setting")
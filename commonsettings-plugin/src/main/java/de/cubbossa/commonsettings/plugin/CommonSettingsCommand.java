@@ -1,120 +1,208 @@
 package de.cubbossa.commonsettings.plugin;
 
+import de.cubbossa.commonsettings.LatencyHistogram;
+import de.cubbossa.commonsettings.NamespacedKey;
 import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingInstrumentation.Operation;
+import de.cubbossa.commonsettings.SettingValueParseException;
 import de.cubbossa.commonsettings.SettingsAPI;
+import de.cubbossa.commonsettings.SettingsMetrics;
 import dev.jorel.commandapi.CommandTree;
 import dev.jorel.commandapi.arguments.GreedyStringArgument;
 import dev.jorel.commandapi.arguments.IntegerArgument;
 import dev.jorel.commandapi.arguments.LiteralArgument;
 import dev.jorel.commandapi.arguments.PlayerArgument;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class CommonSettingsCommand {
 
-	private final Map<Class<?>, Parser<?>> parsers = Map.of(
-			String.class, (setting, input) -> input,
-			Boolean.class, (setting, input) -> {
-				if (!input.matches("(?i)true|false")) {
-					throw new SettingValueParseException();
-				}
-				return Boolean.parseBoolean(input);
-			},
-			Integer.class, (setting, input) -> {
-				try {
-					return Integer.parseInt(input);
-				} catch (NumberFormatException e) {
-					throw new SettingValueParseException();
-				}
-			},
-			Double.class, (setting, input) -> {
-				try {
-					return Double.parseDouble(input);
-				} catch (NumberFormatException e) {
-					throw new SettingValueParseException();
-				}
-			},
-			Float.class, (setting, input) -> {
-				try {
-					return Float.parseFloat(input);
-				} catch (NumberFormatException e) {
-					throw new SettingValueParseException();
-				}
-			}
-	);
+	private static final int PAGE_SIZE = 10;
+	private static final int STATS_LIMIT = 10;
+
+	private final Logger logger;
 
-	public CommonSettingsCommand() {
+	public CommonSettingsCommand(Logger logger, SessionPreloader preloader, SettingsMetrics metrics) {
+		this.logger = logger;
 		new CommandTree("commonsettings")
 				.withAliases("csettings", "cset")
 				.then(new LiteralArgument("list")
 						.withPermission("commonsettings.command.list")
 						.executes((commandSender, objects) -> {
-							SettingsAPI.getInstance().getSettings().forEach(setting -> commandSender.sendMessage(setting.getKey().toString()));
+							sendPage(commandSender, 1);
 						})
-						.then(new IntegerArgument("page").executes((commandSender, objects) -> {
-
+						.then(new IntegerArgument("page", 1).executes((commandSender, objects) -> {
+							sendPage(commandSender, (int) objects[0]);
 						}))
 				)
 				.then(new LiteralArgument("info")
 						.withPermission("commonsettings.command.info")
 						.then(new SettingsArgument("setting").executesPlayer((player, objects) -> {
-							player.sendMessage(((Setting<?>) objects[0]).getValue(player.getUniqueId()).toString());
+							handleInfo(player, (Setting<?>) objects[0]);
 						}))
 				)
 				.then(new LiteralArgument("set")
 						.withPermission("commonsettings.command.set.self")
 						.then(new SettingsArgument("setting")
 								.then(new GreedyStringArgument("value").executesPlayer((player, objects) -> {
-									handleSet((Setting<?>) objects[0], player.getUniqueId(), (String) objects[1]);
+									handleSet(player, (Setting<?>) objects[0], player, (String) objects[1]);
 								}))
 								.then(new PlayerArgument("target")
 										.withPermission("commonsettings.command.set.other")
-										.then(new GreedyStringArgument("value").executesPlayer((player, objects) -> {
-
+										.then(new GreedyStringArgument("value").executes((commandSender, objects) -> {
+											handleSet(commandSender, (Setting<?>) objects[0], (Player) objects[1], (String) objects[2]);
 										}))
 								)
 						)
 				)
-				//.register()
-		;
+				.then(new LiteralArgument("preload")
+						.withPermission("commonsettings.command.preload")
+						.executes((commandSender, objects) -> {
+							if (preloader == null) {
+								commandSender.sendMessage("Preloading is disabled.");
+								return;
+							}
+							commandSender.sendMessage("Preload latencies per namespace (p50 / p95 / p99 / max):");
+							preloader.getLatencies().forEach((namespace, histogram) -> commandSender.sendMessage(
+									namespace + ": " + formatMillis(histogram.getPercentileNanos(50))
+											+ " / " + formatMillis(histogram.getPercentileNanos(95))
+											+ " / " + formatMillis(histogram.getPercentileNanos(99))
+											+ " / " + formatMillis(histogram.getMaxNanos())
+											+ " (" + histogram.getCount() + " requests)"));
+						})
+				)
+				.then(new LiteralArgument("stats")
+						.withPermission("commonsettings.command.stats")
+						.executes((commandSender, objects) -> {
+							if (metrics == null) {
+								commandSender.sendMessage("Metrics are disabled.");
+								return;
+							}
+							commandSender.sendMessage("Slowest settings by p99 (calls: p50 / p99):");
+							metrics.getMetrics().entrySet().stream()
+									.sorted(Comparator.comparingLong((Map.Entry<NamespacedKey, SettingsMetrics.Metrics> e) ->
+											slowestPercentile(e.getValue())).reversed())
+									.limit(STATS_LIMIT)
+									.forEach(e -> commandSender.sendMessage(formatMetrics(e.getKey(), e.getValue())));
+						})
+				)
+				.register();
 	}
 
-	private <T> void handleSet(Setting<T> setting, UUID uuid, String value) {
-		try {
-			setting.setValue(uuid, parseSettingInput(setting, value)).thenAccept(settingChangeResult -> {
-				// TODO user feedback
-			});
-		} catch (SettingValueParseException e) {
-			e.printStackTrace();
-			// TODO user feedback
+	private static void sendPage(CommandSender sender, int page) {
+		int pages = Math.max(1, (SettingsAPI.getInstance().getSettingCount() + PAGE_SIZE - 1) / PAGE_SIZE);
+		List<Setting<?>> settings = SettingsAPI.getInstance().getSettingsSorted((page - 1) * PAGE_SIZE, PAGE_SIZE);
+		StringBuilder message = new StringBuilder("Settings (page ").append(page).append('/').append(pages).append("):");
+		for (Setting<?> setting : settings) {
+			message.append('\n').append(setting.getKey());
 		}
+		sender.sendMessage(message.toString());
 	}
 
-	private <T> T parseSettingInput(Setting<T> setting, String input) throws SettingValueParseException {
-		Parser<T> parser;
-		if (setting.getType().isEnum()) {
-			parser = CommonSettingsCommand::getEnumValue;
-		} else {
-			parser = (Parser<T>) parsers.getOrDefault(setting.getType(), (s, i) -> {
-				throw new SettingValueParseException();
-			});
+	private static long slowestPercentile(SettingsMetrics.Metrics metrics) {
+		long max = 0;
+		for (Operation operation : Operation.values()) {
+			LatencyHistogram histogram = metrics.getLatency(operation);
+			if (histogram != null) {
+				max = Math.max(max, histogram.getPercentileNanos(99));
+			}
 		}
-		return parser.parse(setting, input);
+		return max;
 	}
 
-	private static <T> T getEnumValue(Setting<T> setting, String input) {
-		if (!setting.getType().isEnum()) {
-			throw new SettingValueParseException();
+	private static String formatMetrics(NamespacedKey key, SettingsMetrics.Metrics metrics) {
+		StringBuilder builder = new StringBuilder(key.toString()).append(':');
+		for (Operation operation : Operation.values()) {
+			LatencyHistogram histogram = metrics.getLatency(operation);
+			if (histogram == null) {
+				continue;
+			}
+			builder.append(' ').append(operation.name().toLowerCase()).append(' ').append(histogram.getCount())
+					.append(": ").append(formatMillis(histogram.getPercentileNanos(50)))
+					.append(" / ").append(formatMillis(histogram.getPercentileNanos(99))).append(',');
+		}
+		for (Setting.SettingChangeResult result : Setting.SettingChangeResult.values()) {
+			long count = metrics.getResults(result);
+			if (result != Setting.SettingChangeResult.SUCCESS && count > 0) {
+				builder.append(' ').append(result.name().toLowerCase()).append(' ').append(count).append(',');
+			}
 		}
+		if (metrics.getErrors() > 0) {
+			builder.append(" errors ").append(metrics.getErrors()).append(',');
+		}
+		return builder.append(String.format(" %.0f%% sync", metrics.getSyncRatio() * 100)).toString();
+	}
+
+	private static String formatMillis(long nanos) {
+		return String.format("%.2fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	/**
+	 * Requests the value asynchronously, so that settings without a synchronous getter never block the server thread.
+	 */
+	private <T> void handleInfo(Player player, Setting<T> setting) {
+		setting.requestValue(player.getUniqueId()).whenCompleteAsync((value, throwable) -> {
+			if (throwable != null) {
+				player.sendMessage("Could not load the value of " + setting.getKey() + ".");
+				logger.log(Level.WARNING, "Could not request the value of " + setting.getKey() + ".", throwable);
+				return;
+			}
+			player.sendMessage(setting.getKey() + ": " + SettingsAPI.getInstance().getParsers().serialize(setting.getType(), value));
+		}, mainThread());
+	}
+
+	/**
+	 * Parses the input on the calling thread and runs the setter on the thread that the setting requires. The result is
+	 * reported to the sender on the server thread.
+	 */
+	private <T> void handleSet(CommandSender sender, Setting<T> setting, Player target, String input) {
+		T value;
 		try {
-			return (T) setting.getType().getDeclaredMethod("valueOf", String.class).invoke(null, input);
-		} catch (Throwable t) {
-			throw new SettingValueParseException();
+			value = SettingsAPI.getInstance().getParsers().parse(setting, input);
+		} catch (SettingValueParseException e) {
+			sender.sendMessage(e.getMessage());
+			return;
+		}
+		String display = SettingsAPI.getInstance().getParsers().serialize(setting.getType(), value);
+		CompletableFuture<Setting.SettingChangeResult> future;
+		try {
+			future = SettingsAPI.getInstance().getExecutors().setValue(setting, target.getUniqueId(), value);
+		} catch (RuntimeException e) {
+			future = CompletableFuture.failedFuture(e);
 		}
+		future.whenCompleteAsync((result, throwable) -> {
+			if (throwable != null) {
+				logger.log(Level.WARNING, "Could not change " + setting.getKey() + " for " + target.getName() + ".", throwable);
+			}
+			if (result == null) {
+				result = Setting.SettingChangeResult.FAIL_OTHER;
+			}
+			sender.sendMessage(changeMessage(setting, target, sender == target, display, result));
+		}, mainThread());
+	}
+
+	private static String changeMessage(Setting<?> setting, Player target, boolean self, String value, Setting.SettingChangeResult result) {
+		String owner = self ? "" : " for " + target.getName();
+		return switch (result) {
+			case SUCCESS -> "Changed " + setting.getKey() + owner + " to " + value + ".";
+			case FAIL_READ_ONLY -> setting.getKey() + " is read-only.";
+			case FAIL_EVENT_CANCELLED -> "Changing " + setting.getKey() + owner + " was cancelled.";
+			case FAIL_INVALID_UUID -> setting.getKey() + " cannot be changed" + owner + ".";
+			case FAIL_INVALID_VALUE -> value + " is not a valid value for " + setting.getKey() + ".";
+			case FAIL_OTHER -> "Could not change " + setting.getKey() + owner + ".";
+		};
 	}
 
-	private interface Parser<T> {
-		T parse(Setting<T> setting, String input);
+	private static Executor mainThread() {
+		return SettingsAPI.getInstance().getExecutors().getMainThreadExecutor();
 	}
 }
@@ -1,11 +1,23 @@
 package de.cubbossa.commonsettings.plugin;
 
+import de.cubbossa.commonsettings.SettingsAPI;
+import de.cubbossa.commonsettings.SettingsMetrics;
+import de.cubbossa.commonsettings.plugin.storage.LogStorage;
 import dev.jorel.commandapi.CommandAPI;
 import dev.jorel.commandapi.CommandAPIConfig;
+import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
 public class CommonSettingsPlugin extends JavaPlugin {
 
+	private static final Duration ABANDON_CHECK_INTERVAL = Duration.ofSeconds(30);
+
+	private LogStorage storage;
+
 	@Override
 	public void onLoad() {
 		CommandAPI.onLoad(new CommandAPIConfig().silentLogs(true));
@@ -15,15 +27,71 @@ public class CommonSettingsPlugin extends JavaPlugin {
 	public void onEnable() {
 		super.onEnable();
 
+		// setters of settings that are not thread-safe must run on the server thread
+		SettingsAPI.getInstance().getExecutors().setMainThreadExecutor(runnable -> {
+			if (Bukkit.isPrimaryThread()) {
+				runnable.run();
+			} else {
+				Bukkit.getScheduler().runTask(this, runnable);
+			}
+		});
+
+		saveDefaultConfig();
+		SessionPreloader preloader = null;
+		if (getConfig().getBoolean("preload.enabled", false)) {
+			preloader = new SessionPreloader(getLogger(), getConfig().getStringList("preload.tags"),
+					Duration.ofMillis(getConfig().getLong("preload.timeout", 2000)));
+			getServer().getPluginManager().registerEvents(preloader, this);
+			// 20 ticks per second
+			long period = ABANDON_CHECK_INTERVAL.toSeconds() * 20;
+			getServer().getScheduler().runTaskTimerAsynchronously(this, preloader::closeAbandoned, period, period);
+		}
+
+		SettingsMetrics metrics = null;
+		if (getConfig().getBoolean("metrics.enabled", false)) {
+			metrics = new SettingsMetrics();
+			SettingsAPI.getInstance().setInstrumentation(metrics);
+		}
+
 		CommandAPI.onEnable(this);
-		new CommonSettingsCommand();
+		new CommonSettingsCommand(getLogger(), preloader, metrics);
 	}
 
 	@Override
 	public void onDisable() {
 		super.onDisable();
 
-		CommandAPI.unregister("commandsettings");
+		CommandAPI.unregister("commonsettings");
 		CommandAPI.onDisable();
+
+		SettingsAPI.getInstance().getExecutors().setMainThreadExecutor(null);
+		SettingsAPI.getInstance().setInstrumentation(null);
+
+		synchronized (this) {
+			if (storage != null) {
+				storage.close();
+				storage = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the persistent storage of CommonSettings, which is opened on first access. Providers can use it via
+	 * <pre>
+	 * LogStorage storage = JavaPlugin.getPlugin(CommonSettingsPlugin.class).getStorage();
+	 * builder.withBackend(storage.backend(key, Boolean.class, true));
+	 * </pre>
+	 *
+	 * @return The storage in the data folder of this plugin
+	 */
+	public synchronized LogStorage getStorage() {
+		if (storage == null) {
+			try {
+				storage = LogStorage.open(getDataFolder().toPath().resolve("storage"));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not open the settings storage.", e);
+			}
+		}
+		return storage;
 	}
 }
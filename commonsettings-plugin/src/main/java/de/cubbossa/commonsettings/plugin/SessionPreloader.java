@@ -0,0 +1,148 @@
+package de.cubbossa.commonsettings.plugin;
+
+import de.cubbossa.commonsettings.LatencyHistogram;
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.SessionCache;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingsAPI;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Requests the values of all settings for a player while the player logs in, so that join messages, scoreboards and
+ * chat formatting find them in the {@link SessionCache} instead of hitting every provider at once. The session is
+ * closed when the player quits, or by {@link #closeAbandoned()} if the player never joined, e.g. because the connection
+ * dropped during the login.
+ * <br>
+ * The time until each value is present is recorded per namespace, so that slow providers can be found with
+ * /commonsettings preload.
+ */
+public class SessionPreloader implements Listener {
+
+	/**
+	 * How long a player may take from the pre-login to the join before the session is closed.
+	 */
+	public static final Duration ABANDON_AFTER = Duration.ofMinutes(1);
+
+	private final Logger logger;
+	private final Set<String> tags;
+	private final Duration timeout;
+	private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+	/**
+	 * The pre-login time of players whose session is open but who did not join yet.
+	 */
+	private final ConcurrentHashMap<UUID, Long> joining = new ConcurrentHashMap<>();
+
+	/**
+	 * @param logger  The logger for preloads that exceed the timeout
+	 * @param tags    Only settings with at least one of these tags are preloaded, all settings if empty
+	 * @param timeout How long the login waits for the values at most
+	 */
+	public SessionPreloader(Logger logger, Collection<String> tags, Duration timeout) {
+		this.logger = logger;
+		this.tags = Set.copyOf(tags);
+		this.timeout = timeout;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+		if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+			return;
+		}
+		joining.put(event.getUniqueId(), System.nanoTime());
+		CompletableFuture<Void> preload = preload(event.getUniqueId());
+		try {
+			preload.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// values that arrive later are still stored in the session
+			logger.warning("Preloading the settings of " + event.getName() + " took longer than "
+					+ timeout.toMillis() + "ms, see /commonsettings preload.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ignored) {
+			// failed settings are simply not in the session
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onLogin(PlayerLoginEvent event) {
+		if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+			joining.remove(event.getPlayer().getUniqueId());
+			SettingsAPI.getInstance().getSessions().close(event.getPlayer().getUniqueId());
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onJoin(PlayerJoinEvent event) {
+		joining.remove(event.getPlayer().getUniqueId());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onQuit(PlayerQuitEvent event) {
+		joining.remove(event.getPlayer().getUniqueId());
+		SettingsAPI.getInstance().getSessions().close(event.getPlayer().getUniqueId());
+	}
+
+	/**
+	 * Closes the sessions of players that passed the pre-login longer than {@link #ABANDON_AFTER} ago but never joined.
+	 * No quit event is fired for them, so this has to be called periodically.
+	 */
+	public void closeAbandoned() {
+		long now = System.nanoTime();
+		joining.forEach((uuid, preLogin) -> {
+			if (now - preLogin > ABANDON_AFTER.toNanos() && joining.remove(uuid, preLogin)) {
+				SettingsAPI.getInstance().getSessions().close(uuid);
+			}
+		});
+	}
+
+	/**
+	 * Opens the session of the given UUID and requests the values of all preloaded settings in parallel.
+	 *
+	 * @return A future that completes once all values are stored in the session
+	 */
+	public CompletableFuture<Void> preload(UUID uuid) {
+		SettingsAPI api = SettingsAPI.getInstance();
+		SessionCache sessions = api.getSessions();
+		sessions.open(uuid);
+		long stamp = sessions.stamp(uuid);
+
+		Collection<Setting<?>> settings = tags.isEmpty() ? api.getSettings() : api.getSettingsWithSomeTags(tags);
+		Executor workers = api.getExecutors().getWorkerPool();
+		CompletableFuture<?>[] futures = new CompletableFuture[settings.size()];
+		int i = 0;
+		for (Setting<?> setting : settings) {
+			NamespacedKey key = setting.getKey();
+			LatencyHistogram histogram = latencies.computeIfAbsent(key.getNamespace(), n -> new LatencyHistogram());
+			long start = System.nanoTime();
+			// sync getters complete the future of requestValue on the calling thread, so every request gets its own
+			futures[i++] = CompletableFuture.supplyAsync(() -> setting.requestValue(uuid), workers)
+					.thenCompose(Function.identity())
+					.whenComplete((value, throwable) -> {
+						histogram.record(System.nanoTime() - start);
+						if (throwable == null) {
+							sessions.put(uuid, key, value, stamp);
+						}
+					});
+		}
+		return CompletableFuture.allOf(futures);
+	}
+
+	/**
+	 * @return The preload latencies per namespace, sorted by namespace
+	 */
+	public Map<String, LatencyHistogram> getLatencies() {
+		return new TreeMap<>(latencies);
+	}
+}
@@ -1,4 +0,0 @@
-package de.cubbossa.commonsettings.plugin;
-
-public class SettingValueParseException extends RuntimeException {
-}
@@ -6,22 +6,25 @@ import de.cubbossa.commonsettings.SettingsAPI;
 import dev.jorel.commandapi.arguments.CustomArgument;
 import dev.jorel.commandapi.arguments.NamespacedKeyArgument;
 
+import java.util.NoSuchElementException;
+
 public class SettingsArgument extends CustomArgument<Setting<?>, org.bukkit.NamespacedKey> {
 
+	private static final int SUGGESTION_LIMIT = 50;
+
 	public SettingsArgument(String node) {
 		super(new NamespacedKeyArgument(node), info -> {
 			NamespacedKey key = new NamespacedKey(info.currentInput().getNamespace(), info.currentInput().getKey());
-			Setting<?> setting = SettingsAPI.getInstance().getSetting(key);
-			if (setting == null) {
+			try {
+				return SettingsAPI.getInstance().getSetting(key);
+			} catch (NoSuchElementException e) {
 				throw new CustomArgumentException(String.format("No setting found with name '%s'", info.currentInput().toString()));
 			}
-			return setting;
 		});
 		includeSuggestions((suggestionInfo, suggestionsBuilder) -> {
-			SettingsAPI.getInstance().getSettings().stream()
-					.map(Setting::getKey)
-					.map(NamespacedKey::toString)
-					.forEach(suggestionsBuilder::suggest);
+			for (Setting<?> setting : SettingsAPI.getInstance().getSettingsWithPrefix(suggestionsBuilder.getRemainingLowerCase(), SUGGESTION_LIMIT)) {
+				suggestionsBuilder.suggest(setting.getKey().toString());
+			}
 			return suggestionsBuilder.buildFuture();
 		});
 	}
@@ -0,0 +1,754 @@
+package de.cubbossa.commonsettings.plugin.storage;
+
+import de.cubbossa.commonsettings.DuplicateKeyException;
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBackend;
+import de.cubbossa.commonsettings.SettingCodec;
+import de.cubbossa.commonsettings.SettingsAPI;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent storage for setting values. Providers that don't want to implement their own storage can create a
+ * {@link SettingBackend} per setting with {@link #backend(NamespacedKey, Class, Object)} and pass it to
+ * {@link de.cubbossa.commonsettings.SettingBuilder#withBackend(SettingBackend)}.
+ * <br>
+ * All values are held in memory. Changes are appended to a memory-mapped log segment, so that a setter only copies a
+ * few bytes and never touches the disk on the calling thread. The operating system writes the mapped pages, a
+ * background thread forces them to disk in a fixed interval. Once a segment is full, writing continues in the next
+ * segment and the background thread compacts the current values into a snapshot file, after which the full segments
+ * are deleted. On startup, the snapshot is read and all remaining segments are replayed.
+ * <br>
+ * The mapping of a segment is released as soon as the segment is full or the storage is closed, so that the files can
+ * be deleted and replaced while the server is running, which Windows does not allow for mapped files.
+ * <br>
+ * Values are encoded with the codecs of {@link SettingsAPI#getCodecs()}, so every type with a codec is supported.
+ */
+public final class LogStorage implements Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 8 << 20;
+
+	private static final int SNAPSHOT_MAGIC = 0x4353534E;
+	private static final int LOG_MAGIC = 0x43534C47;
+	private static final byte VERSION = 1;
+	private static final int FILE_HEADER = Integer.BYTES + 1 + Long.BYTES;
+	private static final int RECORD_HEADER = Integer.BYTES * 2;
+	private static final byte OP_SET = 1;
+	private static final byte OP_REMOVE = 2;
+
+	private static final String SNAPSHOT_FILE = "settings.snapshot";
+	private static final String LOG_PREFIX = "settings-";
+	private static final String LOG_SUFFIX = ".log";
+
+	/**
+	 * Unsafe#invokeCleaner bound to the unsafe instance, or null if it is not accessible.
+	 */
+	private static final MethodHandle INVOKE_CLEANER = findCleaner();
+	private static final Logger LOGGER = Logger.getLogger(LogStorage.class.getName());
+
+	private final Path directory;
+	private final int segmentSize;
+	private final ScheduledExecutorService background;
+
+	/**
+	 * Values of keys that no backend was created for yet, kept encoded so that compaction preserves them.
+	 */
+	private final ConcurrentHashMap<NamespacedKey, ConcurrentHashMap<UUID, byte[]>> unclaimed = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<NamespacedKey, LogBackend<?>> backends = new ConcurrentHashMap<>();
+
+	/**
+	 * Guards the segments and appends. Tasks of the background thread never take this lock, so that an append may wait
+	 * for the background thread to create the next segment.
+	 */
+	private final Object appendLock = new Object();
+	private final RecordEncoder encoder = new RecordEncoder();
+	// guarded by itself
+	private final TreeMap<Long, Path> fullSegments = new TreeMap<>();
+	// written while holding appendLock
+	private volatile Segment segment;
+	private CompletableFuture<Segment> nextSegment;
+	private boolean closed = false;
+
+	private LogStorage(Path directory, int segmentSize) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "CommonSettings-Storage");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public static LogStorage open(Path directory) throws IOException {
+		return open(directory, DEFAULT_SEGMENT_SIZE, Duration.ofSeconds(1));
+	}
+
+	/**
+	 * Opens the storage in the given directory and loads all stored values.
+	 *
+	 * @param directory    The directory of the snapshot and log files, created if absent
+	 * @param segmentSize  The size of each log segment in bytes
+	 * @param syncInterval How often changes are forced to disk
+	 * @return The opened storage
+	 * @throws IOException if the existing files could not be read
+	 */
+	public static LogStorage open(Path directory, int segmentSize, Duration syncInterval) throws IOException {
+		if (segmentSize < 1024) {
+			throw new IllegalArgumentException("Segments must be at least 1024 bytes large.");
+		}
+		Files.createDirectories(directory);
+		LogStorage storage = new LogStorage(directory, segmentSize);
+		try {
+			storage.load();
+		} catch (IOException | RuntimeException e) {
+			storage.background.shutdownNow();
+			throw e;
+		}
+		long interval = syncInterval.toNanos();
+		storage.background.scheduleWithFixedDelay(storage::sync, interval, interval, TimeUnit.NANOSECONDS);
+		return storage;
+	}
+
+	/**
+	 * Creates the backend for one setting and loads its stored values. If a backend for the key already exists, e.g.
+	 * because the providing plugin was reloaded, the existing backend is returned.
+	 *
+	 * @param key          The key of the setting
+	 * @param type         The value type of the setting
+	 * @param defaultValue The value for UUIDs without stored value
+	 * @return A non-blocking backend that supports batches
+	 * @throws DuplicateKeyException if a backend for this key was already created with another type or default value
+	 *                               and not released
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> SettingBackend<T> backend(NamespacedKey key, Class<T> type, @Nullable T defaultValue) {
+		SettingCodec<T> codec = SettingsAPI.getInstance().getCodecs().get(type);
+		if (codec == null) {
+			throw new IllegalArgumentException("The log storage does not support values of type " + type.getName() + ".");
+		}
+		LogBackend<T> backend = new LogBackend<>(key, codec, defaultValue);
+		LogBackend<?> existing = backends.putIfAbsent(key, backend);
+		if (existing != null) {
+			if (existing.codec != codec || !Objects.equals(existing.defaultValue, defaultValue)) {
+				throw new DuplicateKeyException(String.format(
+						"The storage already has a backend with another type or default value for \"%s\".", key));
+			}
+			return (SettingBackend<T>) existing;
+		}
+		// The backend is registered before the values leave the unclaimed map, so that a concurrent compaction, which
+		// reads the unclaimed values first, sees every value at least once.
+		ConcurrentHashMap<UUID, byte[]> stored = unclaimed.get(key);
+		if (stored != null) {
+			stored.forEach((uuid, bytes) -> backend.values.put(uuid, backend.codec.read(ByteBuffer.wrap(bytes))));
+			unclaimed.remove(key);
+		}
+		return backend;
+	}
+
+	/**
+	 * Releases the backend of the given key, e.g. because the providing plugin is disabled. The values stay stored and
+	 * are loaded by the next {@link #backend(NamespacedKey, Class, Object)} call for the key, which may use another
+	 * type. The released backend must not be used afterwards.
+	 */
+	public void release(NamespacedKey key) {
+		synchronized (appendLock) {
+			LogBackend<?> backend = backends.get(key);
+			if (backend == null) {
+				return;
+			}
+			backend.released = true;
+			// unclaimed before removed, so that a concurrent compaction sees every value at least once
+			unclaimed.put(key, backend.encodeValues());
+			backends.remove(key, backend);
+		}
+	}
+
+	/**
+	 * Closes the current log segment and compacts all values into the snapshot.
+	 *
+	 * @return A future that completes once the snapshot is written and old segments are deleted.
+	 */
+	public CompletableFuture<Void> compact() {
+		synchronized (appendLock) {
+			ensureOpen();
+			if (segment.buffer.position() > FILE_HEADER) {
+				rotate();
+			}
+		}
+		return CompletableFuture.runAsync(this::compactSegments, background);
+	}
+
+	/**
+	 * Forces all changes to disk and stops the background thread. Backends of this storage must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		synchronized (appendLock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		background.shutdown();
+		boolean terminated = false;
+		try {
+			terminated = background.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		segment.buffer.force();
+		if (!terminated) {
+			// a background task may still use the buffers, they are released once garbage collected
+			return;
+		}
+		unmap(segment.buffer);
+		if (nextSegment != null) {
+			try {
+				unmap(nextSegment.join().buffer);
+			} catch (CompletionException | CancellationException ignored) {
+				// no segment was mapped
+			}
+		}
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("The storage is closed.");
+		}
+	}
+
+	private void load() throws IOException {
+		Path snapshot = directory.resolve(SNAPSHOT_FILE);
+		long generation = 0;
+		if (Files.exists(snapshot)) {
+			ByteBuffer buffer = read(snapshot);
+			generation = readHeader(buffer, SNAPSHOT_MAGIC, snapshot);
+			replay(buffer, true);
+		}
+		long lastGeneration = generation;
+		for (Path log : listSegments()) {
+			long segmentGeneration = generationOf(log);
+			if (segmentGeneration <= generation) {
+				// left over from a compaction that could not delete it
+				Files.deleteIfExists(log);
+				continue;
+			}
+			ByteBuffer buffer = read(log);
+			if (isTorn(buffer)) {
+				// created right before a crash, before its header reached the disk
+				Files.delete(log);
+				continue;
+			}
+			readHeader(buffer, LOG_MAGIC, log);
+			replay(buffer, true);
+			fullSegments.put(segmentGeneration, log);
+			lastGeneration = segmentGeneration;
+		}
+		segment = createSegment(lastGeneration + 1);
+		if (!fullSegments.isEmpty()) {
+			background.execute(this::compactOrLog);
+		}
+	}
+
+	private List<Path> listSegments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files
+					.filter(path -> {
+						String name = path.getFileName().toString();
+						return name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX);
+					})
+					.sorted(Comparator.comparingLong(LogStorage::generationOf))
+					.toList();
+		}
+	}
+
+	private static long generationOf(Path log) {
+		String name = log.getFileName().toString();
+		try {
+			return Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Reads a snapshot or log file into memory. The file is read instead of mapped, so that it can be replaced or
+	 * deleted by the next compaction.
+	 */
+	private static ByteBuffer read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Storage file is too large: " + path);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// read until the buffer is full or the file ends
+			}
+			return buffer.flip();
+		}
+	}
+
+	/**
+	 * @return The generation in the file header
+	 */
+	private static long readHeader(ByteBuffer buffer, int magic, Path path) throws IOException {
+		if (buffer.remaining() < FILE_HEADER || buffer.getInt() != magic || buffer.get() != VERSION) {
+			throw new IOException("Invalid or unsupported storage file: " + path);
+		}
+		return buffer.getLong();
+	}
+
+	/**
+	 * @return true, if the log segment has no valid header and no intact records, e.g. because it was truncated or
+	 * zero-filled by a crash. Such a segment holds no changes and can be deleted.
+	 */
+	private boolean isTorn(ByteBuffer buffer) {
+		if (buffer.remaining() < FILE_HEADER) {
+			return true;
+		}
+		if (buffer.getInt(0) == LOG_MAGIC) {
+			return false;
+		}
+		return replay(buffer.duplicate().position(FILE_HEADER), false) == 0;
+	}
+
+	/**
+	 * Applies all intact records up to the first torn or corrupt one to the unclaimed values.
+	 *
+	 * @param apply false to only count the intact records
+	 * @return The amount of intact records
+	 */
+	private int replay(ByteBuffer buffer, boolean apply) {
+		int records = 0;
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= RECORD_HEADER) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				break;
+			}
+			ByteBuffer body = buffer.slice(buffer.position(), length);
+			crc.reset();
+			crc.update(body.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				// a torn write at the end of the log
+				break;
+			}
+			buffer.position(buffer.position() + length);
+			if (apply) {
+				apply(body);
+			}
+			records++;
+		}
+		return records;
+	}
+
+	private void apply(ByteBuffer body) {
+		byte op = body.get();
+		UUID uuid = new UUID(body.getLong(), body.getLong());
+		byte[] keyBytes = new byte[body.getShort() & 0xFFFF];
+		body.get(keyBytes);
+		NamespacedKey key = NamespacedKey.fromString(new String(keyBytes, StandardCharsets.UTF_8));
+		if (op == OP_REMOVE) {
+			Map<UUID, byte[]> values = unclaimed.get(key);
+			if (values != null) {
+				values.remove(uuid);
+			}
+		} else {
+			byte[] value = new byte[body.remaining()];
+			body.get(value);
+			unclaimed.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(uuid, value);
+		}
+	}
+
+	private Segment createSegment(long generation) {
+		Path path = directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			buffer.putInt(LOG_MAGIC).put(VERSION).putLong(generation);
+			// a segment without header can't be told apart from garbage after a crash
+			buffer.force(0, FILE_HEADER);
+			return new Segment(generation, path, buffer);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Appends a record to the current segment. Must be called while holding the append lock.
+	 */
+	private <T> void append(byte op, UUID uuid, LogBackend<T> backend, @Nullable T value) {
+		ByteBuffer body = encoder.encode(op, uuid, backend.keyBytes, backend.codec, value);
+		int size = RECORD_HEADER + body.remaining();
+		if (size > segmentSize - FILE_HEADER) {
+			throw new IllegalArgumentException("The value is too large for a log segment of " + segmentSize + " bytes.");
+		}
+		if (segment.buffer.remaining() < size) {
+			rotate();
+		}
+		encoder.writeRecord(segment.buffer, body);
+		if (nextSegment == null && segment.buffer.position() > segmentSize / 2) {
+			long generation = segment.generation + 1;
+			nextSegment = CompletableFuture.supplyAsync(() -> createSegment(generation), background);
+		}
+	}
+
+	/**
+	 * Continues in the next segment and schedules a compaction. Must be called while holding the append lock.
+	 */
+	private void rotate() {
+		long generation = segment.generation + 1;
+		Segment next = null;
+		if (nextSegment != null) {
+			try {
+				next = nextSegment.join();
+			} catch (CompletionException | CancellationException e) {
+				LOGGER.log(Level.WARNING, "Could not create the next log segment in advance, retrying.", e);
+			}
+			nextSegment = null;
+		}
+		if (next == null) {
+			// waits for the background thread, whose tasks don't take the append lock
+			try {
+				next = CompletableFuture.supplyAsync(() -> createSegment(generation), background).join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException cause ? cause : e;
+			}
+		}
+		Segment full = segment;
+		synchronized (fullSegments) {
+			fullSegments.put(full.generation, full.path);
+		}
+		segment = next;
+		if (!closed) {
+			background.execute(() -> {
+				// appends go to the next segment and sync() runs on this thread, so nothing uses the buffer anymore
+				try {
+					full.buffer.force();
+				} catch (RuntimeException e) {
+					// the compaction below still writes its values into the snapshot
+					LOGGER.log(Level.WARNING, "Could not force a full log segment to disk.", e);
+				}
+				unmap(full.buffer);
+				compactOrLog();
+			});
+		}
+	}
+
+	private void sync() {
+		try {
+			segment.buffer.force();
+		} catch (RuntimeException e) {
+			// keep the scheduled task alive, the next interval tries again
+			LOGGER.log(Level.WARNING, "Could not force the settings log to disk.", e);
+		}
+	}
+
+	private void compactOrLog() {
+		try {
+			compactSegments();
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Could not compact the settings storage, the log segments are kept.", e);
+		}
+	}
+
+	/**
+	 * Writes all values into a new snapshot and deletes the full segments. Runs on the background thread.
+	 * <br>
+	 * All records of the full segments are applied to the in-memory values before the segment was rotated, so the
+	 * snapshot contains them. It may also contain newer values, which is fine because the newer segments are replayed
+	 * on top of the snapshot.
+	 */
+	private void compactSegments() {
+		long generation;
+		List<Path> obsolete;
+		synchronized (fullSegments) {
+			if (fullSegments.isEmpty()) {
+				return;
+			}
+			generation = fullSegments.lastKey();
+			obsolete = new ArrayList<>(fullSegments.values());
+		}
+		Path snapshot = directory.resolve(SNAPSHOT_FILE);
+		Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				SnapshotWriter writer = new SnapshotWriter(channel);
+				writer.header(generation);
+				for (Map.Entry<NamespacedKey, ConcurrentHashMap<UUID, byte[]>> entry : unclaimed.entrySet()) {
+					byte[] keyBytes = entry.getKey().toString().getBytes(StandardCharsets.UTF_8);
+					for (Map.Entry<UUID, byte[]> value : entry.getValue().entrySet()) {
+						writer.write(value.getKey(), keyBytes, value.getValue());
+					}
+				}
+				for (LogBackend<?> backend : backends.values()) {
+					backend.writeTo(writer);
+				}
+				writer.flush();
+				channel.force(true);
+			}
+			Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			// the segments are kept and compacted with the next attempt
+			throw new UncheckedIOException(e);
+		}
+		synchronized (fullSegments) {
+			fullSegments.headMap(generation, true).clear();
+		}
+		for (Path path : obsolete) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException ignored) {
+				// deleted on the next startup, because its generation is covered by the snapshot
+			}
+		}
+	}
+
+	private record Segment(long generation, Path path, MappedByteBuffer buffer) {
+	}
+
+	private static MethodHandle findCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			return MethodHandles.lookup()
+					.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+					.bindTo(field.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Releases the mapping of the buffer now instead of when it is garbage collected. The buffer must not be accessed
+	 * afterwards.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		if (INVOKE_CLEANER == null) {
+			return;
+		}
+		try {
+			INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+		} catch (Throwable ignored) {
+			// released once garbage collected
+		}
+	}
+
+	/**
+	 * Encodes the body of records into a reusable buffer. A record consists of the body length, the CRC32 of the body
+	 * and the body, which holds the operation, the UUID, the setting key and the encoded value.
+	 */
+	private static final class RecordEncoder {
+
+		private final CRC32 crc = new CRC32();
+		private ByteBuffer body = ByteBuffer.allocate(256);
+
+		<T> ByteBuffer encode(byte op, UUID uuid, byte[] key, SettingCodec<T> codec, @Nullable T value) {
+			prepare(op, uuid, key, value == null ? 0 : codec.maxSize(value));
+			if (value != null) {
+				codec.write(body, value);
+			}
+			return body.flip();
+		}
+
+		ByteBuffer encode(UUID uuid, byte[] key, byte[] value) {
+			prepare(OP_SET, uuid, key, value.length);
+			return body.put(value).flip();
+		}
+
+		private void prepare(byte op, UUID uuid, byte[] key, int valueSize) {
+			int size = 1 + Long.BYTES * 2 + Short.BYTES + key.length + valueSize;
+			if (body.capacity() < size) {
+				body = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+			}
+			body.clear();
+			body.put(op).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits())
+					.putShort((short) key.length).put(key);
+		}
+
+		void writeRecord(ByteBuffer target, ByteBuffer body) {
+			crc.reset();
+			crc.update(body.array(), 0, body.limit());
+			int position = target.position();
+			target.position(position + Integer.BYTES);
+			target.putInt((int) crc.getValue());
+			target.put(body);
+			// the length is written last, so that a partially written record ends the replay
+			target.putInt(position, body.limit());
+		}
+	}
+
+	/**
+	 * Writes snapshot records through a buffer into a file channel.
+	 */
+	private final class SnapshotWriter {
+
+		private final FileChannel channel;
+		private final RecordEncoder encoder = new RecordEncoder();
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+		SnapshotWriter(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void header(long generation) {
+			buffer.putInt(SNAPSHOT_MAGIC).put(VERSION).putLong(generation);
+		}
+
+		void write(UUID uuid, byte[] key, byte[] value) throws IOException {
+			write(encoder.encode(uuid, key, value));
+		}
+
+		<T> void write(UUID uuid, byte[] key, SettingCodec<T> codec, T value) throws IOException {
+			write(encoder.encode(OP_SET, uuid, key, codec, value));
+		}
+
+		private void write(ByteBuffer body) throws IOException {
+			if (buffer.remaining() < RECORD_HEADER + body.remaining()) {
+				flush();
+			}
+			if (buffer.remaining() < RECORD_HEADER + body.remaining()) {
+				ByteBuffer large = ByteBuffer.allocate(RECORD_HEADER + body.remaining());
+				encoder.writeRecord(large, body);
+				channel.write(large.flip());
+				return;
+			}
+			encoder.writeRecord(buffer, body);
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	private final class LogBackend<T> implements SettingBackend<T> {
+
+		private final byte[] keyBytes;
+		private final SettingCodec<T> codec;
+		private final T defaultValue;
+		private final ConcurrentHashMap<UUID, T> values = new ConcurrentHashMap<>();
+		// guarded by appendLock
+		private boolean released = false;
+
+		LogBackend(NamespacedKey key, SettingCodec<T> codec, T defaultValue) {
+			this.keyBytes = key.toString().getBytes(StandardCharsets.UTF_8);
+			this.codec = codec;
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public T get(UUID uuid) {
+			return values.getOrDefault(uuid, defaultValue);
+		}
+
+		/**
+		 * Setting a value to null removes the stored value, so that the UUID has the default value again.
+		 */
+		@Override
+		public CompletableFuture<Setting.SettingChangeResult> set(UUID uuid, @Nullable T value) {
+			try {
+				synchronized (appendLock) {
+					ensureOpen();
+					store(uuid, value);
+				}
+			} catch (RuntimeException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+			return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+		}
+
+		@Override
+		public boolean supportsBatches() {
+			return true;
+		}
+
+		@Override
+		public CompletableFuture<Map<UUID, T>> requestAll(Collection<UUID> uuids) {
+			Map<UUID, T> result = new HashMap<>();
+			for (UUID uuid : uuids) {
+				result.put(uuid, get(uuid));
+			}
+			return CompletableFuture.completedFuture(result);
+		}
+
+		@Override
+		public CompletableFuture<Map<UUID, Setting.SettingChangeResult>> setAll(Map<UUID, T> values) {
+			Map<UUID, Setting.SettingChangeResult> results = new HashMap<>();
+			try {
+				synchronized (appendLock) {
+					ensureOpen();
+					for (Map.Entry<UUID, T> entry : values.entrySet()) {
+						store(entry.getKey(), entry.getValue());
+						results.put(entry.getKey(), Setting.SettingChangeResult.SUCCESS);
+					}
+				}
+			} catch (RuntimeException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+			return CompletableFuture.completedFuture(results);
+		}
+
+		/**
+		 * Must be called while holding the append lock, so that the log order matches the in-memory order.
+		 */
+		private void store(UUID uuid, @Nullable T value) {
+			if (released) {
+				throw new IllegalStateException("The backend was released.");
+			}
+			if (value == null) {
+				append(OP_REMOVE, uuid, this, null);
+				values.remove(uuid);
+			} else {
+				append(OP_SET, uuid, this, value);
+				values.put(uuid, value);
+			}
+		}
+
+		ConcurrentHashMap<UUID, byte[]> encodeValues() {
+			ConcurrentHashMap<UUID, byte[]> encoded = new ConcurrentHashMap<>();
+			values.forEach((uuid, value) -> {
+				ByteBuffer buffer = ByteBuffer.allocate(codec.maxSize(value));
+				codec.write(buffer, value);
+				encoded.put(uuid, Arrays.copyOf(buffer.array(), buffer.position()));
+			});
+			return encoded;
+		}
+
+		void writeTo(SnapshotWriter writer) throws IOException {
+			for (Map.Entry<UUID, T> entry : values.entrySet()) {
+				writer.write(entry.getKey(), keyBytes, codec, entry.getValue());
+			}
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package de.cubbossa.commonsettings.plugin.storage;
+
+import de.cubbossa.commonsettings.DuplicateKeyException;
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBackend;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStorageTest {
+
+	enum Mode {
+		OFF, ON
+	}
+
+	private static final NamespacedKey INT = NamespacedKey.of("test", "int");
+	private static final NamespacedKey STRING = NamespacedKey.of("test", "string");
+	private static final NamespacedKey MODE = NamespacedKey.of("test", "mode");
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void reopen() throws Exception {
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		try (LogStorage storage = LogStorage.open(directory)) {
+			SettingBackend<Integer> ints = storage.backend(INT, Integer.class, -1);
+			SettingBackend<String> strings = storage.backend(STRING, String.class, null);
+			SettingBackend<Mode> modes = storage.backend(MODE, Mode.class, Mode.OFF);
+
+			assertEquals(-1, ints.get(a));
+			assertEquals(Setting.SettingChangeResult.SUCCESS, ints.set(a, 5).get(1, TimeUnit.SECONDS));
+			ints.set(a, 6);
+			ints.set(b, 7);
+			ints.set(b, null);
+			strings.set(a, "hällo");
+			modes.set(b, Mode.ON);
+			assertEquals(6, ints.get(a));
+			assertEquals(-1, ints.get(b));
+		}
+		try (LogStorage storage = LogStorage.open(directory)) {
+			SettingBackend<Integer> ints = storage.backend(INT, Integer.class, -1);
+			assertEquals(6, ints.get(a));
+			assertEquals(-1, ints.get(b));
+			assertEquals("hällo", storage.backend(STRING, String.class, null).get(a));
+			assertEquals(Mode.ON, storage.backend(MODE, Mode.class, Mode.OFF).get(b));
+		}
+	}
+
+	@Test
+	void compaction() throws Exception {
+		List<UUID> uuids = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			uuids.add(UUID.randomUUID());
+		}
+		try (LogStorage storage = LogStorage.open(directory, 4096, Duration.ofMillis(50))) {
+			SettingBackend<Integer> ints = storage.backend(INT, Integer.class, 0);
+			// every value is overwritten several times, each segment holds about a hundred records
+			for (int round = 0; round < 5; round++) {
+				Map<UUID, Integer> batch = new HashMap<>();
+				for (int i = 0; i < uuids.size(); i++) {
+					batch.put(uuids.get(i), round * 1000 + i);
+				}
+				ints.setAll(batch).get(1, TimeUnit.SECONDS);
+			}
+			storage.compact().get(5, TimeUnit.SECONDS);
+			assertTrue(Files.exists(directory.resolve("settings.snapshot")));
+			assertTrue(segments().size() <= 2);
+			ints.set(uuids.get(0), -5);
+		}
+		try (LogStorage storage = LogStorage.open(directory, 4096, Duration.ofMillis(50))) {
+			SettingBackend<Integer> ints = storage.backend(INT, Integer.class, 0);
+			assertEquals(-5, ints.get(uuids.get(0)));
+			for (int i = 1; i < uuids.size(); i++) {
+				assertEquals(4000 + i, ints.get(uuids.get(i)));
+			}
+		}
+	}
+
+	@Test
+	void unclaimedValuesSurviveCompaction() throws Exception {
+		UUID uuid = UUID.randomUUID();
+		try (LogStorage storage = LogStorage.open(directory)) {
+			storage.backend(STRING, String.class, null).set(uuid, "kept");
+		}
+		try (LogStorage storage = LogStorage.open(directory)) {
+			storage.compact().get(5, TimeUnit.SECONDS);
+		}
+		try (LogStorage storage = LogStorage.open(directory)) {
+			assertEquals("kept", storage.backend(STRING, String.class, null).get(uuid));
+		}
+	}
+
+	@Test
+	void backendAfterReload() throws Exception {
+		UUID uuid = UUID.randomUUID();
+		try (LogStorage storage = LogStorage.open(directory)) {
+			SettingBackend<Integer> ints = storage.backend(INT, Integer.class, 0);
+			ints.set(uuid, 1);
+			assertSame(ints, storage.backend(INT, Integer.class, 0));
+			assertThrows(DuplicateKeyException.class, () -> storage.backend(INT, Integer.class, 5));
+
+			storage.release(INT);
+			assertTrue(ints.set(uuid, 2).isCompletedExceptionally());
+			SettingBackend<Integer> reloaded = storage.backend(INT, Integer.class, 5);
+			assertEquals(1, reloaded.get(uuid));
+			reloaded.set(uuid, 3);
+			storage.compact().get(1, TimeUnit.SECONDS);
+		}
+		try (LogStorage storage = LogStorage.open(directory)) {
+			assertEquals(3, storage.backend(INT, Integer.class, 0).get(uuid));
+		}
+	}
+
+	@Test
+	void tornRecordIsIgnored() throws Exception {
+		UUID uuid = UUID.randomUUID();
+		try (LogStorage storage = LogStorage.open(directory)) {
+			SettingBackend<Integer> ints = storage.backend(INT, Integer.class, 0);
+			ints.set(uuid, 1);
+			ints.set(uuid, 2);
+		}
+		// corrupt the value of the second record: file header 13 bytes, records 8 + 27 + 4 bytes
+		Path log = segments().get(0);
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 13 + 39 + 38);
+		}
+		try (LogStorage storage = LogStorage.open(directory)) {
+			assertEquals(1, storage.backend(INT, Integer.class, 0).get(uuid));
+		}
+	}
+
+	@Test
+	void tornSegmentIsDeleted() throws Exception {
+		UUID uuid = UUID.randomUUID();
+		try (LogStorage storage = LogStorage.open(directory)) {
+			storage.backend(INT, Integer.class, 0).set(uuid, 1);
+		}
+		// segments whose header never reached the disk, zero-filled and truncated
+		Path zeroFilled = directory.resolve("settings-1000.log");
+		Path truncated = directory.resolve("settings-1001.log");
+		Files.write(zeroFilled, new byte[4096]);
+		Files.write(truncated, new byte[3]);
+		try (LogStorage storage = LogStorage.open(directory)) {
+			assertEquals(1, storage.backend(INT, Integer.class, 0).get(uuid));
+		}
+		assertFalse(Files.exists(zeroFilled));
+		assertFalse(Files.exists(truncated));
+	}
+
+	private List<Path> segments() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package de.cubbossa.commonsettings.sql;
+
+/**
+ * The SQL dialects that the {@link SqlStorage} supports. They only differ in how a value is inserted or replaced.
+ */
+public enum SqlDialect {
+
+	H2("MERGE INTO %s (uuid, setting, setting_value) KEY (uuid, setting) VALUES (?, ?, ?)"),
+	MYSQL("INSERT INTO %s (uuid, setting, setting_value) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE setting_value = VALUES(setting_value)"),
+	POSTGRESQL("INSERT INTO %s (uuid, setting, setting_value) VALUES (?, ?, ?) "
+			+ "ON CONFLICT (uuid, setting) DO UPDATE SET setting_value = excluded.setting_value"),
+	SQLITE("INSERT INTO %s (uuid, setting, setting_value) VALUES (?, ?, ?) "
+			+ "ON CONFLICT (uuid, setting) DO UPDATE SET setting_value = excluded.setting_value");
+
+	private final String upsert;
+
+	SqlDialect(String upsert) {
+		this.upsert = upsert;
+	}
+
+	String createTable(String table) {
+		return "CREATE TABLE IF NOT EXISTS " + table + " ("
+				+ "uuid CHAR(36) NOT NULL, "
+				+ "setting VARCHAR(255) NOT NULL, "
+				+ "setting_value " + switch (this) {
+					case H2 -> "VARCHAR";
+					case MYSQL -> "MEDIUMTEXT";
+					default -> "TEXT";
+				} + " NOT NULL, "
+				+ "PRIMARY KEY (uuid, setting))";
+	}
+
+	String upsert(String table) {
+		return String.format(upsert, table);
+	}
+}
@@ -0,0 +1,473 @@
+package de.cubbossa.commonsettings.sql;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import de.cubbossa.commonsettings.DuplicateKeyException;
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBackend;
+import de.cubbossa.commonsettings.SettingCodec;
+import de.cubbossa.commonsettings.SettingsAPI;
+import org.jetbrains.annotations.Nullable;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores setting values in one SQL table with the columns uuid, setting and setting_value. Providers create a
+ * {@link SettingBackend} per setting with {@link #backend(NamespacedKey, Class, Object)} and pass it to
+ * {@link de.cubbossa.commonsettings.SettingBuilder#withBackend(SettingBackend)}.
+ * <br>
+ * Writes are queued and written as one batch per round trip, repeated writes to the same value are coalesced.
+ * Reads of queued values are answered from the queue. Use {@link #preload(UUID)} when a player joins or opens a
+ * settings GUI to load all values of the player with a single query, subsequent reads of this UUID don't access the
+ * database until {@link #unload(UUID)} is called.
+ * <br>
+ * Values are stored in the text form of the codecs of {@link SettingsAPI#getCodecs()}, so every type with a codec is
+ * supported.
+ */
+public final class SqlStorage implements Closeable {
+
+	public static final String DEFAULT_TABLE = "commonsettings_values";
+	private static final int MAX_UUIDS_PER_QUERY = 500;
+
+	private final DataSource dataSource;
+	private final boolean ownsDataSource;
+	private final SqlDialect dialect;
+	private final String table;
+	private final ExecutorService executor;
+	private final ConcurrentHashMap<NamespacedKey, SqlBackend<?>> backends = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<UUID, Row> preloaded = new ConcurrentHashMap<>();
+
+	// queued writes, guarded by queueLock
+	private final Object queueLock = new Object();
+	private final ConcurrentHashMap<WriteKey, Write> queue = new ConcurrentHashMap<>();
+	// only one batch is written at a time
+	private final Object flushLock = new Object();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	/**
+	 * Creates a storage with a connection pool for the given configuration. The pool is closed with the storage.
+	 */
+	public static SqlStorage open(HikariConfig config, SqlDialect dialect) throws SQLException {
+		HikariDataSource dataSource = new HikariDataSource(config);
+		try {
+			return new SqlStorage(dataSource, true, dialect, DEFAULT_TABLE, dataSource.getMaximumPoolSize());
+		} catch (SQLException | RuntimeException e) {
+			dataSource.close();
+			throw e;
+		}
+	}
+
+	public SqlStorage(DataSource dataSource, SqlDialect dialect) throws SQLException {
+		this(dataSource, dialect, DEFAULT_TABLE);
+	}
+
+	/**
+	 * Creates a storage and creates the table if it does not exist.
+	 *
+	 * @param dataSource The data source, preferably a connection pool. It is not closed with the storage.
+	 * @param dialect    The dialect of the database
+	 * @param table      The name of the table
+	 */
+	public SqlStorage(DataSource dataSource, SqlDialect dialect, String table) throws SQLException {
+		this(dataSource, false, dialect, table, 4);
+	}
+
+	private SqlStorage(DataSource dataSource, boolean ownsDataSource, SqlDialect dialect, String table, int threads)
+			throws SQLException {
+		if (!table.matches("[a-zA-Z0-9_]+")) {
+			throw new IllegalArgumentException("Invalid table name: " + table);
+		}
+		this.dataSource = dataSource;
+		this.ownsDataSource = ownsDataSource;
+		this.dialect = dialect;
+		this.table = table;
+		try (Connection connection = dataSource.getConnection();
+		     Statement statement = connection.createStatement()) {
+			statement.execute(dialect.createTable(table));
+		}
+		AtomicInteger counter = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "CommonSettings-SQL-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Creates the backend for one setting.
+	 *
+	 * @param key          The key of the setting
+	 * @param type         The value type of the setting
+	 * @param defaultValue The value for UUIDs without stored value
+	 * @return A blocking backend that supports batches
+	 * @throws DuplicateKeyException if a backend for this key was already created
+	 */
+	public <T> SettingBackend<T> backend(NamespacedKey key, Class<T> type, @Nullable T defaultValue) {
+		SettingCodec<T> codec = SettingsAPI.getInstance().getCodecs().get(type);
+		if (codec == null) {
+			throw new IllegalArgumentException("The SQL storage does not support values of type " + type.getName() + ".");
+		}
+		SqlBackend<T> backend = new SqlBackend<>(key.toString(), codec, defaultValue);
+		if (backends.putIfAbsent(key, backend) != null) {
+			throw new DuplicateKeyException(String.format("The storage already has a backend for \"%s\".", key));
+		}
+		return backend;
+	}
+
+	/**
+	 * Loads all stored values of the given UUID with one query. Until {@link #unload(UUID)} is called, values of this
+	 * UUID are read from memory and writes update the memory copy as well as the database.
+	 *
+	 * @return A future that completes once the values are loaded
+	 */
+	public CompletableFuture<Void> preload(UUID uuid) {
+		Row row = new Row();
+		if (preloaded.putIfAbsent(uuid, row) != null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return CompletableFuture.runAsync(() -> {
+			// writes that were queued before the row existed must be in the database before it is read
+			flushNow();
+			Map<String, String> values = new HashMap<>();
+			try (Connection connection = dataSource.getConnection();
+			     PreparedStatement statement = connection.prepareStatement(
+					     "SELECT setting, setting_value FROM " + table + " WHERE uuid = ?")) {
+				statement.setString(1, uuid.toString());
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						values.put(resultSet.getString(1), resultSet.getString(2));
+					}
+				}
+			} catch (SQLException e) {
+				preloaded.remove(uuid, row);
+				throw new CompletionException(e);
+			}
+			row.load(values);
+		}, executor);
+	}
+
+	/**
+	 * Drops the preloaded values of the given UUID, e.g. when a player quits.
+	 */
+	public void unload(UUID uuid) {
+		preloaded.remove(uuid);
+	}
+
+	/**
+	 * @return A future that completes once all queued writes are stored in the database
+	 */
+	public CompletableFuture<Void> flush() {
+		return CompletableFuture.runAsync(this::flushNow, executor);
+	}
+
+	/**
+	 * Writes all queued values and closes the connection pool, if it was created by this storage.
+	 */
+	@Override
+	public void close() {
+		flushNow();
+		executor.shutdown();
+		try {
+			executor.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (ownsDataSource) {
+			((HikariDataSource) dataSource).close();
+		}
+	}
+
+	private CompletableFuture<Setting.SettingChangeResult> enqueue(UUID uuid, String setting, @Nullable String text) {
+		WriteKey key = new WriteKey(uuid, setting);
+		Write write = new Write(key, text);
+		synchronized (queueLock) {
+			Write previous = queue.put(key, write);
+			if (previous != null && !previous.taken) {
+				// coalesced, the previous write completes with this one
+				write.future.whenComplete((result, throwable) -> {
+					if (throwable != null) {
+						previous.future.completeExceptionally(throwable);
+					} else {
+						previous.future.complete(result);
+					}
+				});
+			}
+		}
+		Row row = preloaded.get(uuid);
+		if (row != null) {
+			row.write(setting, text);
+		}
+		if (flushScheduled.compareAndSet(false, true)) {
+			executor.execute(this::flushNow);
+		}
+		return write.future;
+	}
+
+	/**
+	 * @return The queued write for this value, or null if none is queued.
+	 */
+	private Write queued(UUID uuid, String setting) {
+		return queue.isEmpty() ? null : queue.get(new WriteKey(uuid, setting));
+	}
+
+	/**
+	 * Writes all queued values in one transaction. Writes stay in the queue until they are committed, so that reads
+	 * never see an older value from the database.
+	 */
+	private void flushNow() {
+		synchronized (flushLock) {
+			flushScheduled.set(false);
+			List<Write> batch;
+			synchronized (queueLock) {
+				if (queue.isEmpty()) {
+					return;
+				}
+				batch = new ArrayList<>(queue.values());
+				for (Write write : batch) {
+					write.taken = true;
+				}
+			}
+			try {
+				writeBatch(batch);
+			} catch (SQLException e) {
+				for (Write write : batch) {
+					queue.remove(write.key, write);
+					// the memory copy may hold the value that could not be written
+					preloaded.remove(write.key.uuid());
+					write.future.completeExceptionally(e);
+				}
+				return;
+			}
+			for (Write write : batch) {
+				queue.remove(write.key, write);
+				write.future.complete(Setting.SettingChangeResult.SUCCESS);
+			}
+		}
+	}
+
+	private void writeBatch(List<Write> batch) throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try (PreparedStatement upsert = connection.prepareStatement(dialect.upsert(table));
+			     PreparedStatement delete = connection.prepareStatement(
+					     "DELETE FROM " + table + " WHERE uuid = ? AND setting = ?")) {
+				int upserts = 0;
+				int deletes = 0;
+				for (Write write : batch) {
+					PreparedStatement statement = write.text == null ? delete : upsert;
+					statement.setString(1, write.key.uuid().toString());
+					statement.setString(2, write.key.setting());
+					if (write.text == null) {
+						deletes++;
+					} else {
+						statement.setString(3, write.text);
+						upserts++;
+					}
+					statement.addBatch();
+				}
+				if (upserts > 0) {
+					upsert.executeBatch();
+				}
+				if (deletes > 0) {
+					delete.executeBatch();
+				}
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			}
+		}
+	}
+
+	private Map<UUID, String> select(String setting, Collection<UUID> uuids) {
+		Map<UUID, String> result = new HashMap<>();
+		List<UUID> list = new ArrayList<>(uuids);
+		try (Connection connection = dataSource.getConnection()) {
+			for (int from = 0; from < list.size(); from += MAX_UUIDS_PER_QUERY) {
+				List<UUID> chunk = list.subList(from, Math.min(list.size(), from + MAX_UUIDS_PER_QUERY));
+				String query = "SELECT uuid, setting_value FROM " + table + " WHERE setting = ? AND uuid IN ("
+						+ String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+				try (PreparedStatement statement = connection.prepareStatement(query)) {
+					statement.setString(1, setting);
+					for (int i = 0; i < chunk.size(); i++) {
+						statement.setString(i + 2, chunk.get(i).toString());
+					}
+					try (ResultSet resultSet = statement.executeQuery()) {
+						while (resultSet.next()) {
+							result.put(UUID.fromString(resultSet.getString(1)), resultSet.getString(2));
+						}
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw new CompletionException(e);
+		}
+		return result;
+	}
+
+	private record WriteKey(UUID uuid, String setting) {
+	}
+
+	private static final class Write {
+		private final WriteKey key;
+		private final @Nullable String text;
+		private final CompletableFuture<Setting.SettingChangeResult> future = new CompletableFuture<>();
+		private boolean taken = false;
+
+		Write(WriteKey key, @Nullable String text) {
+			this.key = key;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * All stored values of one preloaded UUID. Writes that happen while the row is loading win over the loaded values.
+	 */
+	private static final class Row {
+
+		private final Map<String, String> values = new HashMap<>();
+		private Set<String> writtenWhileLoading = new HashSet<>();
+		private volatile boolean loaded = false;
+
+		synchronized void load(Map<String, String> stored) {
+			stored.forEach((setting, text) -> {
+				if (!writtenWhileLoading.contains(setting)) {
+					values.put(setting, text);
+				}
+			});
+			writtenWhileLoading = null;
+			loaded = true;
+		}
+
+		synchronized void write(String setting, @Nullable String text) {
+			if (text == null) {
+				values.remove(setting);
+			} else {
+				values.put(setting, text);
+			}
+			if (!loaded) {
+				writtenWhileLoading.add(setting);
+			}
+		}
+
+		synchronized String read(String setting) {
+			return values.get(setting);
+		}
+	}
+
+	private final class SqlBackend<T> implements SettingBackend<T> {
+
+		private final String setting;
+		private final SettingCodec<T> codec;
+		private final T defaultValue;
+
+		SqlBackend(String setting, SettingCodec<T> codec, T defaultValue) {
+			this.setting = setting;
+			this.codec = codec;
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public boolean isBlocking() {
+			return true;
+		}
+
+		@Override
+		public T get(UUID uuid) {
+			Optional<T> local = local(uuid);
+			if (local != null) {
+				return local.orElse(defaultValue);
+			}
+			return decode(select(setting, List.of(uuid)).get(uuid));
+		}
+
+		@Override
+		public CompletableFuture<T> request(UUID uuid) {
+			Optional<T> local = local(uuid);
+			if (local != null) {
+				return CompletableFuture.completedFuture(local.orElse(defaultValue));
+			}
+			return CompletableFuture.supplyAsync(() -> get(uuid), executor);
+		}
+
+		/**
+		 * Null values remove the stored value, so that the UUID has the default value again.
+		 */
+		@Override
+		public CompletableFuture<Setting.SettingChangeResult> set(UUID uuid, @Nullable T value) {
+			return enqueue(uuid, setting, value == null ? null : codec.toText(value));
+		}
+
+		@Override
+		public boolean supportsBatches() {
+			return true;
+		}
+
+		@Override
+		public CompletableFuture<Map<UUID, T>> requestAll(Collection<UUID> uuids) {
+			Map<UUID, T> result = new HashMap<>();
+			List<UUID> remote = new ArrayList<>();
+			for (UUID uuid : uuids) {
+				Optional<T> local = local(uuid);
+				if (local != null) {
+					result.put(uuid, local.orElse(defaultValue));
+				} else {
+					remote.add(uuid);
+				}
+			}
+			if (remote.isEmpty()) {
+				return CompletableFuture.completedFuture(result);
+			}
+			return CompletableFuture.supplyAsync(() -> {
+				Map<UUID, String> stored = select(setting, remote);
+				for (UUID uuid : remote) {
+					result.put(uuid, decode(stored.get(uuid)));
+				}
+				return result;
+			}, executor);
+		}
+
+		@Override
+		public CompletableFuture<Map<UUID, Setting.SettingChangeResult>> setAll(Map<UUID, T> values) {
+			Map<UUID, CompletableFuture<Setting.SettingChangeResult>> futures = new HashMap<>();
+			values.forEach((uuid, value) -> futures.put(uuid, set(uuid, value)));
+			return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+				Map<UUID, Setting.SettingChangeResult> results = new HashMap<>();
+				futures.forEach((uuid, future) -> results.put(uuid, future.join()));
+				return results;
+			});
+		}
+
+		/**
+		 * @return The value from the write queue or the preloaded row, an empty optional for the default value, or
+		 * null if the value must be read from the database.
+		 */
+		@SuppressWarnings("OptionalAssignedToNull")
+		private Optional<T> local(UUID uuid) {
+			Write write = queued(uuid, setting);
+			if (write != null) {
+				return Optional.ofNullable(decode(write.text));
+			}
+			Row row = preloaded.get(uuid);
+			if (row != null && row.loaded) {
+				return Optional.ofNullable(decode(row.read(setting)));
+			}
+			return null;
+		}
+
+		private T decode(@Nullable String text) {
+			return text == null ? defaultValue : codec.fromText(text);
+		}
+	}
+}
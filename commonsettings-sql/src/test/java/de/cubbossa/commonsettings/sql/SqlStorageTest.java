@@ -0,0 +1,153 @@
+package de.cubbossa.commonsettings.sql;
+
+import com.zaxxer.hikari.HikariConfig;
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBackend;
+import de.cubbossa.commonsettings.SettingBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStorageTest {
+
+	enum Mode {
+		OFF, ON
+	}
+
+	private static final NamespacedKey INT = NamespacedKey.of("test", "int");
+	private static final NamespacedKey STRING = NamespacedKey.of("test", "string");
+	private static final NamespacedKey MODE = NamespacedKey.of("test", "mode");
+
+	private final AtomicInteger connections = new AtomicInteger();
+
+	/**
+	 * A data source for a fresh in-memory database that counts opened connections.
+	 */
+	private DataSource dataSource(String name) {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DataSource.class},
+				(proxy, method, args) -> {
+					if (method.getName().equals("getConnection")) {
+						connections.incrementAndGet();
+					}
+					try {
+						return method.invoke(h2, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+
+	@Test
+	void roundTrip() throws Exception {
+		DataSource dataSource = dataSource("roundTrip");
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		SqlStorage storage = new SqlStorage(dataSource, SqlDialect.H2);
+		SettingBackend<Integer> ints = storage.backend(INT, Integer.class, -1);
+		SettingBackend<String> strings = storage.backend(STRING, String.class, null);
+		SettingBackend<Mode> modes = storage.backend(MODE, Mode.class, Mode.OFF);
+
+		assertEquals(-1, ints.get(a));
+		ints.set(a, 5);
+		// queued writes are visible before they are written
+		assertEquals(5, ints.get(a));
+		assertEquals(Setting.SettingChangeResult.SUCCESS, ints.set(a, 6).get(1, TimeUnit.SECONDS));
+		ints.set(b, 7).get(1, TimeUnit.SECONDS);
+		ints.set(b, null).get(1, TimeUnit.SECONDS);
+		strings.set(a, "it's").get(1, TimeUnit.SECONDS);
+		modes.set(b, Mode.ON).get(1, TimeUnit.SECONDS);
+		storage.close();
+
+		storage = new SqlStorage(dataSource, SqlDialect.H2);
+		ints = storage.backend(INT, Integer.class, -1);
+		assertEquals(6, ints.get(a));
+		assertEquals(-1, ints.request(b).get(1, TimeUnit.SECONDS));
+		assertEquals("it's", storage.backend(STRING, String.class, null).get(a));
+		assertEquals(Mode.ON, storage.backend(MODE, Mode.class, Mode.OFF).get(b));
+		storage.close();
+	}
+
+	@Test
+	void batches() throws Exception {
+		SqlStorage storage = new SqlStorage(dataSource("batches"), SqlDialect.H2);
+		SettingBackend<Integer> ints = storage.backend(INT, Integer.class, 0);
+		List<UUID> uuids = new ArrayList<>();
+		Map<UUID, Integer> values = new HashMap<>();
+		for (int i = 0; i < 1200; i++) {
+			UUID uuid = UUID.randomUUID();
+			uuids.add(uuid);
+			values.put(uuid, i);
+		}
+
+		connections.set(0);
+		Map<UUID, Setting.SettingChangeResult> results = ints.setAll(values).get(5, TimeUnit.SECONDS);
+		assertEquals(1200, results.size());
+		assertTrue(results.values().stream().allMatch(Setting.SettingChangeResult.SUCCESS::equals));
+		assertTrue(connections.get() <= 2, "writes were not batched: " + connections.get());
+
+		connections.set(0);
+		Map<UUID, Integer> read = ints.requestAll(uuids).get(5, TimeUnit.SECONDS);
+		assertEquals(values, read);
+		assertEquals(1, connections.get());
+		storage.close();
+	}
+
+	@Test
+	void preload() throws Exception {
+		SqlStorage storage = new SqlStorage(dataSource("preload"), SqlDialect.H2);
+		SettingBackend<Integer> ints = storage.backend(INT, Integer.class, 0);
+		SettingBackend<String> strings = storage.backend(STRING, String.class, "none");
+		SettingBackend<Mode> modes = storage.backend(MODE, Mode.class, Mode.OFF);
+		UUID uuid = UUID.randomUUID();
+		ints.set(uuid, 3);
+		modes.set(uuid, Mode.ON).get(1, TimeUnit.SECONDS);
+
+		connections.set(0);
+		storage.preload(uuid).get(1, TimeUnit.SECONDS);
+		assertEquals(3, ints.get(uuid));
+		assertEquals("none", strings.get(uuid));
+		assertEquals(Mode.ON, modes.request(uuid).get());
+		assertEquals(1, connections.get());
+
+		strings.set(uuid, "some");
+		assertEquals("some", strings.get(uuid));
+		storage.flush().get(1, TimeUnit.SECONDS);
+		storage.unload(uuid);
+		assertEquals("some", strings.get(uuid));
+		storage.close();
+	}
+
+	@Test
+	void pooledBackend() throws Exception {
+		HikariConfig config = new HikariConfig();
+		config.setJdbcUrl("jdbc:h2:mem:pooled;DB_CLOSE_DELAY=-1");
+		config.setMaximumPoolSize(2);
+		try (SqlStorage storage = SqlStorage.open(config, SqlDialect.H2)) {
+			NamespacedKey key = NamespacedKey.of("test", "sql_backend");
+			Setting<Boolean> setting = new SettingBuilder<>(Boolean.class, key)
+					.withBackend(storage.backend(key, Boolean.class, false))
+					.withSyncTimeout(Duration.ofSeconds(1), SettingBuilder.SyncFallback.FAIL)
+					.build();
+			UUID uuid = UUID.randomUUID();
+			assertFalse(setting.getValue(uuid));
+			assertEquals(Setting.SettingChangeResult.SUCCESS, setting.setValue(uuid, true).get(1, TimeUnit.SECONDS));
+			assertTrue(setting.requestValue(uuid).get(1, TimeUnit.SECONDS));
+		}
+	}
+}
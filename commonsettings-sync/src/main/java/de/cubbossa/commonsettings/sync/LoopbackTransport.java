@@ -0,0 +1,107 @@
+package de.cubbossa.commonsettings.sync;
+
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Connects multiple {@link SettingsSync} instances within one JVM, e.g. to test providers with multiple servers.
+ * Messages are delivered in order on one background thread. A drop filter simulates lost messages.
+ */
+public final class LoopbackTransport {
+
+	private final CopyOnWriteArrayList<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+	private final ExecutorService delivery = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "CommonSettings-Loopback");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private volatile Predicate<byte[]> dropFilter = message -> false;
+	// guarded by this
+	private int pending = 0;
+
+	/**
+	 * @return A new transport that receives the messages of all other transports of this loopback.
+	 */
+	public SyncTransport connect() {
+		Endpoint endpoint = new Endpoint();
+		endpoints.add(endpoint);
+		return endpoint;
+	}
+
+	/**
+	 * @param dropFilter Decides for each delivery of a message whether it gets lost
+	 */
+	public void setDropFilter(Predicate<byte[]> dropFilter) {
+		this.dropFilter = dropFilter == null ? message -> false : dropFilter;
+	}
+
+	/**
+	 * Waits until all published messages were delivered, including the messages that were published while receiving.
+	 */
+	public synchronized void awaitIdle(Duration timeout) throws InterruptedException, TimeoutException {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		while (pending > 0) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				throw new TimeoutException("Messages are still being delivered.");
+			}
+			wait(Math.max(1, remaining / 1_000_000));
+		}
+	}
+
+	public void close() {
+		delivery.shutdownNow();
+	}
+
+	private synchronized void delivered() {
+		if (--pending == 0) {
+			notifyAll();
+		}
+	}
+
+	private final class Endpoint implements SyncTransport {
+
+		private volatile Consumer<byte[]> receiver = message -> {
+		};
+
+		@Override
+		public void publish(byte[] message) {
+			for (Endpoint endpoint : endpoints) {
+				if (endpoint == this || dropFilter.test(message)) {
+					continue;
+				}
+				synchronized (LoopbackTransport.this) {
+					pending++;
+				}
+				try {
+					delivery.execute(() -> {
+						try {
+							endpoint.receiver.accept(message.clone());
+						} finally {
+							delivered();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// the loopback was closed
+					delivered();
+				}
+			}
+		}
+
+		@Override
+		public void setReceiver(Consumer<byte[]> receiver) {
+			this.receiver = receiver;
+		}
+
+		@Override
+		public void close() {
+			endpoints.remove(this);
+		}
+	}
+}
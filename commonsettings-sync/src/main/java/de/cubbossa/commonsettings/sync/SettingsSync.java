@@ -0,0 +1,454 @@
+package de.cubbossa.commonsettings.sync;
+
+import de.cubbossa.commonsettings.ManagedSetting;
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingChangeBus;
+import de.cubbossa.commonsettings.SettingsAPI;
+import de.cubbossa.commonsettings.sync.SyncProtocol.*;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the caches of settings consistent between multiple servers that share the storage of their settings, e.g.
+ * the backend servers of a proxy.
+ * <br>
+ * Every successful write on this server is published as invalidation of the written value. Changes are collected for
+ * one flush interval and sent as one batch via the {@link SyncTransport}. Other servers drop the cached, coalesced and
+ * session values of the changed settings, so that the next read loads the new value from the shared storage.
+ * <br>
+ * Each change carries a version. Versions only order the changes of a value as far as the servers saw each other's
+ * changes, not as they were written to the shared storage, so a change that arrives late is counted as stale but
+ * still invalidates the value.
+ * Batches are numbered per server. Receivers request missing batches again and servers keep their recent batches for
+ * resending. If a batch cannot be recovered, the receiver invalidates all of its caches.
+ */
+public final class SettingsSync implements Closeable {
+
+	public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(50);
+	static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(1);
+	static final int MAX_BATCH_SIZE = 1024;
+	static final int HISTORY_SIZE = 1024;
+	private static final int MAX_VERSIONS = 1 << 16;
+	private static final int MAX_NACK_ATTEMPTS = 5;
+	private static final int PEER_TIMEOUT_HEARTBEATS = 30;
+
+	private final SettingsAPI api;
+	private final SyncTransport transport;
+	private final UUID node = UUID.randomUUID();
+	private final long started = System.currentTimeMillis();
+	private final AtomicLong clock = new AtomicLong();
+	private final SettingChangeBus.Subscription subscription;
+	private final ScheduledExecutorService scheduler;
+	private final CopyOnWriteArrayList<SyncListener> listeners = new CopyOnWriteArrayList<>();
+
+	// outgoing batches, guarded by sendLock
+	private final Object sendLock = new Object();
+	private LinkedHashMap<Target, Long> pending = new LinkedHashMap<>();
+	private long seq = 0;
+	private final LinkedHashMap<Long, byte[]> history = new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+			return size() > HISTORY_SIZE;
+		}
+	};
+
+	// incoming batches, guarded by receiveLock
+	private final Object receiveLock = new Object();
+	private final Map<UUID, Peer> peers = new HashMap<>();
+	private long heartbeats = 0;
+
+	/**
+	 * The latest known version of each recently changed value, guarded by itself. Only used to count stale changes.
+	 */
+	private final LinkedHashMap<Target, Version> versions = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Target, Version> eldest) {
+			return size() > MAX_VERSIONS;
+		}
+	};
+
+	private final LongAdder sentDeltas = new LongAdder();
+	private final LongAdder sentBatches = new LongAdder();
+	private final LongAdder receivedDeltas = new LongAdder();
+	private final LongAdder staleDeltas = new LongAdder();
+	private final LongAdder resentBatches = new LongAdder();
+	private final LongAdder resyncs = new LongAdder();
+	private final LongAdder malformedMessages = new LongAdder();
+	private volatile boolean closed = false;
+
+	private record Target(UUID uuid, NamespacedKey key) {
+	}
+
+	private record Version(long version, UUID node) {
+
+		boolean isNewerThan(Version other) {
+			return version > other.version || version == other.version && node.compareTo(other.node) > 0;
+		}
+	}
+
+	private static final class Peer {
+		private final long started;
+		private long highest;
+		private long lastHeard;
+		// missing sequence numbers and how often they were requested
+		private final TreeMap<Long, Integer> missing = new TreeMap<>();
+
+		private Peer(long started, long highest) {
+			this.started = started;
+			this.highest = highest;
+		}
+	}
+
+	/**
+	 * Collected counters of a sync.
+	 *
+	 * @param resyncs How often changes of other servers were lost and all caches were invalidated instead
+	 */
+	public record Stats(long sentDeltas, long sentBatches, long receivedDeltas, long staleDeltas, long resentBatches,
+	                    long resyncs, long malformedMessages) {
+	}
+
+	public SettingsSync(SettingsAPI api, SyncTransport transport) {
+		this(api, transport, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	/**
+	 * Starts to publish the changes of the given API and to apply the changes of other servers. The transport is
+	 * closed with the sync.
+	 *
+	 * @param api           The API whose settings are synchronized, usually {@link SettingsAPI#getInstance()}
+	 * @param transport     The transport to the other servers
+	 * @param flushInterval How long changes are collected before they are sent as one batch
+	 */
+	public SettingsSync(SettingsAPI api, SyncTransport transport, Duration flushInterval) {
+		this.api = api;
+		this.transport = transport;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "CommonSettings-Sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		transport.setReceiver(this::receive);
+		subscription = api.getChangeBus().onCommit((setting, uuid) -> commit(setting.getKey(), uuid));
+		long interval = Math.max(1, flushInterval.toMillis());
+		scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::heartbeat, 0, HEARTBEAT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return The id of this server within the sync, generated on start.
+	 */
+	public UUID getNode() {
+		return node;
+	}
+
+	public SettingChangeBus.Subscription addListener(SyncListener listener) {
+		listeners.add(listener);
+		return () -> listeners.remove(listener);
+	}
+
+	public Stats getStats() {
+		return new Stats(sentDeltas.sum(), sentBatches.sum(), receivedDeltas.sum(), staleDeltas.sum(),
+				resentBatches.sum(), resyncs.sum(), malformedMessages.sum());
+	}
+
+	private void commit(NamespacedKey key, UUID uuid) {
+		if (closed) {
+			return;
+		}
+		Target target = new Target(uuid, key);
+		long version = clock.incrementAndGet();
+		synchronized (versions) {
+			versions.put(target, new Version(version, node));
+		}
+		boolean full;
+		synchronized (sendLock) {
+			pending.put(target, version);
+			full = pending.size() >= MAX_BATCH_SIZE;
+		}
+		if (full) {
+			try {
+				scheduler.execute(this::flush);
+			} catch (RejectedExecutionException e) {
+				// closing, the remaining changes are flushed by close
+			}
+		}
+	}
+
+	/**
+	 * Sends all collected changes immediately instead of waiting for the flush interval.
+	 */
+	public void flush() {
+		synchronized (sendLock) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			List<Delta> deltas = new ArrayList<>(pending.size());
+			pending.forEach((target, version) -> deltas.add(new Delta(target.uuid(), target.key(), version)));
+			pending = new LinkedHashMap<>();
+			for (int from = 0; from < deltas.size(); from += MAX_BATCH_SIZE) {
+				List<Delta> chunk = deltas.subList(from, Math.min(deltas.size(), from + MAX_BATCH_SIZE));
+				long batchSeq = ++seq;
+				byte[] message = SyncProtocol.encode(new Batch(node, started, batchSeq, chunk));
+				history.put(batchSeq, message);
+				// published while holding the lock, so that batches leave this server in order
+				transport.publish(message);
+				sentBatches.increment();
+				sentDeltas.add(chunk.size());
+			}
+		}
+	}
+
+	/**
+	 * Announces the last batch, requests missing batches again and forgets servers that went silent.
+	 */
+	void heartbeat() {
+		long lastSeq;
+		synchronized (sendLock) {
+			lastSeq = seq;
+		}
+		transport.publish(SyncProtocol.encode(new Heartbeat(node, started, lastSeq)));
+
+		boolean resync = false;
+		synchronized (receiveLock) {
+			heartbeats++;
+			Iterator<Map.Entry<UUID, Peer>> iterator = peers.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<UUID, Peer> entry = iterator.next();
+				Peer peer = entry.getValue();
+				if (heartbeats - peer.lastHeard > PEER_TIMEOUT_HEARTBEATS) {
+					iterator.remove();
+					continue;
+				}
+				if (peer.missing.isEmpty()) {
+					continue;
+				}
+				if (peer.missing.values().stream().anyMatch(attempts -> attempts >= MAX_NACK_ATTEMPTS)) {
+					peer.missing.clear();
+					resync = true;
+					continue;
+				}
+				peer.missing.replaceAll((missingSeq, attempts) -> attempts + 1);
+				requestMissing(entry.getKey(), peer);
+			}
+		}
+		if (resync) {
+			resync();
+		}
+	}
+
+	private void receive(byte[] bytes) {
+		Message message;
+		try {
+			message = SyncProtocol.decode(bytes);
+		} catch (IllegalArgumentException e) {
+			malformedMessages.increment();
+			return;
+		}
+		if (message.node().equals(node) || closed) {
+			return;
+		}
+		if (message instanceof Nack nack) {
+			if (nack.target().equals(node)) {
+				resend(nack);
+			}
+			return;
+		}
+		Batch applied = null;
+		boolean resync = false;
+		synchronized (receiveLock) {
+			if (message instanceof Gone gone) {
+				if (!gone.target().equals(node)) {
+					return;
+				}
+				Peer peer = peers.get(gone.node());
+				if (peer != null) {
+					peer.missing.subMap(gone.from(), true, gone.to(), true).clear();
+				}
+				resync = true;
+			} else if (message instanceof Heartbeat heartbeat) {
+				Peer peer = peer(heartbeat.node(), heartbeat.started(), heartbeat.lastSeq());
+				resync = advance(heartbeat.node(), peer, heartbeat.lastSeq());
+			} else if (message instanceof Batch batch) {
+				Peer peer = peer(batch.node(), batch.started(), batch.seq() - 1);
+				if (batch.seq() > peer.highest) {
+					resync = advance(batch.node(), peer, batch.seq() - 1);
+					peer.highest = batch.seq();
+					applied = batch;
+				} else if (peer.missing.remove(batch.seq()) != null) {
+					applied = batch;
+				}
+			}
+		}
+		if (resync) {
+			resync();
+		}
+		if (applied != null) {
+			apply(applied.node(), applied.deltas());
+		}
+	}
+
+	/**
+	 * @param highest The sequence number that new peers are assumed to have sent already, if they started before
+	 *                this server
+	 */
+	private Peer peer(UUID id, long started, long highest) {
+		Peer peer = peers.get(id);
+		if (peer == null || peer.started != started) {
+			// all batches of a peer that started after this server can be requested
+			peer = new Peer(started, started >= this.started ? 0 : highest);
+			peers.put(id, peer);
+		}
+		peer.lastHeard = heartbeats;
+		return peer;
+	}
+
+	/**
+	 * Marks all batches after the highest received one up to the given one as missing and requests them.
+	 *
+	 * @return true, if so many batches are missing that they can't be resent
+	 */
+	private boolean advance(UUID id, Peer peer, long to) {
+		if (to <= peer.highest) {
+			return false;
+		}
+		long from = peer.highest + 1;
+		peer.highest = to;
+		if (to - from >= HISTORY_SIZE) {
+			return true;
+		}
+		for (long missingSeq = from; missingSeq <= to; missingSeq++) {
+			peer.missing.put(missingSeq, 0);
+		}
+		requestMissing(id, peer);
+		return false;
+	}
+
+	private void requestMissing(UUID id, Peer peer) {
+		long from = -1;
+		long to = -1;
+		for (long missingSeq : peer.missing.keySet()) {
+			if (missingSeq != to + 1 && from >= 0) {
+				transport.publish(SyncProtocol.encode(new Nack(node, started, id, from, to)));
+				from = -1;
+			}
+			if (from < 0) {
+				from = missingSeq;
+			}
+			to = missingSeq;
+		}
+		if (from >= 0) {
+			transport.publish(SyncProtocol.encode(new Nack(node, started, id, from, to)));
+		}
+	}
+
+	private void resend(Nack nack) {
+		synchronized (sendLock) {
+			long goneTo = -1;
+			for (long missingSeq = Math.max(1, nack.from()); missingSeq <= Math.min(nack.to(), seq); missingSeq++) {
+				byte[] message = history.get(missingSeq);
+				if (message == null) {
+					goneTo = missingSeq;
+				} else {
+					transport.publish(message);
+					resentBatches.increment();
+				}
+			}
+			if (goneTo >= 0) {
+				transport.publish(SyncProtocol.encode(new Gone(node, started, nack.node(), nack.from(), goneTo)));
+			}
+		}
+	}
+
+	private void apply(UUID origin, List<Delta> deltas) {
+		for (Delta delta : deltas) {
+			receivedDeltas.increment();
+			clock.accumulateAndGet(delta.version(), Math::max);
+			Target target = new Target(delta.uuid(), delta.key());
+			Version version = new Version(delta.version(), origin);
+			synchronized (versions) {
+				Version known = versions.get(target);
+				if (known != null && !version.isNewerThan(known)) {
+					// concurrent writes of two servers may reach the storage in any order, so invalidate anyway
+					staleDeltas.increment();
+				} else {
+					versions.put(target, version);
+				}
+			}
+			Setting<?> setting = findSetting(delta.key());
+			if (setting instanceof ManagedSetting<?> managed) {
+				managed.invalidate(delta.uuid());
+			} else {
+				api.getSessions().invalidate(delta.uuid(), delta.key());
+			}
+			for (SyncListener listener : listeners) {
+				notify(() -> listener.onRemoteChange(delta.key(), delta.uuid()));
+			}
+		}
+	}
+
+	/**
+	 * Invalidates all caches, because changes of another server were lost.
+	 */
+	private void resync() {
+		resyncs.increment();
+		for (Setting<?> setting : api.getSettings()) {
+			if (setting instanceof ManagedSetting<?> managed) {
+				managed.invalidateAll();
+			}
+		}
+		api.getSessions().invalidateAll();
+		for (SyncListener listener : listeners) {
+			notify(listener::onResync);
+		}
+	}
+
+	private static void notify(Runnable call) {
+		try {
+			call.run();
+		} catch (Throwable t) {
+			// one failing listener must not prevent the others from being notified
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+		}
+	}
+
+	private Setting<?> findSetting(NamespacedKey key) {
+		try {
+			return api.getSetting(key);
+		} catch (NoSuchElementException e) {
+			// the setting is not registered on this server
+			return null;
+		}
+	}
+
+	/**
+	 * Sends the remaining changes and stops the sync. The transport is closed as well.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		subscription.unsubscribe();
+		scheduler.shutdown();
+		try {
+			scheduler.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		closed = true;
+		transport.close();
+	}
+}
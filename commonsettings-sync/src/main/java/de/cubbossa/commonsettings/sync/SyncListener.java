@@ -0,0 +1,23 @@
+package de.cubbossa.commonsettings.sync;
+
+import de.cubbossa.commonsettings.NamespacedKey;
+
+import java.util.UUID;
+
+/**
+ * Is notified by {@link SettingsSync} about changes on other servers. Providers that cache values of their settings
+ * outside of the {@link de.cubbossa.commonsettings.SettingBuilder} have to drop them here.
+ */
+public interface SyncListener {
+
+	/**
+	 * Called after the local caches for the setting value of the UUID were invalidated.
+	 */
+	void onRemoteChange(NamespacedKey key, UUID uuid);
+
+	/**
+	 * Called if changes of another server were lost and could not be recovered. All local caches were invalidated.
+	 */
+	default void onResync() {
+	}
+}
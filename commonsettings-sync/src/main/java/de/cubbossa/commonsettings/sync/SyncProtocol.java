@@ -0,0 +1,176 @@
+package de.cubbossa.commonsettings.sync;
+
+import de.cubbossa.commonsettings.NamespacedKey;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The binary messages of {@link SettingsSync}. Every message starts with its type, the id of the sending node and the
+ * time the node started. Batches list their setting keys once and refer to them by index, so that a batch with many
+ * changes of few settings stays small.
+ */
+final class SyncProtocol {
+
+	static final byte BATCH = 1;
+	static final byte HEARTBEAT = 2;
+	static final byte NACK = 3;
+	static final byte GONE = 4;
+
+	private static final int HEADER = 1 + 16 + Long.BYTES;
+	private static final int DELTA = 16 + Short.BYTES + Long.BYTES;
+
+	private SyncProtocol() {
+	}
+
+	/**
+	 * The change of a setting value for one UUID.
+	 *
+	 * @param version The version of the change, newer changes of the same value have higher versions
+	 */
+	record Delta(UUID uuid, NamespacedKey key, long version) {
+	}
+
+	interface Message {
+		UUID node();
+
+		long started();
+	}
+
+	/**
+	 * The changes that a node made within one flush interval.
+	 *
+	 * @param seq The sequence number of the batch, starting at 1 for each node
+	 */
+	record Batch(UUID node, long started, long seq, List<Delta> deltas) implements Message {
+	}
+
+	/**
+	 * Announces the sequence number of the last batch, so that receivers notice lost batches without waiting for the
+	 * next one.
+	 */
+	record Heartbeat(UUID node, long started, long lastSeq) implements Message {
+	}
+
+	/**
+	 * Asks the target node to resend the batches from..to.
+	 */
+	record Nack(UUID node, long started, UUID target, long from, long to) implements Message {
+	}
+
+	/**
+	 * Tells the target node that the batches from..to are no longer available for resending.
+	 */
+	record Gone(UUID node, long started, UUID target, long from, long to) implements Message {
+	}
+
+	static byte[] encode(Batch batch) {
+		Map<NamespacedKey, Integer> keyIndices = new HashMap<>();
+		List<byte[]> keys = new ArrayList<>();
+		int size = HEADER + Long.BYTES + Short.BYTES + Integer.BYTES + batch.deltas().size() * DELTA;
+		for (Delta delta : batch.deltas()) {
+			if (keyIndices.putIfAbsent(delta.key(), keys.size()) == null) {
+				byte[] key = delta.key().toString().getBytes(StandardCharsets.UTF_8);
+				keys.add(key);
+				size += Short.BYTES + key.length;
+			}
+		}
+		if (keys.size() > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("A batch must not contain more than " + Short.MAX_VALUE + " settings.");
+		}
+		ByteBuffer buffer = header(size, BATCH, batch);
+		buffer.putLong(batch.seq());
+		buffer.putShort((short) keys.size());
+		for (byte[] key : keys) {
+			buffer.putShort((short) key.length);
+			buffer.put(key);
+		}
+		buffer.putInt(batch.deltas().size());
+		for (Delta delta : batch.deltas()) {
+			putUUID(buffer, delta.uuid());
+			buffer.putShort(keyIndices.get(delta.key()).shortValue());
+			buffer.putLong(delta.version());
+		}
+		return buffer.array();
+	}
+
+	static byte[] encode(Heartbeat heartbeat) {
+		return header(HEADER + Long.BYTES, HEARTBEAT, heartbeat).putLong(heartbeat.lastSeq()).array();
+	}
+
+	static byte[] encode(Nack nack) {
+		return range(NACK, nack, nack.target(), nack.from(), nack.to());
+	}
+
+	static byte[] encode(Gone gone) {
+		return range(GONE, gone, gone.target(), gone.from(), gone.to());
+	}
+
+	private static byte[] range(byte type, Message message, UUID target, long from, long to) {
+		ByteBuffer buffer = header(HEADER + 16 + Long.BYTES * 2, type, message);
+		putUUID(buffer, target);
+		return buffer.putLong(from).putLong(to).array();
+	}
+
+	private static ByteBuffer header(int size, byte type, Message message) {
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.put(type);
+		putUUID(buffer, message.node());
+		buffer.putLong(message.started());
+		return buffer;
+	}
+
+	/**
+	 * @throws IllegalArgumentException If the message is malformed
+	 */
+	static Message decode(byte[] message) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(message);
+			byte type = buffer.get();
+			UUID node = getUUID(buffer);
+			long started = buffer.getLong();
+			return switch (type) {
+				case BATCH -> decodeBatch(buffer, node, started);
+				case HEARTBEAT -> new Heartbeat(node, started, buffer.getLong());
+				case NACK -> new Nack(node, started, getUUID(buffer), buffer.getLong(), buffer.getLong());
+				case GONE -> new Gone(node, started, getUUID(buffer), buffer.getLong(), buffer.getLong());
+				default -> throw new IllegalArgumentException("Unknown message type " + type + ".");
+			};
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Malformed sync message.", e);
+		}
+	}
+
+	private static Batch decodeBatch(ByteBuffer buffer, UUID node, long started) {
+		long seq = buffer.getLong();
+		NamespacedKey[] keys = new NamespacedKey[buffer.getShort()];
+		for (int i = 0; i < keys.length; i++) {
+			byte[] key = new byte[buffer.getShort()];
+			buffer.get(key);
+			keys[i] = NamespacedKey.fromString(new String(key, StandardCharsets.UTF_8));
+		}
+		int count = buffer.getInt();
+		if (count < 0 || count > buffer.remaining() / DELTA) {
+			throw new IllegalArgumentException("Invalid delta count " + count + ".");
+		}
+		List<Delta> deltas = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			deltas.add(new Delta(getUUID(buffer), keys[buffer.getShort()], buffer.getLong()));
+		}
+		return new Batch(node, started, seq, deltas);
+	}
+
+	private static void putUUID(ByteBuffer buffer, UUID uuid) {
+		buffer.putLong(uuid.getMostSignificantBits());
+		buffer.putLong(uuid.getLeastSignificantBits());
+	}
+
+	private static UUID getUUID(ByteBuffer buffer) {
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+}
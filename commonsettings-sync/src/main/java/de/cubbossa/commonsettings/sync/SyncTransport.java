@@ -0,0 +1,26 @@
+package de.cubbossa.commonsettings.sync;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * Carries the messages of {@link SettingsSync} between servers, e.g. via a message broker or the channels of a proxy.
+ * <br>
+ * Transports may lose, duplicate and reorder messages, the sync protocol recovers from that. Delivering a message
+ * back to its sender is allowed as well.
+ */
+public interface SyncTransport extends Closeable {
+
+	/**
+	 * Sends a message to all other servers. Must not block, messages that cannot be sent may be dropped.
+	 */
+	void publish(byte[] message);
+
+	/**
+	 * @param receiver Is called with every message from other servers, from any thread.
+	 */
+	void setReceiver(Consumer<byte[]> receiver);
+
+	@Override
+	void close();
+}
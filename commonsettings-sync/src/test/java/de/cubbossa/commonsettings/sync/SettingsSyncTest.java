@@ -0,0 +1,173 @@
+package de.cubbossa.commonsettings.sync;
+
+import de.cubbossa.commonsettings.NamespacedKey;
+import de.cubbossa.commonsettings.Setting;
+import de.cubbossa.commonsettings.SettingBuilder;
+import de.cubbossa.commonsettings.SettingsAPI;
+import de.cubbossa.commonsettings.sync.SyncProtocol.Batch;
+import de.cubbossa.commonsettings.sync.SyncProtocol.Delta;
+import de.cubbossa.commonsettings.sync.SyncProtocol.Gone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettingsSyncTest {
+
+	private static final NamespacedKey KEY = NamespacedKey.of("sync", "color");
+	// batches are only sent on flush() within the tests
+	private static final Duration MANUAL = Duration.ofHours(1);
+
+	private final Map<UUID, String> database = new ConcurrentHashMap<>();
+	private final AtomicInteger reads = new AtomicInteger();
+	private LoopbackTransport loopback;
+	private SettingsAPI remoteApi;
+	private SettingsSync local;
+	private SettingsSync remote;
+	private final List<NamespacedKey> remoteChanges = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		loopback = new LoopbackTransport();
+		// the local server uses the global API, whose change bus receives the writes of all unregistered settings
+		local = new SettingsSync(SettingsAPI.getInstance(), loopback.connect(), MANUAL);
+		remoteApi = new SettingsAPI() {
+		};
+		remoteApi.registerSetting(setting());
+		remote = new SettingsSync(remoteApi, loopback.connect(), MANUAL);
+		remote.addListener((key, uuid) -> remoteChanges.add(key));
+		// running servers know each other from their heartbeats
+		local.heartbeat();
+		remote.heartbeat();
+		loopback.awaitIdle(Duration.ofSeconds(5));
+	}
+
+	@AfterEach
+	void tearDown() {
+		local.close();
+		remote.close();
+		loopback.close();
+	}
+
+	/**
+	 * A cached setting that stores its values in the database shared by both servers.
+	 */
+	private Setting<String> setting() {
+		return new SettingBuilder<>(String.class, KEY)
+				.withGetter(uuid -> {
+					reads.incrementAndGet();
+					return database.getOrDefault(uuid, "white");
+				})
+				.withSetter((uuid, value) -> {
+					database.put(uuid, value);
+					return CompletableFuture.completedFuture(Setting.SettingChangeResult.SUCCESS);
+				})
+				.withCache(100, Duration.ofHours(1))
+				.build();
+	}
+
+	@Test
+	void invalidatesRemoteCache() throws Exception {
+		UUID uuid = UUID.randomUUID();
+		Setting<String> localSetting = setting();
+		Setting<String> remoteSetting = remoteApi.getSetting(KEY);
+
+		assertEquals("white", remoteSetting.getValue(uuid));
+		assertEquals("white", remoteSetting.getValue(uuid));
+		assertEquals(1, reads.get());
+
+		localSetting.setValue(uuid, "red").join();
+		localSetting.setValue(uuid, "blue").join();
+		local.flush();
+		loopback.awaitIdle(Duration.ofSeconds(5));
+
+		assertEquals("blue", remoteSetting.getValue(uuid));
+		// both changes of the same value were coalesced into one delta
+		assertEquals(1, local.getStats().sentDeltas());
+		assertEquals(List.of(KEY), remoteChanges);
+	}
+
+	@Test
+	void resendsLostBatches() throws Exception {
+		Setting<String> localSetting = setting();
+		AtomicBoolean dropped = new AtomicBoolean();
+		loopback.setDropFilter(message -> message[0] == SyncProtocol.BATCH && dropped.compareAndSet(false, true));
+
+		localSetting.setValue(UUID.randomUUID(), "red").join();
+		local.flush();
+		localSetting.setValue(UUID.randomUUID(), "blue").join();
+		local.flush();
+		loopback.awaitIdle(Duration.ofSeconds(5));
+
+		assertTrue(dropped.get());
+		assertEquals(1, local.getStats().resentBatches());
+		assertEquals(2, remote.getStats().receivedDeltas());
+		assertEquals(0, remote.getStats().resyncs());
+		assertEquals(2, remoteChanges.size());
+	}
+
+	@Test
+	void invalidatesOnOutdatedChanges() throws Exception {
+		SyncTransport peer = loopback.connect();
+		UUID node = UUID.randomUUID();
+		long started = System.currentTimeMillis() - 1000;
+		UUID uuid = UUID.randomUUID();
+		Setting<String> remoteSetting = remoteApi.getSetting(KEY);
+
+		peer.publish(SyncProtocol.encode(new Batch(node, started, 1, List.of(new Delta(uuid, KEY, 5)))));
+		loopback.awaitIdle(Duration.ofSeconds(5));
+		remoteSetting.getValue(uuid);
+		database.put(uuid, "red");
+		peer.publish(SyncProtocol.encode(new Batch(node, started, 2, List.of(new Delta(uuid, KEY, 3)))));
+		loopback.awaitIdle(Duration.ofSeconds(5));
+
+		// the older version may still have been written last, so it must not be dropped
+		assertEquals(1, remote.getStats().staleDeltas());
+		assertEquals("red", remoteSetting.getValue(uuid));
+		assertEquals(List.of(KEY, KEY), remoteChanges);
+	}
+
+	@Test
+	void resyncsIfBatchesAreGone() throws Exception {
+		AtomicInteger resyncs = new AtomicInteger();
+		remote.addListener(new SyncListener() {
+			@Override
+			public void onRemoteChange(NamespacedKey key, UUID uuid) {
+			}
+
+			@Override
+			public void onResync() {
+				resyncs.incrementAndGet();
+			}
+		});
+		UUID uuid = UUID.randomUUID();
+		Setting<String> remoteSetting = remoteApi.getSetting(KEY);
+		remoteSetting.getValue(uuid);
+
+		SyncTransport peer = loopback.connect();
+		peer.publish(SyncProtocol.encode(new Gone(UUID.randomUUID(), System.currentTimeMillis(), remote.getNode(), 1, 3)));
+		loopback.awaitIdle(Duration.ofSeconds(5));
+
+		assertEquals(1, resyncs.get());
+		remoteSetting.getValue(uuid);
+		assertEquals(2, reads.get());
+	}
+
+	@Test
+	void rejectsMalformedMessages() throws Exception {
+		loopback.connect().publish(new byte[]{SyncProtocol.BATCH, 1, 2});
+		loopback.awaitIdle(Duration.ofSeconds(5));
+		assertEquals(1, remote.getStats().malformedMessages());
+	}
+}